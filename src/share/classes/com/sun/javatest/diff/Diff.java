@@ -68,23 +68,37 @@ public abstract class Diff {
             reporter.setComparator(comparator);
             reporter.setReaders(list);
 
-            List<int[]> testCounts = new ArrayList<>();
-            MultiMap<String, TestResult> table = new MultiMap<>();
-            for (DiffReader r: list) {
-                int index = table.addColumn(r.getFile().getPath());
-                int[] counts = new int[Status.NUM_STATES];
-                for (TestResult tr: r) {
-                    table.addRow(index, tr.getTestName(), tr);
-                    counts[tr.getStatus().getType()]++;
+            if (streaming) {
+                List<String> columnNames = new ArrayList<>();
+                for (DiffReader r: list)
+                    columnNames.add(r.getFile().getPath());
+                ResultMerger merger = new ResultMerger(list, new StatusComparator(includeReason));
+                reporter.setTestCounts(merger.getTestCounts());
+
+                try {
+                    reporter.write(columnNames, merger);
+                } catch (IOException e) {
+                    throw new Fault(i18n, "diff.ioError", e);
                 }
-                testCounts.add(counts);
-            }
-            reporter.setTestCounts(testCounts);
+            } else {
+                List<int[]> testCounts = new ArrayList<>();
+                MultiMap<String, TestResult> table = new MultiMap<>();
+                for (DiffReader r: list) {
+                    int index = table.addColumn(r.getFile().getPath());
+                    int[] counts = new int[Status.NUM_STATES];
+                    for (TestResult tr: r) {
+                        table.addRow(index, tr.getTestName(), tr);
+                        counts[tr.getStatus().getType()]++;
+                    }
+                    testCounts.add(counts);
+                }
+                reporter.setTestCounts(testCounts);
 
-            try {
-                reporter.write(table);
-            } catch (IOException e) {
-                throw new Fault(i18n, "diff.ioError", e);
+                try {
+                    reporter.write(table);
+                } catch (IOException e) {
+                    throw new Fault(i18n, "diff.ioError", e);
+                }
             }
 
             return (reporter.diffs == 0);
@@ -139,6 +153,9 @@ public abstract class Diff {
             if (ReportReader.accepts(f))
                 return new ReportReader(f);
 
+            if (ShardedReportReader.accepts(f))
+                return new ShardedReportReader(f);
+
             throw new Fault(i18n, "main.unrecognizedFile", f);
 
         } catch (TestSuite.Fault e) {
@@ -156,6 +173,7 @@ public abstract class Diff {
     protected Comparator<TestResult> comparator;
     protected Reporter reporter;
     protected boolean includeReason;
+    protected boolean streaming;
     protected String format;
     protected String title;
     private static I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(Diff.class);
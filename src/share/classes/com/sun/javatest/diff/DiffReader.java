@@ -26,7 +26,9 @@
 package com.sun.javatest.diff;
 
 import java.io.File;
+import java.util.function.BiConsumer;
 
+import com.sun.javatest.Status;
 import com.sun.javatest.TestResult;
 
 /**
@@ -36,5 +38,17 @@ public interface DiffReader extends Iterable<TestResult> {
     File getWorkDirectory();
     String getFileType();
     File getFile();
+
+    /**
+     * Calls an action for the name and status of each test result.
+     * Readers may override this method to avoid creating a
+     * {@code TestResult} object for each result.
+     *
+     * @param action the action
+     */
+    default void forEachStatus(BiConsumer<String, Status> action) {
+        for (TestResult tr: this)
+            action.accept(tr.getTestName(), tr.getStatus());
+    }
 }
 
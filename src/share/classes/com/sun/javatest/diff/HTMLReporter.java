@@ -29,7 +29,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Date;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
 
 import com.sun.javatest.Status;
 import com.sun.javatest.TestResult;
@@ -53,9 +54,9 @@ public class HTMLReporter extends Reporter {
         this.out.setI18NResourceBundle(i18n);
     }
 
-    public void write(MultiMap<String, TestResult> table) throws IOException {
-        this.table = table;
-        size = table.getColumns();
+    void write(List<String> columnNames, Iterator<Row> rows) throws IOException {
+        this.columnNames = columnNames;
+        size = columnNames.size();
 
         startReport(title);
 
@@ -67,7 +68,7 @@ public class HTMLReporter extends Reporter {
         out.endTag(H1);
 
         writeIndexTable();
-        writeMainTable();
+        writeMainTable(rows);
         writeSummary();
 
         endReport();
@@ -169,9 +170,9 @@ public class HTMLReporter extends Reporter {
             out.write(String.valueOf(i + 1));
             out.endTag(TD);
             out.startTag(TD);
-            out.write(table.getColumnName(i));
+            out.write(columnNames.get(i));
             out.endTag(TD);
-            writeIndexTableInfoValues(table.getColumnName(i));
+            writeIndexTableInfoValues(columnNames.get(i));
 //            out.startTag(TD);
 //            out.write("??");
 //            out.endTag(TD);
@@ -201,12 +202,11 @@ public class HTMLReporter extends Reporter {
     protected void writeIndexTableInfoValues(String name) throws IOException {
     }
 
-    private void writeMainTable() throws IOException {
+    private void writeMainTable(Iterator<Row> rows) throws IOException {
         diffs = 0;
-        for (Map.Entry<String, MultiMap.Entry<TestResult>> e: table.entrySet()) {
-            String testName = e.getKey();
-            MultiMap.Entry<TestResult> result = e.getValue();
-            if (result.allEqual(comparator))
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            if (row.allEqual)
                 continue;
             if (diffs == 0) {
                 out.startTag(H2);
@@ -221,7 +221,7 @@ public class HTMLReporter extends Reporter {
                 out.startTag(TH);
                 out.writeI18N("html.th.test");
                 out.endTag(TH);
-                for (int i = 0; i < result.getSize(); i++) {
+                for (int i = 0; i < size; i++) {
                     out.startTag(TH);
                     if (compact)
                         out.write(String.valueOf(i + 1));
@@ -236,18 +236,17 @@ public class HTMLReporter extends Reporter {
             out.startTag(TR);
             out.writeAttr(CLASS, (diffs % 2 == 0 ? EVEN : ODD));
             out.startTag(TD);
-            out.write(testName);
+            out.write(row.testName);
             out.endTag(TD);
-            for (int i = 0; i < result.getSize(); i++) {
-                TestResult tr = result.get(i);
-                File trFile = (tr == null ? null : tr.getFile());
-                if (trFile == null) {
+            for (int i = 0; i < size; i++) {
+                Status s = row.statuses[i];
+                File trFile = null;
+                if (s != null) {
                     File wd = readers.get(i).getWorkDirectory();
                     if (wd != null)
-                        trFile = new File(wd, tr.getWorkRelativePath());
+                        trFile = new File(wd, TestResult.getWorkRelativePath(row.testName));
                 }
                 out.startTag(TD);
-                Status s = (tr == null ? null : tr.getStatus());
                 out.writeAttr(CLASS, getClassAttr(s));
                 String text = getText(s);
                 if (trFile != null && trFile.exists()) {
@@ -318,7 +317,7 @@ public class HTMLReporter extends Reporter {
     private String[] statusStrings;
 
     protected final HTMLWriter out;
-    private MultiMap<String, TestResult> table;
+    private List<String> columnNames;
     private int size;
 
     private static final String DOCTYPE = "<!DOCTYPE HTML>";
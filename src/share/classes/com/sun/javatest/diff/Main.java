@@ -70,6 +70,12 @@ public class Main {
                 superMode = true;
             }
         },
+        new Option(NONE, COMPARE, "stream", "-stream") {
+            @Override
+            public void process(String opt, String arg) {
+                streaming = true;
+            }
+        },
         new Option(OLD, OUTPUT, "o", "-o", "-outFile") {
             @Override
             public void process(String opt, String arg) {
@@ -209,6 +215,7 @@ public class Main {
 
         d.out = out;
         d.includeReason = includeReason;
+        d.streaming = streaming;
         d.format = format;
         d.title = title;
 
@@ -223,6 +230,7 @@ public class Main {
     private PrintWriter err;
 
     private boolean includeReason;
+    private boolean streaming;
     private String format;
     private String title;
     private File outFile;
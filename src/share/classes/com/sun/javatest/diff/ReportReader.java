@@ -34,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 import com.sun.javatest.Status;
 import com.sun.javatest.TestDescription;
@@ -87,33 +88,37 @@ public class ReportReader implements DiffReader {
         return readSummary().iterator();
     }
 
+    @Override
+    public void forEachStatus(BiConsumer<String, Status> action) {
+        try (BufferedReader in = new BufferedReader(new FileReader(getSummaryFile()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int sp = line.indexOf(' ');
+                action.accept(line.substring(0, sp), Status.parse(line.substring(sp).trim()));
+            }
+        } catch (IOException e) {
+        }
+    }
+
     private List<TestResult> readSummary() {
         List<TestResult> list = new ArrayList<>();
         File root = getRoot();
-        File f;
+        forEachStatus((t, s) -> {
+            TestDescription td = new TestDescription(root, new File(t), Collections.emptyMap());
+            list.add(new TestResult(td, s));
+        });
+        return list;
+    }
+
+    private File getSummaryFile() {
         if (file.isFile() && file.getName().equals(SUMMARY_TXT))
-            f = file;
+            return file;
         else if (file.isDirectory() && new File(file, SUMMARY_TXT).exists())
-            f = new File(file, SUMMARY_TXT);
+            return new File(file, SUMMARY_TXT);
         else if (file.isDirectory() && new File(new File(file, "text"), SUMMARY_TXT).exists())
-            f = new File(new File(file, "text"), SUMMARY_TXT);
+            return new File(new File(file, "text"), SUMMARY_TXT);
         else
             throw new IllegalStateException();
-
-        try {
-            BufferedReader in = new BufferedReader(new FileReader(f));
-            String line;
-            while ((line = in.readLine()) != null) {
-                int sp = line.indexOf(' ');
-                String t = line.substring(0, sp);
-                Status s = Status.parse(line.substring(sp).trim());
-                TestDescription td = new TestDescription(root, new File(t), Collections.emptyMap());
-                TestResult tr = new TestResult(td, s);
-                list.add(tr);
-            }
-        } catch (IOException e) {
-        }
-        return list;
     }
 
     private File getRoot() {
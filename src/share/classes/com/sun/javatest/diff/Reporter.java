@@ -28,8 +28,11 @@ package com.sun.javatest.diff;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+import com.sun.javatest.Status;
 import com.sun.javatest.TestResult;
 
 
@@ -66,7 +69,63 @@ public abstract class Reporter {
         return diffs;
     }
 
-    abstract void write(MultiMap<String, TestResult> table) throws IOException;
+    /**
+     * A row in a report, giving the status of a test in each set of results.
+     */
+    static class Row {
+        final String testName;
+        final Status[] statuses;
+        final boolean allEqual;
+
+        /**
+         * Creates a row.
+         *
+         * @param testName the name of the test
+         * @param statuses the status of the test in each set of results,
+         *                 or {@code null} if there is no result for the test in a set
+         * @param allEqual whether the results are all considered to be equal
+         */
+        Row(String testName, Status[] statuses, boolean allEqual) {
+            this.testName = testName;
+            this.statuses = statuses;
+            this.allEqual = allEqual;
+        }
+    }
+
+    public void write(MultiMap<String, TestResult> table) throws IOException {
+        List<String> columnNames = new ArrayList<>();
+        for (int i = 0; i < table.getColumns(); i++)
+            columnNames.add(table.getColumnName(i));
+        Iterator<Map.Entry<String, MultiMap.Entry<TestResult>>> iter = table.entrySet().iterator();
+        write(columnNames, new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public Row next() {
+                Map.Entry<String, MultiMap.Entry<TestResult>> e = iter.next();
+                MultiMap.Entry<TestResult> result = e.getValue();
+                Status[] statuses = new Status[result.getSize()];
+                for (int i = 0; i < statuses.length; i++) {
+                    TestResult tr = result.get(i);
+                    statuses[i] = (tr == null ? null : tr.getStatus());
+                }
+                return new Row(e.getKey(), statuses, result.allEqual(comparator));
+            }
+        });
+    }
+
+    /**
+     * Writes a report for a series of rows. The rows are read and written
+     * one at a time, so that they need not all be in memory at once.
+     *
+     * @param columnNames the names of the sets of results
+     * @param rows        the rows
+     * @throws IOException if there is a problem writing the report
+     */
+    abstract void write(List<String> columnNames, Iterator<Row> rows) throws IOException;
 
     protected List<DiffReader> readers;
     protected List<int[]> testCounts = new ArrayList<>();
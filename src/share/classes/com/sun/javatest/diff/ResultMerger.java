@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.sun.javatest.Status;
+import com.sun.javatest.regtest.util.NaturalComparator;
+
+/**
+ * Merges the results read from a series of readers, to provide the rows
+ * of a report in order of the names of the tests, one row at a time.
+ *
+ * <p>The results from each reader are read once, and just the name
+ * and status of each test are retained, sorted by name, with equal
+ * status objects shared between tests. The rows of the report are then
+ * generated incrementally with a k-way merge of the sorted results.
+ */
+class ResultMerger implements Iterator<Reporter.Row> {
+    /** The order for the names of tests in the report. */
+    static final Comparator<String> NAME_ORDER =
+            new NaturalComparator(false).thenComparing(Comparator.naturalOrder());
+
+    /**
+     * The results read from a single reader.
+     */
+    private static class Column {
+        final int index;
+        final List<String> names = new ArrayList<>();
+        final List<Status> statuses = new ArrayList<>();
+        final int[] counts = new int[Status.NUM_STATES];
+        int pos;
+
+        Column(int index) {
+            this.index = index;
+        }
+
+        String currentName() {
+            return names.get(pos);
+        }
+    }
+
+    /**
+     * Creates an object to merge the results read from a series of readers.
+     * The results from each reader are read when the object is created.
+     *
+     * @param readers    the readers
+     * @param comparator the comparator used to determine whether the results
+     *                   for a test are all equal
+     */
+    ResultMerger(List<DiffReader> readers, StatusComparator comparator) {
+        this.comparator = comparator;
+        Map<String, Status> statusCache = new HashMap<>();
+        for (DiffReader r: readers) {
+            Column c = read(columns.size(), r, statusCache);
+            columns.add(c);
+            if (!c.names.isEmpty())
+                queue.add(c);
+        }
+    }
+
+    /**
+     * Returns the number of results of each kind read from each reader.
+     *
+     * @return the counts
+     */
+    List<int[]> getTestCounts() {
+        List<int[]> list = new ArrayList<>();
+        for (Column c: columns)
+            list.add(c.counts);
+        return list;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !queue.isEmpty();
+    }
+
+    @Override
+    public Reporter.Row next() {
+        if (queue.isEmpty())
+            throw new NoSuchElementException();
+
+        String testName = queue.peek().currentName();
+        Status[] statuses = new Status[columns.size()];
+        while (!queue.isEmpty() && queue.peek().currentName().equals(testName)) {
+            Column c = queue.remove();
+            statuses[c.index] = c.statuses.get(c.pos);
+            // release the entry, since it is no longer needed
+            c.names.set(c.pos, null);
+            c.statuses.set(c.pos, null);
+            if (++c.pos < c.names.size())
+                queue.add(c);
+        }
+
+        boolean allEqual = true;
+        for (int i = 1; i < statuses.length && allEqual; i++)
+            allEqual = (comparator.compare(statuses[i], statuses[0]) == 0);
+        return new Reporter.Row(testName, statuses, allEqual);
+    }
+
+    /**
+     * Reads the results from a reader, and sorts them by test name.
+     * If there is more than one result for a test, the last one is used.
+     */
+    private static Column read(int index, DiffReader r, Map<String, Status> statusCache) {
+        Column c = new Column(index);
+        List<String> names = new ArrayList<>();
+        List<Status> statuses = new ArrayList<>();
+        r.forEachStatus((name, status) -> {
+            Status s = (status == null) ? null
+                    : statusCache.computeIfAbsent(status.getType() + ":" + status.getReason(), k -> status);
+            names.add(name);
+            statuses.add(s);
+            c.counts[s == null ? Status.NOT_RUN : s.getType()]++;
+        });
+
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        // the sort is stable, so that results for the same test remain in the order they were read
+        Arrays.sort(order, (i1, i2) -> NAME_ORDER.compare(names.get(i1), names.get(i2)));
+
+        for (int i = 0; i < order.length; i++) {
+            int j = order[i];
+            if (i + 1 < order.length && names.get(order[i + 1]).equals(names.get(j)))
+                continue;
+            c.names.add(names.get(j));
+            c.statuses.add(statuses.get(j));
+        }
+        return c;
+    }
+
+    private final StatusComparator comparator;
+    private final List<Column> columns = new ArrayList<>();
+    private final PriorityQueue<Column> queue = new PriorityQueue<>(
+            Comparator.comparing(Column::currentName, NAME_ORDER).thenComparingInt(c -> c.index));
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.diff;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+import com.sun.javatest.Status;
+import com.sun.javatest.TestResult;
+import com.sun.javatest.regtest.config.Shard;
+import com.sun.javatest.util.I18NResourceBundle;
+
+/**
+ * Read the combined test results from the report directories for a set of
+ * shards, as written by jtreg when using the {@code -shard} option.
+ * The report directories must be the immediate subdirectories of a
+ * common parent directory, and there must be one for each shard.
+ */
+public class ShardedReportReader implements DiffReader {
+    public static boolean accepts(File f) {
+        return f.isDirectory() && !getShardReportDirs(f).isEmpty();
+    }
+
+    /**
+     * Creates a reader for the report directories for a set of shards.
+     *
+     * @param file the parent directory of the report directories
+     * @throws IOException if the set of report directories is not complete
+     */
+    public ShardedReportReader(File file) throws IOException {
+        this.file = file;
+
+        Map<Integer, File> dirs = new TreeMap<>();
+        int count = -1;
+        for (File d : getShardReportDirs(file)) {
+            Shard s = Shard.readManifest(getManifest(d).toPath());
+            if (count == -1) {
+                count = s.getCount();
+            } else if (s.getCount() != count) {
+                throw new IOException(i18n.getString("shards.inconsistent", file));
+            }
+            if (dirs.put(s.getIndex(), d) != null) {
+                throw new IOException(i18n.getString("shards.duplicate", file, s.getIndex()));
+            }
+        }
+        if (dirs.size() != count) {
+            throw new IOException(i18n.getString("shards.incomplete", file, dirs.size(), count));
+        }
+
+        for (File d : dirs.values()) {
+            readers.add(new ReportReader(d));
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getFileType() {
+        return i18n.getString("shards.name");
+    }
+
+    public File getWorkDirectory() {
+        return null;
+    }
+
+    public Iterator<TestResult> iterator() {
+        List<TestResult> list = new ArrayList<>();
+        for (ReportReader r : readers) {
+            for (TestResult tr : r) {
+                list.add(tr);
+            }
+        }
+        return list.iterator();
+    }
+
+    @Override
+    public void forEachStatus(BiConsumer<String, Status> action) {
+        for (ReportReader r : readers) {
+            r.forEachStatus(action);
+        }
+    }
+
+    private static List<File> getShardReportDirs(File dir) {
+        List<File> list = new ArrayList<>();
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                if (c.isDirectory() && getManifest(c).exists() && ReportReader.accepts(c)) {
+                    list.add(c);
+                }
+            }
+        }
+        return list;
+    }
+
+    private static File getManifest(File reportDir) {
+        return new File(new File(reportDir, "text"), Shard.MANIFEST);
+    }
+
+    private final File file;
+    private final List<ReportReader> readers = new ArrayList<>();
+
+    private static I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(ShardedReportReader.class);
+}
@@ -29,10 +29,10 @@ package com.sun.javatest.diff;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
 
 import com.sun.javatest.Status;
-import com.sun.javatest.TestResult;
 import com.sun.javatest.util.I18NResourceBundle;
 
 /**
@@ -58,9 +58,9 @@ public class SimpleReporter extends Reporter {
             maxStatusStringLength = Math.max(maxStatusStringLength, ss.length());
     }
 
-    public void write(MultiMap<String, TestResult> table) throws IOException {
-        this.table = table;
-        size = table.getColumns();
+    void write(List<String> columnNames, Iterator<Row> rows) throws IOException {
+        this.columnNames = columnNames;
+        size = columnNames.size();
 
         if (title != null) {
             println(title);
@@ -68,7 +68,7 @@ public class SimpleReporter extends Reporter {
         }
 
         writeHead();
-        writeBody();
+        writeBody(rows);
         writeSummary();
     }
 
@@ -79,7 +79,7 @@ public class SimpleReporter extends Reporter {
             int failed = c[Status.FAILED];
             int error = c[Status.ERROR];
             int notRun = c[Status.NOT_RUN];
-            writeI18N("simple.set", i, table.getColumnName(i));
+            writeI18N("simple.set", i, columnNames.get(i));
             print("  ");
             writeI18N("simple.counts",
                     passed,
@@ -93,27 +93,24 @@ public class SimpleReporter extends Reporter {
         }
     }
 
-    private void writeBody() throws IOException {
+    private void writeBody(Iterator<Row> rows) throws IOException {
         diffs = 0;
-        for (Map.Entry<String, MultiMap.Entry<TestResult>> e: table.entrySet()) {
-            String testName = e.getKey();
-            MultiMap.Entry<TestResult> result = e.getValue();
-            if (result.allEqual(comparator))
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            if (row.allEqual)
                 continue;
             if (diffs == 0) {
                 println();
-                for (int i = 0; i < result.getSize(); i++) {
+                for (int i = 0; i < size; i++) {
                     print(String.valueOf(i), maxStatusStringLength + 2);
                 }
                 writeI18N("simple.test");
                 println();
             }
-            for (int i = 0; i < result.getSize(); i++) {
-                TestResult tr = result.get(i);
-                Status s = (tr == null ? null : tr.getStatus());
+            for (Status s: row.statuses) {
                 print(getStatusString(s), maxStatusStringLength + 2);
             }
-            println(testName);
+            println(row.testName);
             diffs++;
         }
     }
@@ -153,7 +150,7 @@ public class SimpleReporter extends Reporter {
         return statusStrings[s == null ? Status.NOT_RUN : s.getType()];
     }
 
-    private MultiMap<String, TestResult> table;
+    private List<String> columnNames;
     private int size;
     private PrintWriter out;
 
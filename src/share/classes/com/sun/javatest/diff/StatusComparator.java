@@ -45,8 +45,21 @@ public class StatusComparator implements Comparator<TestResult> {
     }
 
     public int compare(TestResult o1, TestResult o2) {
-        int t1 = getType(o1);
-        int t2 = getType(o2);
+        return compare(getStatus(o1), getStatus(o2));
+    }
+
+    /**
+     * Compares two status objects, in the same way as for the test results
+     * that contain them.
+     *
+     * @param s1 the first status, or {@code null}
+     * @param s2 the second status, or {@code null}
+     * @return a negative integer, zero, or a positive integer as the first status
+     *         is less than, equal to, or greater than the second
+     */
+    public int compare(Status s1, Status s2) {
+        int t1 = getType(s1);
+        int t2 = getType(s2);
 
         if (t1 < t2)
             return -1;
@@ -57,22 +70,20 @@ public class StatusComparator implements Comparator<TestResult> {
         if (!includeReason)
             return 0;
 
-        String r1 = getReason(o1);
-        String r2 = getReason(o2);
+        String r1 = getReason(s1);
+        String r2 = getReason(s2);
         return r1.compareTo(r2);
     }
 
-    private static int getType(TestResult tr) {
-        if (tr == null)
-            return Status.NOT_RUN;
-        Status s = tr.getStatus();
+    private static Status getStatus(TestResult tr) {
+        return (tr == null ? null : tr.getStatus());
+    }
+
+    private static int getType(Status s) {
         return (s == null ? Status.NOT_RUN : s.getType());
     }
 
-    private static String getReason(TestResult tr) {
-        if (tr == null)
-            return "";
-        Status s = tr.getStatus();
+    private static String getReason(Status s) {
         return (s == null ? "" : s.getReason());
     }
 
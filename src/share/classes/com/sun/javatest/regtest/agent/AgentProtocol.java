@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.agent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The encoding of the values sent between an {@code Agent} and an {@link AgentServer}.
+ *
+ * <p>Version 1 of the protocol uses {@link DataOutputStream#writeUTF} for strings,
+ * and a {@code short} for the size of collections. Strings are therefore limited
+ * to 64K bytes, and output is sent in small blocks, each tagged with the name
+ * of the stream to which it belongs.
+ *
+ * <p>Version 2 of the protocol encodes strings as a variable-length size,
+ * followed by the UTF-8 bytes for the string, and the sizes of collections
+ * are also encoded with a variable-length size. Output is sent in larger blocks,
+ * tagged with a small integer that identifies the stream.
+ *
+ * <p>Version 1 is used until the client and server agree to use a later version,
+ * by means of a {@link AgentServer#PROTOCOL PROTOCOL} request and reply,
+ * sent when the connection is first established.
+ */
+public abstract class AgentProtocol {
+    /** The oldest version of the protocol, used until another version is negotiated. */
+    public static final int V1 = 1;
+    /** The version of the protocol using UTF-8 strings with variable-length sizes. */
+    public static final int V2 = 2;
+    /** The latest version of the protocol. */
+    public static final int LATEST = V2;
+
+    /**
+     * Returns the encoding for a given version of the protocol.
+     *
+     * @param version the version
+     * @return the encoding
+     * @throws IllegalArgumentException if the version is not supported
+     */
+    public static AgentProtocol forVersion(int version) {
+        switch (version) {
+            case V1:
+                return v1;
+            case V2:
+                return v2;
+            default:
+                throw new IllegalArgumentException("unsupported protocol version: " + version);
+        }
+    }
+
+    private static final AgentProtocol v1 = new V1Protocol();
+    private static final AgentProtocol v2 = new V2Protocol();
+
+    /**
+     * Returns the version of the protocol.
+     *
+     * @return the version
+     */
+    public abstract int getVersion();
+
+    public abstract void writeString(DataOutputStream out, String s) throws IOException;
+
+    public abstract String readString(DataInputStream in) throws IOException;
+
+    abstract void writeSize(DataOutputStream out, int size) throws IOException;
+
+    abstract int readSize(DataInputStream in) throws IOException;
+
+    /**
+     * Writes the content of an {@link AgentServer#OUTPUT OUTPUT} message,
+     * containing some or all of the given characters.
+     *
+     * @param out  the stream to which to write the message
+     * @param kind the kind of output
+     * @param cbuf the characters to be written
+     * @param off  the offset of the first character to be written
+     * @param len  the number of characters to be written
+     * @return the number of characters that were written
+     * @throws IOException if an error occurs while writing the message
+     */
+    abstract int writeOutput(DataOutputStream out, ActionHelper.OutputHandler.OutputKind kind,
+            char[] cbuf, int off, int len) throws IOException;
+
+    /**
+     * Reads the name of the stream at the beginning of an {@link AgentServer#OUTPUT OUTPUT} message.
+     * The name will be followed by a string containing the output.
+     *
+     * @param in the stream from which to read the name
+     * @return the name
+     * @throws IOException if an error occurs while reading the name
+     */
+    public abstract String readOutputName(DataInputStream in) throws IOException;
+
+    public void writeCollection(DataOutputStream out, Collection<String> c) throws IOException {
+        writeSize(out, c.size());
+        for (String s : c) {
+            writeString(out, s);
+        }
+    }
+
+    public void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+        writeSize(out, map.size());
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            writeString(out, e.getKey());
+            writeString(out, e.getValue());
+        }
+    }
+
+    public List<String> readList(DataInputStream in) throws IOException {
+        int n = readSize(in);
+        List<String> l = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            l.add(readString(in));
+        return l;
+    }
+
+    public Set<String> readSet(DataInputStream in) throws IOException {
+        int n = readSize(in);
+        Set<String> s = new LinkedHashSet<>(n);
+        for (int i = 0; i < n; i++)
+            s.add(readString(in));
+        return s;
+    }
+
+    public Map<String, String> readMap(DataInputStream in) throws IOException {
+        int n = readSize(in);
+        Map<String, String> p = new HashMap<>(n, 1.0f);
+        for (int i = 0; i < n; i++) {
+            String key = readString(in);
+            String value = readString(in);
+            p.put(key, value);
+        }
+        return p;
+    }
+
+    private static class V1Protocol extends AgentProtocol {
+        private static final int BLOCKSIZE = 4096;
+
+        @Override
+        public int getVersion() {
+            return V1;
+        }
+
+        @Override
+        public void writeString(DataOutputStream out, String s) throws IOException {
+            out.writeUTF(s);
+        }
+
+        @Override
+        public String readString(DataInputStream in) throws IOException {
+            return in.readUTF();
+        }
+
+        @Override
+        void writeSize(DataOutputStream out, int size) throws IOException {
+            out.writeShort(size);
+        }
+
+        @Override
+        int readSize(DataInputStream in) throws IOException {
+            return in.readShort();
+        }
+
+        @Override
+        int writeOutput(DataOutputStream out, ActionHelper.OutputHandler.OutputKind kind,
+                char[] cbuf, int off, int len) throws IOException {
+            int n = Math.min(len, BLOCKSIZE);
+            out.writeUTF(kind.name);
+            out.writeUTF(new String(cbuf, off, n));
+            return n;
+        }
+
+        @Override
+        public String readOutputName(DataInputStream in) throws IOException {
+            return in.readUTF();
+        }
+    }
+
+    private static class V2Protocol extends AgentProtocol {
+        // Large enough to hold typical output in a single message, while
+        // still limiting the size of the buffers needed to encode it.
+        private static final int BLOCKSIZE = 64 * 1024;
+
+        private static final ActionHelper.OutputHandler.OutputKind[] outputKinds =
+                ActionHelper.OutputHandler.OutputKind.values();
+
+        @Override
+        public int getVersion() {
+            return V2;
+        }
+
+        @Override
+        public void writeString(DataOutputStream out, String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeSize(out, bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String readString(DataInputStream in) throws IOException {
+            int n = readSize(in);
+            byte[] bytes = new byte[n];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Writes a non-negative integer, using 7 bits in each byte,
+         * least significant bits first, with the high-order bit set
+         * in all but the last byte.
+         */
+        @Override
+        void writeSize(DataOutputStream out, int size) throws IOException {
+            if (size < 0) {
+                throw new IllegalArgumentException(String.valueOf(size));
+            }
+            while ((size & ~0x7f) != 0) {
+                out.writeByte((size & 0x7f) | 0x80);
+                size >>>= 7;
+            }
+            out.writeByte(size);
+        }
+
+        @Override
+        int readSize(DataInputStream in) throws IOException {
+            int size = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.readUnsignedByte();
+                size |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return size;
+                }
+            }
+            throw new IOException("bad size");
+        }
+
+        @Override
+        int writeOutput(DataOutputStream out, ActionHelper.OutputHandler.OutputKind kind,
+                char[] cbuf, int off, int len) throws IOException {
+            int n = Math.min(len, BLOCKSIZE);
+            // don't split a surrogate pair between messages
+            if (n < len && Character.isHighSurrogate(cbuf[off + n - 1])) {
+                n--;
+            }
+            byte[] bytes = new String(cbuf, off, n).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(kind.ordinal());
+            writeSize(out, bytes.length);
+            out.write(bytes);
+            return n;
+        }
+
+        @Override
+        public String readOutputName(DataInputStream in) throws IOException {
+            int id = in.readInt();
+            if (id < 0 || id >= outputKinds.length) {
+                throw new IOException("bad output stream id: " + id);
+            }
+            return outputKinds[id].name;
+        }
+    }
+}
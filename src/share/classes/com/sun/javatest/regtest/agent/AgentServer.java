@@ -45,11 +45,8 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -78,10 +75,13 @@ public class AgentServer implements ActionHelper.OutputHandler {
     public static final boolean traceServer = Flags.get("traceServer");
 
     public static final String ALLOW_SET_SECURITY_MANAGER = "-allowSetSecurityManager";
+    public static final String COMPILER_SERVICE = "-compilerService";
     public static final String ID = "-id";
+    public static final String LIBRARY_CLASS_LOADERS = "-libraryClassLoaders";
     public static final String LOGFILE = "-logfile";
     public static final String HOST = "-host";
     public static final String PORT = "-port";
+    public static final String TEST_RUNNER_SERVICE = "-testRunnerService";
     public static final String TIMEOUTFACTOR = "-timeoutFactor";
 
     public static final byte DO_COMPILE = 1;
@@ -90,6 +90,8 @@ public class AgentServer implements ActionHelper.OutputHandler {
     public static final byte STATUS = 4;
     public static final byte KEEPALIVE = 5;
     public static final byte CLOSE = 6;
+    public static final byte SET_DIR = 7;
+    public static final byte PROTOCOL = 8;
 
     /**
      * Send KEEPALIVE bytes periodically to a stream.
@@ -144,6 +146,8 @@ public class AgentServer implements ActionHelper.OutputHandler {
     }
 
     private float timeoutFactor = 1.0f;
+    private CompilerService compilerService;
+    private LibraryClassLoaders libraryClassLoaders;
 
     public AgentServer(String... args) throws IOException {
         if (traceServer) {
@@ -167,6 +171,12 @@ public class AgentServer implements ActionHelper.OutputHandler {
                 logFile = new File(args[++i]);
             } else if (arg.equals(ALLOW_SET_SECURITY_MANAGER)) {
                 allowSetSecurityManagerFlag = true;
+            } else if (arg.equals(COMPILER_SERVICE)) {
+                compilerService = CompilerService.instance();
+            } else if (arg.equals(LIBRARY_CLASS_LOADERS)) {
+                libraryClassLoaders = new LibraryClassLoaders();
+            } else if (arg.equals(TEST_RUNNER_SERVICE)) {
+                TestRunnerService.enable();
             } else if (arg.equals(PORT) && i + 1 < args.length) {
                 port = Integer.valueOf(args[++i]);
             } else if (arg.equals(HOST) && i + 1 < args.length) {
@@ -196,6 +206,15 @@ public class AgentServer implements ActionHelper.OutputHandler {
         }
         logWriter = pw;
         log("Started");
+        if (compilerService != null) {
+            log("Using compiler service");
+        }
+        if (libraryClassLoaders != null) {
+            log("Using library class loaders");
+        }
+        if (TestRunnerService.instance() != null) {
+            log("Using test runner service");
+        }
 
         if (port > 0) {
             Socket s = new Socket(host, port);
@@ -233,6 +252,12 @@ public class AgentServer implements ActionHelper.OutputHandler {
                     case DO_MAIN:
                         doMain();
                         break;
+                    case SET_DIR:
+                        doSetDir();
+                        break;
+                    case PROTOCOL:
+                        doProtocol();
+                        break;
                     case KEEPALIVE:
                         break;
                     case CLOSE:
@@ -250,18 +275,54 @@ public class AgentServer implements ActionHelper.OutputHandler {
         }
     }
 
+    private void doProtocol() throws IOException {
+        // See corresponding code in Agent.negotiateProtocol
+        int requested = in.readInt();
+        int version = Math.min(requested, AgentProtocol.LATEST);
+        synchronized (out) {
+            out.writeByte(PROTOCOL);
+            out.writeInt(version);
+        }
+        protocol = AgentProtocol.forVersion(version);
+        if (traceServer) {
+            traceOut.println("Agent.Server.doProtocol: " + version);
+        }
+        log("Using protocol version " + version);
+    }
+
+    private void doSetDir() throws IOException {
+        // See corresponding code in Agent.doAction
+        userDir = protocol.readString(in);
+        if (traceServer) {
+            traceOut.println("Agent.Server.doSetDir: " + userDir);
+        }
+        log("Setting directory to " + userDir);
+    }
+
+    /**
+     * Adds the current directory set by SET_DIR, if any, to the properties for an action.
+     * The properties are reset after each action, and so the directory must be
+     * set for each action.
+     */
+    private void setUserDir(Map<String, String> testProps) {
+        if (userDir != null) {
+            testProps.put("user.dir", userDir);
+        }
+    }
+
     private void doCompile() throws IOException {
         if (traceServer) {
             traceOut.println("Agent.Server.doCompile");
         }
         // See corresponding list in Agent.doCompile
-        String testName = in.readUTF();
-        Map<String, String> testProps = readMap(in);
-        List<String> cmdArgs = readList(in);
+        String testName = protocol.readString(in);
+        Map<String, String> testProps = protocol.readMap(in);
+        List<String> cmdArgs = protocol.readList(in);
+        setUserDir(testProps);
         log(testName + ": starting compilation");
         keepAlive.setEnabled(true);
         try {
-            AStatus status = CompileActionHelper.runCompile(testName, testProps, cmdArgs, 0, this);
+            AStatus status = CompileActionHelper.runCompile(testName, testProps, cmdArgs, 0, compilerService, this);
             writeStatus(status);
         } finally {
             keepAlive.setEnabled(false);
@@ -277,15 +338,22 @@ public class AgentServer implements ActionHelper.OutputHandler {
             traceOut.println("Agent.Server.doMain");
         }
         // See corresponding list in Agent.doMainAction
-        String testName = in.readUTF();
-        Map<String, String> testProps = readMap(in);
-        Set<String> addExports = readSet(in);
-        Set<String> addOpens = readSet(in);
-        Set<String> addMods = readSet(in);
-        SearchPath classPath = new SearchPath(in.readUTF());
-        SearchPath modulePath = new SearchPath(in.readUTF());
-        String className = in.readUTF();
-        List<String> classArgs = readList(in);
+        String testName = protocol.readString(in);
+        Map<String, String> testProps = protocol.readMap(in);
+        Set<String> addExports = protocol.readSet(in);
+        Set<String> addOpens = protocol.readSet(in);
+        Set<String> addMods = protocol.readSet(in);
+        SearchPath classPath = new SearchPath(protocol.readString(in));
+        SearchPath modulePath = new SearchPath(protocol.readString(in));
+        String className = protocol.readString(in);
+        List<String> classArgs = protocol.readList(in);
+        SearchPath libraryClassPath = null;
+        String libraryKey = null;
+        if (libraryClassLoaders != null) {
+            libraryClassPath = new SearchPath(protocol.readString(in));
+            libraryKey = protocol.readString(in);
+        }
+        setUserDir(testProps);
         if (traceServer) {
             traceOut.println("Agent.Server.doMain: " + testName);
         }
@@ -298,6 +366,7 @@ public class AgentServer implements ActionHelper.OutputHandler {
                     .addOpens(addOpens)
                     .addMods(addMods)
                     .classpath(classPath)
+                    .libraryClasspath(libraryClassPath, libraryKey, libraryClassLoaders)
                     .modulepath(modulePath)
                     .className(className)
                     .classArgs(classArgs)
@@ -315,33 +384,6 @@ public class AgentServer implements ActionHelper.OutputHandler {
         }
     }
 
-    static List<String> readList(DataInputStream in) throws IOException {
-        int n = in.readShort();
-        List<String> l = new ArrayList<>(n);
-        for (int i = 0; i < n; i++)
-            l.add(in.readUTF());
-        return l;
-    }
-
-    static Set<String> readSet(DataInputStream in) throws IOException {
-        int n = in.readShort();
-        Set<String> s = new LinkedHashSet<>(n);
-        for (int i = 0; i < n; i++)
-            s.add(in.readUTF());
-        return s;
-    }
-
-    static Map<String, String> readMap(DataInputStream in) throws IOException {
-        int n = in.readShort();
-        Map<String, String> p = new HashMap<>(n, 1.0f);
-        for (int i = 0; i < n; i++) {
-            String key = in.readUTF();
-            String value = in.readUTF();
-            p.put(key, value);
-        }
-        return p;
-    }
-
     private void writeStatus(AStatus s) throws IOException {
         if (traceServer) {
             traceOut.println("Agent.Server.writeStatus: " + s);
@@ -349,7 +391,7 @@ public class AgentServer implements ActionHelper.OutputHandler {
         synchronized (out) {
             out.writeByte(STATUS);
             out.writeByte(s.getType());
-            out.writeUTF(s.getReason());
+            protocol.writeString(out, s.getReason());
         }
         writers.clear();
     }
@@ -375,6 +417,8 @@ public class AgentServer implements ActionHelper.OutputHandler {
     private final PrintStream traceOut = System.err;
     private final PrintWriter logWriter;
     private final int id;
+    private String userDir;
+    private volatile AgentProtocol protocol = AgentProtocol.forVersion(AgentProtocol.V1);
     private final Map<OutputKind, Writer> writers = new EnumMap<>(OutputKind.class);
 
     /**
@@ -395,13 +439,11 @@ public class AgentServer implements ActionHelper.OutputHandler {
                     if (traceServer) {
                         traceOut.println("Agent.Server.write[" + kind + ",writer] " + new String(cbuf, off, len));
                     }
-                    final int BLOCKSIZE = 4096;
                     while (len > 0) {
-                        int n = len > BLOCKSIZE ? BLOCKSIZE : len;
+                        int n;
                         synchronized (out) {
                             out.writeByte(OUTPUT);
-                            out.writeUTF(kind.name);
-                            out.writeUTF(new String(cbuf, off, n));
+                            n = protocol.writeOutput(out, kind, cbuf, off, len);
                         }
                         off += n;
                         len -= n;
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.agent;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Loads the classes that are typically used in an agent VM, so that they
+ * can be saved in a dynamic class data sharing (CDS) archive when this class
+ * is run with the {@code -XX:ArchiveClassesAtExit} option.
+ * Usage: {@code
+ *   java CDSTrainer [<source-file> <output-directory>]
+ * }
+ * If a source file is given, it is compiled with the system Java compiler,
+ * so that the classes used by the compiler are also loaded.
+ */
+public class CDSTrainer {
+    public static void main(String... args) {
+        ClassLoader loader = CDSTrainer.class.getClassLoader();
+        for (String name : CLASS_NAMES) {
+            try {
+                Class.forName(name, false, loader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                // ignore: the class is not available on the class path
+            }
+        }
+
+        if (args.length == 2) {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler != null) {
+                // the output is not of interest; only the classes that are loaded
+                PrintWriter out = new PrintWriter(new StringWriter());
+                StandardJavaFileManager fm = compiler.getStandardFileManager(null, null, null);
+                compiler.getTask(out, fm, null, Arrays.asList("-d", args[1]), null,
+                        fm.getJavaFileObjects(args[0])).call();
+            }
+        }
+    }
+
+    private static final String[] CLASS_NAMES = {
+        "com.sun.javatest.regtest.agent.AgentServer",
+        "com.sun.javatest.regtest.agent.AgentProtocol",
+        "com.sun.javatest.regtest.agent.CompileActionHelper",
+        "com.sun.javatest.regtest.agent.CompilerService",
+        "com.sun.javatest.regtest.agent.MainActionHelper",
+        "com.sun.javatest.regtest.agent.JUnitRunner",
+        "com.sun.javatest.regtest.agent.TestNGRunner",
+        "org.junit.platform.launcher.core.LauncherFactory",
+        "org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder",
+        "org.junit.jupiter.engine.JupiterTestEngine",
+        "org.testng.TestNG"
+    };
+}
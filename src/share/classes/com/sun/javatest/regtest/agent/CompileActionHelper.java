@@ -43,6 +43,19 @@ public class CompileActionHelper extends ActionHelper {
             List<String> cmdArgs,
             int timeout,
             OutputHandler outputHandler) {
+        return runCompile(testName, props, cmdArgs, timeout, null, outputHandler);
+    }
+
+    /**
+     * Runs the compiler, using a given compiler service if it is not {@code null}
+     * and if it can handle the given arguments.
+     */
+    public static AStatus runCompile(String testName,
+            Map<String, String> props,
+            List<String> cmdArgs,
+            int timeout,
+            CompilerService compilerService,
+            OutputHandler outputHandler) {
         SaveState saved = new SaveState();
 
         Properties p = System.getProperties();
@@ -81,15 +94,20 @@ public class CompileActionHelper extends ActionHelper {
                 alarm = Alarm.schedulePeriodicInterrupt(timeout, TimeUnit.SECONDS, alarmOut, Thread.currentThread());
             }
             try {
-                RegressionCompileCommand jcc = new RegressionCompileCommand() {
-                    @Override
-                    protected AStatus getStatus(int exitCode) {
-                        JDK_Version v = JDK_Version.forThisJVM();
-                        return getStatusForJavacExitCode(v, exitCode);
-                    }
-                };
-                String[] c = cmdArgs.toArray(new String[cmdArgs.size()]);
-                status = jcc.run(c, err, out);
+                Integer rc = (compilerService == null) ? null : compilerService.compile(cmdArgs, out);
+                if (rc != null) {
+                    status = getStatusForJavacExitCode(JDK_Version.forThisJVM(), rc);
+                } else {
+                    RegressionCompileCommand jcc = new RegressionCompileCommand() {
+                        @Override
+                        protected AStatus getStatus(int exitCode) {
+                            JDK_Version v = JDK_Version.forThisJVM();
+                            return getStatusForJavacExitCode(v, exitCode);
+                        }
+                    };
+                    String[] c = cmdArgs.toArray(new String[cmdArgs.size()]);
+                    status = jcc.run(c, err, out);
+                }
             } finally {
                 alarm.cancel();
             }
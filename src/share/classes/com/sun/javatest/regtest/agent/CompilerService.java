@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.agent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * A service to compile classes in an agent VM, using the system Java compiler.
+ * The compiler and its file manager are reused for successive compilations,
+ * so that information read by the file manager, such as the contents of the
+ * platform classes, does not have to be read again for each compilation.
+ *
+ * <p>The file manager caches information about the archives and directories
+ * on the paths given to it. It is only reused while the options that configure
+ * it, other than the output directories and the class, source and annotation
+ * processor paths, are unchanged, and while none of the files and directories
+ * on those paths have been created, deleted or modified since they were last used.
+ *
+ * <p>Compilations that cannot be handled by the service, such as those
+ * with options that are not recognized, are reported by returning {@code null},
+ * so that the caller can use {@link RegressionCompileCommand} instead.
+ */
+public class CompilerService {
+    private static CompilerService instance;
+
+    /**
+     * Returns the compiler service for this VM, or {@code null} if there is no
+     * system Java compiler available.
+     *
+     * @return the compiler service
+     */
+    public static synchronized CompilerService instance() {
+        if (instance == null) {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler == null) {
+                return null;
+            }
+            instance = new CompilerService(compiler);
+        }
+        return instance;
+    }
+
+    private CompilerService(JavaCompiler compiler) {
+        this.compiler = compiler;
+    }
+
+    /**
+     * Compiles classes, using the same arguments as for the {@code javac} command.
+     * Diagnostics are written to the given stream.
+     *
+     * @param args the arguments
+     * @param out  the stream for diagnostics
+     * @return the exit code, as would be returned by {@code javac}, or {@code null}
+     *         if the compilation cannot be performed by the service
+     */
+    public synchronized Integer compile(List<String> args, PrintWriter out) {
+        List<String> options = new ArrayList<>();
+        List<String> fileManagerOptions = new ArrayList<>();
+        Set<File> paths = new HashSet<>();
+        List<File> files = new ArrayList<>();
+        List<String> classNames = new ArrayList<>();
+        boolean reusable = true;
+
+        StandardJavaFileManager fm = getFileManager();
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (arg.startsWith("-")) {
+                int eq = arg.indexOf('=');
+                String name = (arg.startsWith("--") && eq > 0) ? arg.substring(0, eq) : arg;
+                int fmArity = fm.isSupportedOption(name);
+                int arity = (fmArity != -1) ? fmArity : compiler.isSupportedOption(name);
+                if (arity == -1 || arg.startsWith("-J")) {
+                    return null;
+                }
+                // options such as --release=11 and -Xbootclasspath/p:path include their value
+                boolean separateValue = arity > 0 && name.equals(arg) && arg.indexOf(':') == -1;
+                String value;
+                if (separateValue) {
+                    if (i + 1 == args.size()) {
+                        return null;
+                    }
+                    value = args.get(++i);
+                } else {
+                    value = (eq > 0) ? arg.substring(eq + 1) : null;
+                }
+                options.add(arg);
+                if (separateValue) {
+                    options.add(value);
+                }
+                if (fmArity != -1) {
+                    if (UNCACHEABLE_OPTIONS.contains(name)) {
+                        reusable = false;
+                    }
+                    if (PATH_OPTIONS.contains(name) && value != null) {
+                        for (String p : value.split(File.pathSeparator)) {
+                            if (!p.isEmpty()) {
+                                paths.add(new File(p));
+                            }
+                        }
+                    }
+                    if (!RESET_OPTIONS.contains(name)) {
+                        fileManagerOptions.add(arg);
+                        if (separateValue) {
+                            fileManagerOptions.add(value);
+                        }
+                    }
+                }
+            } else if (arg.startsWith("@")) {
+                return null;
+            } else if (arg.endsWith(".java")) {
+                files.add(new File(arg));
+            } else {
+                classNames.add(arg);
+            }
+        }
+
+        if (files.isEmpty() && classNames.isEmpty()) {
+            return null;
+        }
+
+        Map<File, String> newStamps = new HashMap<>();
+        boolean stale = (currentOptions != null) && !fileManagerOptions.equals(currentOptions);
+        for (File f : paths) {
+            String s = getStamp(f);
+            String prev = stamps.get(f);
+            if (prev != null && !prev.equals(s)) {
+                stale = true;
+            }
+            newStamps.put(f, s);
+        }
+
+        if (!reusable) {
+            fm = compiler.getStandardFileManager(null, null, null);
+        } else {
+            if (stale) {
+                closeFileManager();
+                fm = getFileManager();
+            }
+            currentOptions = fileManagerOptions;
+        }
+
+        try {
+            if (reusable) {
+                for (StandardLocation l : RESET_LOCATIONS) {
+                    fm.setLocation(l, null);
+                }
+                stamps.putAll(newStamps);
+            }
+            Iterable<? extends JavaFileObject> units = fm.getJavaFileObjectsFromFiles(files);
+            JavaCompiler.CompilationTask task = compiler.getTask(out, fm, null, options,
+                    classNames.isEmpty() ? null : classNames, units);
+            return task.call() ? EXIT_OK : EXIT_ERROR;
+        } catch (IllegalArgumentException e) {
+            out.println("error: " + e.getMessage());
+            return EXIT_CMDERR;
+        } catch (IOException | RuntimeException | Error e) {
+            e.printStackTrace(out);
+            if (reusable) {
+                closeFileManager();
+            }
+            return EXIT_ABNORMAL;
+        } finally {
+            out.flush();
+            try {
+                if (reusable) {
+                    fm.flush();
+                } else {
+                    fm.close();
+                }
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private StandardJavaFileManager getFileManager() {
+        if (fileManager == null) {
+            fileManager = compiler.getStandardFileManager(null, null, null);
+        }
+        return fileManager;
+    }
+
+    private void closeFileManager() {
+        if (fileManager != null) {
+            try {
+                fileManager.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            fileManager = null;
+        }
+        stamps.clear();
+        currentOptions = null;
+    }
+
+    /**
+     * Returns a string that will be different if the given file or directory
+     * is created, deleted, or modified.
+     * The contents of directories are not cached by the file manager,
+     * and so the stamp for a directory does not depend on its contents.
+     */
+    private static String getStamp(File f) {
+        if (f.isDirectory()) {
+            return "dir";
+        } else if (f.exists()) {
+            return f.length() + ":" + f.lastModified();
+        } else {
+            return "missing";
+        }
+    }
+
+    // Exit codes, as used by javac
+    private static final int EXIT_OK = 0;
+    private static final int EXIT_ERROR = 1;
+    private static final int EXIT_CMDERR = 2;
+    private static final int EXIT_ABNORMAL = 4;
+
+    /** File manager options whose value is a search path. */
+    private static final Set<String> PATH_OPTIONS = new HashSet<>(Arrays.asList(
+            "-classpath", "-cp", "--class-path",
+            "-sourcepath", "--source-path",
+            "-processorpath", "--processor-path",
+            "--module-path", "-p",
+            "--upgrade-module-path",
+            "--processor-module-path",
+            "-bootclasspath", "--boot-class-path"));
+
+    /**
+     * File manager options for locations that are reset before each compilation,
+     * and which therefore do not prevent the file manager being reused.
+     */
+    private static final Set<String> RESET_OPTIONS = new HashSet<>(Arrays.asList(
+            "-classpath", "-cp", "--class-path",
+            "-sourcepath", "--source-path",
+            "-processorpath", "--processor-path",
+            "-d", "-s", "-h"));
+
+    /** The locations set by {@link #RESET_OPTIONS}. */
+    private static final List<StandardLocation> RESET_LOCATIONS = Arrays.asList(
+            StandardLocation.CLASS_PATH,
+            StandardLocation.SOURCE_PATH,
+            StandardLocation.ANNOTATION_PROCESSOR_PATH,
+            StandardLocation.CLASS_OUTPUT,
+            StandardLocation.SOURCE_OUTPUT,
+            StandardLocation.NATIVE_HEADER_OUTPUT);
+
+    /**
+     * File manager options whose values may refer to files and directories
+     * that cannot easily be checked for changes. A new file manager is used
+     * for any compilation that uses these options.
+     */
+    private static final Set<String> UNCACHEABLE_OPTIONS = new HashSet<>(Arrays.asList(
+            "--module-source-path",
+            "--patch-module"));
+
+    private final JavaCompiler compiler;
+    private StandardJavaFileManager fileManager;
+    private List<String> currentOptions;
+    private final Map<File, String> stamps = new HashMap<>();
+}
@@ -120,10 +120,22 @@ public class JUnitRunner implements MainActionHelper.TestRunner {
 
             SummaryGeneratingListener summaryGeneratingListener = new SummaryGeneratingListener();
 
-            try (LauncherSession session = LauncherFactory.openSession()) {
-                Launcher launcher = session.getLauncher();
-                launcher.registerTestExecutionListeners(summaryGeneratingListener);
-                launcher.execute(request);
+            TestRunnerService service = TestRunnerService.instance();
+            if (service == null) {
+                try (LauncherSession session = LauncherFactory.openSession()) {
+                    Launcher launcher = session.getLauncher();
+                    launcher.registerTestExecutionListeners(summaryGeneratingListener);
+                    launcher.execute(request);
+                }
+            } else {
+                // Reuse a session, and the test engines found by its launcher,
+                // for all the test classes executed in this VM.
+                // The listener is given for this execution only, since
+                // listeners registered with the launcher are retained.
+                long start = System.nanoTime();
+                Launcher launcher = getSession(service).getLauncher();
+                launcher.execute(request, summaryGeneratingListener);
+                service.recordTime("JUnit Platform", mainClass.getName(), System.nanoTime() - start);
             }
 
             TestExecutionSummary summary = summaryGeneratingListener.getSummary();
@@ -145,4 +157,24 @@ public class JUnitRunner implements MainActionHelper.TestRunner {
             throw new Exception(JUNIT_NO_DRIVER, ex);
         }
     }
+
+    /**
+     * Returns a session for the class loader for the JUnit Platform classes.
+     * The test engines are found with that class loader, and not with the class loader
+     * for the test class, so that the session can be used for all test classes.
+     * The session is not closed, and remains open until the VM exits.
+     */
+    private static LauncherSession getSession(TestRunnerService service) throws Exception {
+        ClassLoader platformLoader = LauncherFactory.class.getClassLoader();
+        return service.get(LauncherSession.class, platformLoader, () -> {
+            Thread thread = Thread.currentThread();
+            ClassLoader prev = thread.getContextClassLoader();
+            thread.setContextClassLoader(platformLoader);
+            try {
+                return LauncherFactory.openSession();
+            } finally {
+                thread.setContextClassLoader(prev);
+            }
+        });
+    }
 }
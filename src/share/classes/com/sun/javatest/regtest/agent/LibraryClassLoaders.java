@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.agent;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of class loaders for the library classes used by the tests executed
+ * in an agent VM, so that the library classes do not have to be loaded, verified
+ * and compiled again for each test that uses them.
+ *
+ * <p>Each class loader is identified by a key, provided by the client, which
+ * identifies the entries on the library class path and the state of the classes
+ * in those entries. The client must ensure that the key changes whenever classes
+ * that may already have been loaded are recompiled.
+ * A limited number of class loaders are retained, with the least recently used
+ * class loader being closed and discarded when the limit is exceeded.
+ * Since the tests in an agent VM are executed one at a time, a class loader
+ * that is discarded is no longer in use by any test.
+ *
+ * <p>Any static state in the library classes is shared by all the tests that
+ * use the same class loader, including the values of static fields that are
+ * initialized when the class is first used, such as from the system properties
+ * for the test that first uses the class. Libraries that depend on such state
+ * should not be loaded with class loaders from this cache.
+ */
+public class LibraryClassLoaders {
+    /**
+     * Returns a class loader for the classes on a library class path.
+     * The same class loader is returned for successive calls with the same key
+     * and parent class loader.
+     *
+     * @param key       the key for the class loader
+     * @param classPath the library class path
+     * @param parent    the parent class loader
+     * @return the class loader
+     */
+    public synchronized ClassLoader getClassLoader(String key, SearchPath classPath, ClassLoader parent) {
+        CachedLoader e = loaders.get(key);
+        if (e == null || e.parent != parent) {
+            if (e != null) {
+                close(e);
+            }
+            e = new CachedLoader(parent, new URLClassLoader(getURLs(classPath), parent));
+            loaders.put(key, e);
+        }
+        return e.loader;
+    }
+
+    /**
+     * Returns the URLs for the entries on a search path.
+     *
+     * @param path the search path
+     * @return the URLs
+     */
+    static URL[] getURLs(SearchPath path) {
+        List<URL> urls = new ArrayList<>();
+        for (Path f : path.asList()) {
+            try {
+                urls.add(f.toUri().toURL());
+            } catch (MalformedURLException e) {
+            }
+        }
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    /**
+     * Closes a class loader that is being discarded, so that the files
+     * that it has opened, such as any jar files on the class path, are closed.
+     *
+     * @param e the entry for the class loader
+     */
+    private static void close(CachedLoader e) {
+        try {
+            e.loader.close();
+        } catch (IOException ex) {
+            // ignore: the class loader is no longer used
+        }
+    }
+
+    private static class CachedLoader {
+        final ClassLoader parent;
+        final URLClassLoader loader;
+
+        CachedLoader(ClassLoader parent, URLClassLoader loader) {
+            this.parent = parent;
+            this.loader = loader;
+        }
+    }
+
+    private static final int MAX_LOADERS = 8;
+
+    private final Map<String, CachedLoader> loaders = new LinkedHashMap<String, CachedLoader>(16, 0.75f, true) {
+        private static final long serialVersionUID = 0;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedLoader> eldest) {
+            if (size() > MAX_LOADERS) {
+                close(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+}
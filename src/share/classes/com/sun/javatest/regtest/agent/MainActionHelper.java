@@ -29,10 +29,7 @@ import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +49,9 @@ public class MainActionHelper extends ActionHelper {
     private Set<String> addOpens;
     private Set<String> addMods;
     private SearchPath classpath;
+    private SearchPath libraryClasspath;
+    private String libraryKey;
+    private LibraryClassLoaders libraryClassLoaders;
     private SearchPath modulepath;
     private String className;
     private List<String> classArgs;
@@ -88,6 +88,24 @@ public class MainActionHelper extends ActionHelper {
         return this;
     }
 
+    /**
+     * Sets the class path for the library classes used by the test,
+     * which will be loaded by a class loader obtained from the given cache,
+     * instead of by the class loader for the other classes on the class path.
+     *
+     * @param libraryClasspath    the library class path
+     * @param libraryKey          the key for the class loader for the library class path
+     * @param libraryClassLoaders the cache of class loaders
+     * @return this object
+     */
+    MainActionHelper libraryClasspath(SearchPath libraryClasspath, String libraryKey,
+            LibraryClassLoaders libraryClassLoaders) {
+        this.libraryClasspath = libraryClasspath;
+        this.libraryKey = libraryKey;
+        this.libraryClassLoaders = libraryClassLoaders;
+        return this;
+    }
+
     MainActionHelper modulepath(SearchPath modulepath) {
         this.modulepath = modulepath;
         return this;
@@ -144,15 +162,13 @@ public class MainActionHelper extends ActionHelper {
             if (modulepath != null && !modulepath.isEmpty()) {
                 loader = ModuleHelper.addModules(modulepath.asList(), addMods);
             }
+            if (libraryClasspath != null && !libraryClasspath.isEmpty()) {
+                loader = libraryClassLoaders.getClassLoader(libraryKey, libraryClasspath, loader);
+                ModuleHelper.addExports(addExports, loader);
+                ModuleHelper.addOpens(addOpens, loader);
+            }
             if (classpath != null && !classpath.isEmpty()) {
-                List<URL> urls = new ArrayList<>();
-                for (Path f : classpath.asList()) {
-                    try {
-                        urls.add(f.toUri().toURL());
-                    } catch (MalformedURLException e) {
-                    }
-                }
-                loader = new URLClassLoader(urls.toArray(new URL[urls.size()]), loader);
+                loader = new URLClassLoader(LibraryClassLoaders.getURLs(classpath), loader);
             }
 
             ModuleHelper.addExports(addExports, loader);
@@ -244,6 +260,17 @@ public class MainActionHelper extends ActionHelper {
             } else if (!tg.cleanupOK) {
                 status = error(EXEC_ERROR_CLEANUP);
             }
+
+            TestRunnerService service = TestRunnerService.instance();
+            if (service != null) {
+                List<String> times = service.takeTimes();
+                if (!times.isEmpty()) {
+                    PrintWriter log = outputHandler.getPrintWriter(OutputHandler.OutputKind.LOG, true);
+                    for (String time : times) {
+                        log.println(MSG_PREFIX + time);
+                    }
+                }
+            }
         } catch (ClassNotFoundException e) {
             e.printStackTrace(err);
             err.println();
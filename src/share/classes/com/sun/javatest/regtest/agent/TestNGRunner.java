@@ -90,7 +90,14 @@ public class TestNGRunner implements MainActionHelper.TestRunner {
         testng.addListener((ITestNGListener) listener); // recognizes both ITestListener and IConfigurationListener
         testng.addListener(new XMLReporter());
         testng.setOutputDirectory(new File(".").getPath()); // current dir, i.e. scratch dir
+        // TestNG retains the suites and results of each run, and so a new
+        // instance is used for each test class, even when the service is available
+        TestRunnerService service = TestRunnerService.instance();
+        long start = System.nanoTime();
         testng.run();
+        if (service != null) {
+            service.recordTime("TestNG", mainClass.getName(), System.nanoTime() - start);
+        }
         if (listener.configFailureCount > 0 || listener.failureCount > 0) {
             throw new Exception("failures: " + listener.failureCount);
         }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service for the test runners, such as {@link JUnitRunner}, that are used to
+ * execute the test classes in an agent VM.
+ *
+ * <p>The service retains state that is expensive to create and that can be used
+ * to execute more than one test class, such as a JUnit Platform launcher and the
+ * test engines that it has found, so that the state does not have to be created
+ * again for each test. The state is identified by the kind of state and by the
+ * class loader used to create it.
+ *
+ * <p>The service also records the time taken by a test runner to execute each
+ * test class, so that the time can be reported in the log for the action that
+ * executed the class.
+ *
+ * <p>The service is only available in agent VMs that have been started with the
+ * {@link AgentServer#TEST_RUNNER_SERVICE} option; otherwise, the test runners
+ * create any state they need for each test class.
+ */
+public class TestRunnerService {
+    private static TestRunnerService instance;
+
+    /**
+     * Enables the service for this VM.
+     */
+    static synchronized void enable() {
+        if (instance == null) {
+            instance = new TestRunnerService();
+        }
+    }
+
+    /**
+     * Returns the service for this VM, or {@code null} if the service has not been enabled.
+     *
+     * @return the service
+     */
+    public static synchronized TestRunnerService instance() {
+        return instance;
+    }
+
+    private TestRunnerService() { }
+
+    /**
+     * A factory to create the state for a test runner.
+     *
+     * @param <T> the type of the state
+     */
+    public interface Factory<T> {
+        /**
+         * Creates the state.
+         *
+         * @return the state
+         * @throws Exception if the state cannot be created
+         */
+        T create() throws Exception;
+    }
+
+    /**
+     * Returns the state of a given kind for a class loader, creating it if necessary.
+     *
+     * @param <T>     the type of the state
+     * @param kind    the kind of state
+     * @param loader  the class loader
+     * @param factory the factory to create the state if it does not already exist
+     * @return the state
+     * @throws Exception if the state cannot be created
+     */
+    public synchronized <T> T get(Class<T> kind, ClassLoader loader, Factory<? extends T> factory)
+            throws Exception {
+        Map<ClassLoader, Object> map = state.get(kind);
+        if (map == null) {
+            map = new WeakHashMap<>();
+            state.put(kind, map);
+        }
+        Object o = map.get(loader);
+        if (o == null) {
+            o = factory.create();
+            map.put(loader, o);
+        }
+        return kind.cast(o);
+    }
+
+    /**
+     * Records the time taken by a test runner to execute a test class.
+     *
+     * @param runner    the name of the test runner
+     * @param className the name of the test class
+     * @param nanos     the time taken, in nanoseconds
+     */
+    public synchronized void recordTime(String runner, String className, long nanos) {
+        times.add(runner + ": executed " + className + " in "
+                + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+    }
+
+    /**
+     * Returns and clears the times that have been recorded since this method
+     * was last called.
+     *
+     * @return a description of each of the times
+     */
+    synchronized List<String> takeTimes() {
+        List<String> result = new ArrayList<>(times);
+        times.clear();
+        return result;
+    }
+
+    private final Map<Class<?>, Map<ClassLoader, Object>> state = new WeakHashMap<>();
+    private final List<String> times = new ArrayList<>();
+}
@@ -0,0 +1,582 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.javatest.regtest.tool.Version;
+
+import static com.sun.javatest.regtest.util.DigestUtils.digest;
+
+/**
+ * A persistent record of the source files compiled by the {@code build} action,
+ * used to determine whether the corresponding class files are up to date
+ * without relying solely on the last-modified times of the files.
+ *
+ * <p>For each source file that has been compiled into a class directory,
+ * the record contains the size, last-modified time and a digest of the contents
+ * of the source file and of all the class files compiled from the source file,
+ * including those for nested classes and any other top-level classes declared
+ * in the source file, and of the source files for the library classes referenced
+ * by the class files. The class files are up to date if none of these files have
+ * changed.
+ * A file is considered to be unchanged if it has the same size and either
+ * the same last-modified time or the same contents as when it was recorded,
+ * so that class files are not recompiled just because the files have been
+ * touched, such as when the source files have been checked out again, or
+ * when the work directory has been restored from an archive.
+ */
+public class BuildState {
+    /**
+     * The size, last-modified time and digest of the contents of a file.
+     */
+    static class FileStamp {
+        final long size;
+        final long lastModified;
+        final byte[] digest;
+
+        FileStamp(long size, long lastModified, byte[] digest) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * The information recorded when a source file is compiled.
+     */
+    static class Entry {
+        final FileStamp source;
+        final Map<String, FileStamp> classFiles;
+        final Map<String, FileStamp> dependencies;
+
+        Entry(FileStamp source, Map<String, FileStamp> classFiles, Map<String, FileStamp> dependencies) {
+            this.source = source;
+            this.classFiles = classFiles;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * Creates an object to record the files compiled by the {@code build} action,
+     * and reads any information saved in a file by a previous run.
+     * The content of the file is ignored if it cannot be read,
+     * or if it was written by a different version of jtreg.
+     *
+     * @param file the file in which to save the information
+     */
+    public BuildState(Path file) {
+        this.file = file;
+        read();
+    }
+
+    /**
+     * Determines whether a class file is up to date with respect to its source file
+     * and the source files for the library classes that it references, using the
+     * information recorded when the source file was last compiled into the given
+     * class directory. The class file is not up to date if any of the other class
+     * files compiled from the source file have been deleted.
+     * The result is {@code null} if there is no such information, or if any of the
+     * class files have since been written by other means, such as when they are
+     * compiled implicitly by {@code javac} while compiling another source file.
+     *
+     * @param srcFile the source file
+     * @param clsDir  the class directory
+     * @param clsFile the class file
+     * @return whether the class file is up to date, or {@code null} if that cannot be
+     *      determined from the recorded information
+     */
+    public Boolean isUpToDate(Path srcFile, Path clsDir, Path clsFile) {
+        Entry e = entries.get(getKey(srcFile, clsDir));
+        if (e == null || !e.classFiles.containsKey(clsFile.toString())) {
+            return null;
+        }
+        for (Map.Entry<String, FileStamp> c : e.classFiles.entrySet()) {
+            Path f = Path.of(c.getKey());
+            if (!isUnchanged(f, c.getValue())) {
+                return Files.exists(f) ? null : Boolean.FALSE;
+            }
+        }
+        if (!isUnchanged(srcFile, e.source)) {
+            return false;
+        }
+        for (Map.Entry<String, FileStamp> d : e.dependencies.entrySet()) {
+            if (!isUnchanged(Path.of(d.getKey()), d.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that a source file has been successfully compiled into a class directory.
+     *
+     * @param srcFile      the source file
+     * @param clsDir       the class directory
+     * @param clsFiles     the class files compiled from the source file
+     * @param dependencies the source files for the library classes referenced by the class files
+     */
+    public void recordCompiled(Path srcFile, Path clsDir, Collection<Path> clsFiles, Collection<Path> dependencies) {
+        String key = getKey(srcFile, clsDir);
+        FileStamp src = getStamp(srcFile);
+        Map<String, FileStamp> classes = new LinkedHashMap<>();
+        for (Path c : clsFiles) {
+            FileStamp s = getStamp(c);
+            if (s == null) {
+                classes = null;
+                break;
+            }
+            classes.put(c.toString(), s);
+        }
+        if (src == null || classes == null || classes.isEmpty()) {
+            entries.remove(key);
+        } else {
+            Map<String, FileStamp> deps = new LinkedHashMap<>();
+            for (Path d : dependencies) {
+                if (d.equals(srcFile)) {
+                    continue;
+                }
+                FileStamp s = getStamp(d);
+                if (s != null) {
+                    deps.put(d.toString(), s);
+                }
+            }
+            entries.put(key, new Entry(src, Collections.unmodifiableMap(classes), Collections.unmodifiableMap(deps)));
+        }
+        modified = true;
+    }
+
+    /**
+     * Returns the key for the information recorded when a source file is compiled
+     * into a class directory. The same source file may be compiled into different
+     * class directories, such as when a library is used by tests in different
+     * modes, or with different versions of the library.
+     */
+    private static String getKey(Path srcFile, Path clsDir) {
+        return clsDir + File.pathSeparator + srcFile;
+    }
+
+    /**
+     * Returns the class files in the directories of the given class files that were
+     * compiled from the corresponding source files. For each source file, the class
+     * files are the given class file, and any class files in the same directory for
+     * nested classes of that class, or whose {@code SourceFile} attribute names the
+     * source file, such as those for local and anonymous classes, and for any
+     * other top-level classes declared in the source file.
+     * Each directory is read at most once, however many source files are given.
+     *
+     * @param primaryClassFiles the class files for the classes named by the source files,
+     *                          indexed by the source file
+     * @return the class files compiled from each source file
+     * @throws IOException if there is a problem reading the directories or class files
+     */
+    public static Map<Path, Set<Path>> getClassFiles(Map<Path, Path> primaryClassFiles) throws IOException {
+        Map<Path, Map<String, Set<Path>>> dirs = new LinkedHashMap<>();
+        Map<Path, Set<Path>> results = new LinkedHashMap<>();
+        for (Map.Entry<Path, Path> e : primaryClassFiles.entrySet()) {
+            Path srcFile = e.getKey();
+            Path clsFile = e.getValue();
+            Map<String, Set<Path>> bySource = dirs.get(clsFile.getParent());
+            if (bySource == null) {
+                dirs.put(clsFile.getParent(), bySource = getClassFilesBySource(clsFile.getParent()));
+            }
+            Set<Path> files = new LinkedHashSet<>();
+            files.add(clsFile);
+            files.addAll(bySource.getOrDefault(srcFile.getFileName().toString(), Collections.emptySet()));
+            String clsName = clsFile.getFileName().toString();
+            String nestedPrefix = clsName.substring(0, clsName.length() - ".class".length()) + "$";
+            for (Set<Path> s : bySource.values()) {
+                for (Path f : s) {
+                    if (f.getFileName().toString().startsWith(nestedPrefix)) {
+                        files.add(f);
+                    }
+                }
+            }
+            results.put(srcFile, files);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the class files in a directory, grouped by the name of the source file
+     * given in their {@code SourceFile} attribute. Class files without the attribute
+     * are grouped under the empty string.
+     */
+    private static Map<String, Set<Path>> getClassFilesBySource(Path dir) throws IOException {
+        Map<String, Set<Path>> map = new LinkedHashMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.class")) {
+            for (Path f : ds) {
+                String s = getSourceFileName(f);
+                map.computeIfAbsent(s == null ? "" : s, k -> new LinkedHashSet<>()).add(f);
+            }
+        } catch (NoSuchFileException e) {
+            // no class files were written in the directory
+        }
+        return map;
+    }
+
+    /**
+     * Returns the name of the source file given in the {@code SourceFile} attribute
+     * of a class file.
+     *
+     * @param clsFile the class file
+     * @return the name, or {@code null} if the class file does not have the attribute
+     * @throws IOException if there is a problem reading the class file
+     */
+    public static String getSourceFileName(Path clsFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(clsFile)))) {
+            String[] utf8 = readConstantPool(in, clsFile, null);
+            in.skipBytes(6); // access flags, this class, super class
+            int interfaces = in.readUnsignedShort();
+            in.skipBytes(2 * interfaces);
+            for (int members = 0; members < 2; members++) { // fields, methods
+                int count = in.readUnsignedShort();
+                for (int i = 0; i < count; i++) {
+                    in.skipBytes(6); // access flags, name, descriptor
+                    skipAttributes(in);
+                }
+            }
+            int attrs = in.readUnsignedShort();
+            for (int i = 0; i < attrs; i++) {
+                String name = utf8[in.readUnsignedShort()];
+                int length = in.readInt();
+                if ("SourceFile".equals(name)) {
+                    return utf8[in.readUnsignedShort()];
+                }
+                in.skipBytes(length);
+            }
+            return null;
+        }
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            in.skipBytes(2); // name
+            in.skipBytes(in.readInt());
+        }
+    }
+
+    /**
+     * Returns the names of the classes referenced by a class file.
+     * The names include those of classes that are used in the descriptors
+     * of fields and methods, and so may include the names of classes that
+     * are only used in the signatures of members of the class.
+     * The names are in the internal form, using {@code /} to separate
+     * the components of the name.
+     *
+     * @param clsFile the class file
+     * @return the names
+     * @throws IOException if there is a problem reading the class file
+     */
+    public static Set<String> getReferencedClasses(Path clsFile) throws IOException {
+        Set<String> names = new LinkedHashSet<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(clsFile)))) {
+            List<String> classNames = new ArrayList<>();
+            String[] utf8 = readConstantPool(in, clsFile, classNames);
+            for (String name : classNames) {
+                if (name != null) {
+                    if (name.startsWith("[")) {
+                        addDescriptorClasses(name, names);
+                    } else {
+                        names.add(name);
+                    }
+                }
+            }
+            for (String s : utf8) {
+                if (s != null && !s.isEmpty() && "([L<".indexOf(s.charAt(0)) != -1) {
+                    addDescriptorClasses(s, names);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Reads the header and constant pool of a class file.
+     *
+     * @param in         the stream from which to read the class file
+     * @param clsFile    the class file, for use in any exception
+     * @param classNames a list to which to add the names of the {@code Class}
+     *                   entries in the constant pool, or {@code null}
+     * @return the {@code Utf8} entries in the constant pool, indexed by their position
+     * @throws IOException if there is a problem reading the class file
+     */
+    private static String[] readConstantPool(DataInputStream in, Path clsFile, List<String> classNames)
+            throws IOException {
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("bad class file: " + clsFile);
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int[] classIndexes = new int[count];
+        int numClasses = 0;
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1:     // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7:     // Class
+                    classIndexes[numClasses++] = in.readUnsignedShort();
+                    break;
+                case 8:     // String
+                case 16:    // MethodType
+                case 19:    // Module
+                case 20:    // Package
+                    in.skipBytes(2);
+                    break;
+                case 15:    // MethodHandle
+                    in.skipBytes(3);
+                    break;
+                case 3:     // Integer
+                case 4:     // Float
+                case 9:     // Fieldref
+                case 10:    // Methodref
+                case 11:    // InterfaceMethodref
+                case 12:    // NameAndType
+                case 17:    // Dynamic
+                case 18:    // InvokeDynamic
+                    in.skipBytes(4);
+                    break;
+                case 5:     // Long
+                case 6:     // Double
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("bad constant pool tag " + tag + " in " + clsFile);
+            }
+        }
+        if (classNames != null) {
+            for (int i = 0; i < numClasses; i++) {
+                classNames.add(utf8[classIndexes[i]]);
+            }
+        }
+        return utf8;
+    }
+
+    private static void addDescriptorClasses(String descriptor, Set<String> names) {
+        int i = 0;
+        while ((i = descriptor.indexOf('L', i)) != -1) {
+            int end = i + 1;
+            while (end < descriptor.length() && ";<>()[".indexOf(descriptor.charAt(end)) == -1) {
+                end++;
+            }
+            if (end < descriptor.length() && end > i + 1
+                    && (descriptor.charAt(end) == ';' || descriptor.charAt(end) == '<')) {
+                names.add(descriptor.substring(i + 1, end));
+            }
+            i = end;
+        }
+    }
+
+    /**
+     * Writes the recorded information to its file, if it has been modified.
+     *
+     * @throws IOException if there is a problem writing the file
+     */
+    public void write() throws IOException {
+        if (!modified) {
+            return;
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.createDirectories(file.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            writeString(out, getVersionKey());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> me : entries.entrySet()) {
+                Entry e = me.getValue();
+                writeString(out, me.getKey());
+                writeStamp(out, e.source);
+                out.writeInt(e.classFiles.size());
+                for (Map.Entry<String, FileStamp> c : e.classFiles.entrySet()) {
+                    writeString(out, c.getKey());
+                    writeStamp(out, c.getValue());
+                }
+                out.writeInt(e.dependencies.size());
+                for (Map.Entry<String, FileStamp> d : e.dependencies.entrySet()) {
+                    writeString(out, d.getKey());
+                    writeStamp(out, d.getValue());
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        modified = false;
+    }
+
+    private void read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !readString(in).equals(getVersionKey())) {
+                return;
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String key = readString(in);
+                FileStamp source = readStamp(in);
+                int nc = in.readInt();
+                Map<String, FileStamp> classFiles = new LinkedHashMap<>();
+                for (int j = 0; j < nc; j++) {
+                    String c = readString(in);
+                    classFiles.put(c, readStamp(in));
+                }
+                int nd = in.readInt();
+                Map<String, FileStamp> deps = new LinkedHashMap<>();
+                for (int j = 0; j < nd; j++) {
+                    String d = readString(in);
+                    deps.put(d, readStamp(in));
+                }
+                entries.put(key, new Entry(source, Collections.unmodifiableMap(classFiles),
+                        Collections.unmodifiableMap(deps)));
+            }
+        } catch (NoSuchFileException e) {
+            // no information saved by a previous run
+        } catch (IOException | RuntimeException e) {
+            // ignore the content of a bad file; it will be rewritten
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns whether a file is unchanged since a stamp was recorded for it.
+     * The digest of the contents of the file is only computed if the size
+     * is the same but the last-modified time is different, and is saved
+     * so that it need not be computed again while the file is not modified.
+     */
+    private boolean isUnchanged(Path f, FileStamp stamp) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(f, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return false;
+        }
+        if (attrs.size() != stamp.size) {
+            return false;
+        }
+        if (attrs.lastModifiedTime().toMillis() == stamp.lastModified) {
+            return true;
+        }
+        FileStamp current = getStamp(f, attrs);
+        return current != null && Arrays.equals(current.digest, stamp.digest);
+    }
+
+    private FileStamp getStamp(Path f) {
+        try {
+            return getStamp(f, Files.readAttributes(f, BasicFileAttributes.class));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private FileStamp getStamp(Path f, BasicFileAttributes attrs) {
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        FileStamp s = stamps.get(f);
+        if (s != null && s.size == size && s.lastModified == lastModified) {
+            return s;
+        }
+        try {
+            s = new FileStamp(size, lastModified, digest(Files.readAllBytes(f)));
+        } catch (IOException e) {
+            return null;
+        }
+        stamps.put(f, s);
+        return s;
+    }
+
+    /**
+     * Returns a string that identifies the version of jtreg,
+     * such that any information written by a different version will be ignored.
+     */
+    private static String getVersionKey() {
+        Version v = Version.getCurrent();
+        return FORMAT_VERSION
+                + " " + v.product + " " + v.version + " " + v.milestone + " " + v.build
+                + " " + v.buildDate;
+    }
+
+    private static void writeStamp(DataOutputStream out, FileStamp s) throws IOException {
+        out.writeLong(s.size);
+        out.writeLong(s.lastModified);
+        out.writeInt(s.digest.length);
+        out.write(s.digest);
+    }
+
+    private static FileStamp readStamp(DataInputStream in) throws IOException {
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        byte[] digest = new byte[in.readInt()];
+        in.readFully(digest);
+        return new FileStamp(size, lastModified, digest);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final int MAGIC = 0x4A544253; // "JTBS"
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /** The stamps for files whose contents have been read in this run. */
+    private final Map<Path, FileStamp> stamps = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+}
@@ -25,16 +25,24 @@
 
 package com.sun.javatest.regtest.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.sun.javatest.TestDescription;
 import com.sun.javatest.TestFilter;
 
 /**
  * A test filter that caches its results.
+ *
+ * <p>The filter may be used by multiple threads at once. The value for each
+ * cache key is determined at most once, and the filter records how many times
+ * a value was found in the cache, how many times it had to be determined,
+ * and the total time spent determining values.
  */
 public abstract class CachingTestFilter extends TestFilter {
     private final String name;
@@ -49,7 +57,13 @@ public abstract class CachingTestFilter extends TestFilter {
             this.value = v;
         }
     }
-    private final Map<String, Entry> cache = new HashMap<>();
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    // ConcurrentHashMap does not permit null keys
+    private volatile Entry nullKeyEntry;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evalNanos = new LongAdder();
 
     /**
      * Creates a CachingTestFilter.
@@ -86,14 +100,52 @@ public abstract class CachingTestFilter extends TestFilter {
      * @return the entries
      */
     public Collection<Entry> getCacheEntries() {
-        return Collections.unmodifiableCollection(cache.values());
+        Entry e = nullKeyEntry;
+        if (e == null) {
+            return Collections.unmodifiableCollection(cache.values());
+        } else {
+            Collection<Entry> entries = new ArrayList<>(cache.values());
+            entries.add(e);
+            return Collections.unmodifiableCollection(entries);
+        }
     }
 
     /**
      * Clears all entries from the cache.
+     * The statistics for the filter are not affected.
      */
     public void clear() {
         cache.clear();
+        nullKeyEntry = null;
+    }
+
+    /**
+     * Returns the number of times that the value for a test description
+     * was found in the cache.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of times that the value for a test description
+     * was not found in the cache, and had to be determined.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the total time spent in {@code getCacheableValue}.
+     *
+     * @return the time
+     */
+    public Duration getEvaluationTime() {
+        return Duration.ofNanos(evalNanos.sum());
     }
 
     @Override
@@ -124,10 +176,63 @@ public abstract class CachingTestFilter extends TestFilter {
     @Override
     public final boolean accepts(TestDescription td) throws Fault {
         String key = getCacheKey(td);
-        Entry e = cache.get(key);
-        if (e == null) {
-            cache.put(key, e = new Entry(td, getCacheableValue(td)));
+        Entry e = (key == null) ? nullKeyEntry : cache.get(key);
+        if (e != null) {
+            hits.increment();
+            return e.value;
+        }
+
+        if (key == null) {
+            synchronized (this) {
+                e = nullKeyEntry;
+                if (e == null) {
+                    nullKeyEntry = e = newEntry(td);
+                } else {
+                    hits.increment();
+                }
+            }
+        } else {
+            boolean[] computed = { false };
+            try {
+                e = cache.computeIfAbsent(key, k -> {
+                    computed[0] = true;
+                    try {
+                        return newEntry(td);
+                    } catch (Fault f) {
+                        throw new WrappedFault(f);
+                    }
+                });
+            } catch (WrappedFault wf) {
+                throw wf.fault;
+            }
+            if (!computed[0]) {
+                hits.increment();
+            }
         }
         return e.value;
     }
+
+    private Entry newEntry(TestDescription td) throws Fault {
+        misses.increment();
+        long start = System.nanoTime();
+        try {
+            return new Entry(td, getCacheableValue(td));
+        } finally {
+            evalNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Used to propagate a fault from {@code getCacheableValue} out of
+     * {@code ConcurrentHashMap.computeIfAbsent}.
+     */
+    private static class WrappedFault extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final Fault fault;
+
+        WrappedFault(Fault fault) {
+            super(fault);
+            this.fault = fault;
+        }
+    }
 }
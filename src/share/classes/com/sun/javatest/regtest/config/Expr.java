@@ -25,10 +25,17 @@
 
 package com.sun.javatest.regtest.config;
 
+import java.util.regex.Pattern;
+
 import static com.sun.javatest.regtest.config.Expr.Token.*;
 
 /**
  * Class to support simple expressions for @requires.
+ *
+ * <p>An expression is parsed once, into a tree of nodes, which may then be
+ * evaluated many times. Each node can be evaluated as a string, a boolean,
+ * or a number; nodes for boolean and numeric operators compute their value
+ * directly, without converting intermediate values to and from strings.
  */
 public abstract class Expr {
 
@@ -42,6 +49,17 @@ public abstract class Expr {
     public interface Context {
         boolean isValidName(String name);
         String get(String name) throws Fault;
+
+        /**
+         * Returns whether the value for each name in this context is fixed,
+         * such that an expression may save the value for a name after the
+         * first time it is evaluated in this context.
+         *
+         * @return {@code true} if the values in this context are fixed
+         */
+        default boolean isFixed() {
+            return false;
+        }
     }
 
     public static Expr parse(String s, Context c) throws Fault {
@@ -480,7 +498,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalNumber(c) + right.evalNumber(c));
+            return String.valueOf(evalNumber(c));
+        }
+
+        @Override
+        public long evalNumber(Context c) throws Fault {
+            return left.evalNumber(c) + right.evalNumber(c);
         }
 
         int precedence() {
@@ -502,7 +525,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalBoolean(c) ? right.evalBoolean(c) : false);
+            return String.valueOf(evalBoolean(c));
+        }
+
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            return left.evalBoolean(c) && right.evalBoolean(c);
         }
 
         int precedence() {
@@ -524,7 +552,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalNumber(c) / right.evalNumber(c));
+            return String.valueOf(evalNumber(c));
+        }
+
+        @Override
+        public long evalNumber(Context c) throws Fault {
+            return left.evalNumber(c) / right.evalNumber(c);
         }
 
         int precedence() {
@@ -546,7 +579,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.eval(c).equalsIgnoreCase(right.eval(c)));
+            return String.valueOf(evalBoolean(c));
+        }
+
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            return left.eval(c).equalsIgnoreCase(right.eval(c));
         }
 
         int precedence() {
@@ -568,7 +606,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalNumber(c) > right.evalNumber(c));
+            return String.valueOf(evalBoolean(c));
+        }
+
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            return left.evalNumber(c) > right.evalNumber(c);
         }
 
         int precedence() {
@@ -590,7 +633,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalNumber(c) >= right.evalNumber(c));
+            return String.valueOf(evalBoolean(c));
+        }
+
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            return left.evalNumber(c) >= right.evalNumber(c);
         }
 
         int precedence() {
@@ -612,7 +660,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalNumber(c) < right.evalNumber(c));
+            return String.valueOf(evalBoolean(c));
+        }
+
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            return left.evalNumber(c) < right.evalNumber(c);
         }
 
         int precedence() {
@@ -634,7 +687,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalNumber(c) <= right.evalNumber(c));
+            return String.valueOf(evalBoolean(c));
+        }
+
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            return left.evalNumber(c) <= right.evalNumber(c);
         }
 
         int precedence() {
@@ -656,7 +714,26 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.eval(c).matches(right.eval(c)));
+            return String.valueOf(evalBoolean(c));
+        }
+
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            String s = left.eval(c);
+            return getPattern(right.eval(c)).matcher(s).matches();
+        }
+
+        /**
+         * Returns the compiled form of a regular expression.
+         * The right operand is almost always a string constant, and so the
+         * pattern is compiled once and reused, unless the value changes.
+         */
+        private Pattern getPattern(String regex) {
+            Pattern p = pattern;
+            if (p == null || !p.pattern().equals(regex)) {
+                pattern = p = Pattern.compile(regex);
+            }
+            return p;
         }
 
         int precedence() {
@@ -667,6 +744,8 @@ public abstract class Expr {
         public String toString() {
             return "`" + left + "~=" + right + "'";
         }
+
+        private volatile Pattern pattern;
     }
 
     //--------------------------------------------------------------------------
@@ -678,7 +757,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalNumber(c) * right.evalNumber(c));
+            return String.valueOf(evalNumber(c));
+        }
+
+        @Override
+        public long evalNumber(Context c) throws Fault {
+            return left.evalNumber(c) * right.evalNumber(c);
         }
 
         int precedence() {
@@ -700,10 +784,37 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
+            return getBinding(c).value;
+        }
+
+        @Override
+        public long evalNumber(Context c) throws Fault {
+            Binding b = getBinding(c);
+            if (!b.isNumber) {
+                throw new Fault("invalid numeric value: " + b.value);
+            }
+            return b.number;
+        }
+
+        /**
+         * Returns the value of the name in a given context.
+         * If the values in the context are fixed, the value is saved,
+         * along with its numeric value, if any, for use in subsequent
+         * evaluations in the same context.
+         */
+        private Binding getBinding(Context c) throws Fault {
+            Binding b = binding;
+            if (b != null && b.context == c) {
+                return b;
+            }
             String v = c.get(name);
             if (v == null)
                 throw new Fault("name not defined: " + name);
-            return v;
+            b = new Binding(c, v);
+            if (c.isFixed()) {
+                binding = b;
+            }
+            return b;
         }
 
         int precedence() {
@@ -715,7 +826,30 @@ public abstract class Expr {
             return name;
         }
 
+        private static class Binding {
+            final Context context;
+            final String value;
+            final long number;
+            final boolean isNumber;
+
+            Binding(Context context, String value) {
+                this.context = context;
+                this.value = value;
+                long n = 0;
+                boolean b;
+                try {
+                    n = Long.parseLong(value);
+                    b = true;
+                } catch (NumberFormatException e) {
+                    b = false;
+                }
+                number = n;
+                isNumber = b;
+            }
+        }
+
         private final String name;
+        private volatile Binding binding;
     }
 
     //--------------------------------------------------------------------------
@@ -727,7 +861,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(!left.eval(c).equalsIgnoreCase(right.eval(c)));
+            return String.valueOf(evalBoolean(c));
+        }
+
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            return !left.eval(c).equalsIgnoreCase(right.eval(c));
         }
 
         int precedence() {
@@ -749,7 +888,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(!expr.evalBoolean(c));
+            return String.valueOf(evalBoolean(c));
+        }
+
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            return !expr.evalBoolean(c);
         }
 
         int precedence() {
@@ -770,24 +914,50 @@ public abstract class Expr {
 
         NumberExpr(String value) {
             this.value = value;
-        }
 
-        public String eval(Context c) throws Fault {
+            // The value is a constant, and so is converted once, here.
+            // Any error is reported when the expression is evaluated.
             long scale;
             char lastCh = value.charAt(value.length() -1);
             switch (lastCh) {
                 case 'k': case 'K': scale = 1024; break;
                 case 'm': case 'M': scale = 1024 * 1024; break;
                 case 'g': case 'G': scale = 1024 * 1024 * 1024; break;
-                default:
-                    return value;
+                default: scale = 0;
             }
+            String s = null;
+            long n = 0;
+            boolean isNumber;
             try {
-                String s = value.substring(0, value.length() - 1);
-                return String.valueOf(Long.parseLong(s) * scale);
+                if (scale == 0) {
+                    s = value;
+                    n = Long.parseLong(value);
+                } else {
+                    n = Long.parseLong(value.substring(0, value.length() - 1)) * scale;
+                    s = String.valueOf(n);
+                }
+                isNumber = true;
             } catch (NumberFormatException ex) {
+                isNumber = false;
+            }
+            stringValue = s;
+            numberValue = n;
+            isNumberValue = isNumber;
+        }
+
+        public String eval(Context c) throws Fault {
+            if (stringValue == null) {
                 throw new Fault("invalid numeric value: " + value);
             }
+            return stringValue;
+        }
+
+        @Override
+        public long evalNumber(Context c) throws Fault {
+            if (!isNumberValue) {
+                throw new Fault("invalid numeric value: " + eval(c));
+            }
+            return numberValue;
         }
 
         int precedence() {
@@ -800,6 +970,9 @@ public abstract class Expr {
         }
 
         private final String value;
+        private final String stringValue;
+        private final long numberValue;
+        private final boolean isNumberValue;
     }
 
     //--------------------------------------------------------------------------
@@ -811,7 +984,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalBoolean(c) ? true : right.evalBoolean(c));
+            return String.valueOf(evalBoolean(c));
+        }
+
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            return left.evalBoolean(c) || right.evalBoolean(c);
         }
 
         int precedence() {
@@ -836,6 +1014,40 @@ public abstract class Expr {
             return expr.eval(c);
         }
 
+        /**
+         * {@inheritDoc}
+         *
+         * <p>The enclosed expression is evaluated directly as a boolean, without
+         * converting the value to and from a string. If the value is not valid,
+         * the expression is evaluated again as a string, so that the error
+         * is reported in terms of this expression, as in the general case.
+         */
+        @Override
+        public boolean evalBoolean(Context c) throws Fault {
+            try {
+                return expr.evalBoolean(c);
+            } catch (Fault f) {
+                return super.evalBoolean(c);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>The enclosed expression is evaluated directly as a number, without
+         * converting the value to and from a string. If the value is not valid,
+         * the expression is evaluated again as a string, so that the error
+         * is reported as in the general case.
+         */
+        @Override
+        public long evalNumber(Context c) throws Fault {
+            try {
+                return expr.evalNumber(c);
+            } catch (Fault f) {
+                return super.evalNumber(c);
+            }
+        }
+
         int precedence() {
             return PREC_PRN;
         }
@@ -857,7 +1069,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalNumber(c) % right.evalNumber(c));
+            return String.valueOf(evalNumber(c));
+        }
+
+        @Override
+        public long evalNumber(Context c) throws Fault {
+            return left.evalNumber(c) % right.evalNumber(c);
         }
 
         int precedence() {
@@ -903,7 +1120,12 @@ public abstract class Expr {
         }
 
         public String eval(Context c) throws Fault {
-            return String.valueOf(left.evalNumber(c) - right.evalNumber(c));
+            return String.valueOf(evalNumber(c));
+        }
+
+        @Override
+        public long evalNumber(Context c) throws Fault {
+            return left.evalNumber(c) - right.evalNumber(c);
         }
 
         int precedence() {
@@ -34,6 +34,7 @@ import java.io.PrintStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -42,6 +43,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.sun.javatest.regtest.agent.SearchPath;
+import com.sun.javatest.regtest.util.DigestUtils;
 import com.sun.javatest.regtest.util.FileUtils;
 
 
@@ -151,6 +153,55 @@ public class ExtraPropDefns {
         classes = compile(jdk, classDir, new SearchPath(bootClassDir), baseDir, files, false);
     }
 
+    /**
+     * Returns a digest of the source files for the classes used to get the
+     * extra properties, and of the options used to compile and run them.
+     * The digest can be used to determine whether the extra properties
+     * may have changed since they were previously determined.
+     *
+     * @param params the parameters used to locate the source files
+     * @return the digest
+     * @throws Fault if there is a problem reading the source files
+     */
+    byte[] getDigest(RegressionParameters params) throws Fault {
+        MessageDigest md = DigestUtils.newDigest();
+        Path baseDir = params.getTestSuite().getRootDir().toPath();
+        update(md, javacOpts);
+        update(md, vmOpts);
+        update(md, baseDir, bootLibs, true);
+        update(md, baseDir, libs, true);
+        update(md, baseDir, files, false);
+        return md.digest();
+    }
+
+    private void update(MessageDigest md, Path srcDir, List<String> files, boolean allowDirs) throws Fault {
+        update(md, files);
+        for (String e : files) {
+            if (e.startsWith("[") && e.endsWith("]")) {
+                e = e.substring(1, e.length() - 1);
+            }
+            Path f = srcDir.resolve(e);
+            if (!Files.exists(f)) {
+                continue;
+            }
+            for (Path sf : expandJavaFiles(f, allowDirs)) {
+                DigestUtils.update(md, srcDir.relativize(sf).toString());
+                try {
+                    DigestUtils.update(md, Files.readAllBytes(sf));
+                } catch (IOException ex) {
+                    throw new Fault("Problem reading " + sf, ex);
+                }
+            }
+        }
+    }
+
+    private void update(MessageDigest md, List<String> list) {
+        DigestUtils.update(md, String.valueOf(list.size()));
+        for (String s : list) {
+            DigestUtils.update(md, s);
+        }
+    }
+
     Path getClassDir() {
         return classDir;
     }
@@ -26,7 +26,6 @@
 package com.sun.javatest.regtest.config;
 
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.URI;
@@ -38,7 +37,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -243,143 +242,124 @@ public class GroupManager {
 
         Set<Path> getFiles() {
             if (files == null) {
-                files = new LinkedHashSet<>();
-                Set<Path> inclFiles = new HashSet<>();
-                Set<Path> exclFiles = new HashSet<>();
+                PathTrie trie = new PathTrie();
                 for (Entry e: entries) {
-                    inclFiles.addAll(e.includeFiles);
+                    e.includeFiles.forEach(trie::include);
                     for (Group g: e.includeGroups)
-                        inclFiles.addAll(g.getFiles());
-                    exclFiles.addAll(e.excludeFiles);
+                        g.getFiles().forEach(trie::include);
+                    e.excludeFiles.forEach(trie::exclude);
                     for (Group g: e.excludeGroups)
-                        exclFiles.addAll(g.getFiles());
+                        g.getFiles().forEach(trie::exclude);
                 }
-                addFiles(files, inclFiles, exclFiles);
+                files = trie.getPaths();
             }
             return files;
         }
 
-        private void addFiles(Collection<Path> files, Collection<Path> includes, Collection<Path> excludes) {
-            for (Path incl: includes) {
-                if (contains(files, incl) || contains(excludes, incl))
-                    continue;
-
-                if (Files.isRegularFile(incl))
-                    addFile(files, incl);
-                else if (Files.isDirectory(incl)) {
-                    Set<Path> excludesForIncl = filter(incl, excludes);
-                    if (excludesForIncl.isEmpty())
-                        addFile(files, incl);
-                    else
-                        addFiles(files, list(incl), excludesForIncl);
-                }
-            }
-        }
-
-        private void addFile(Collection<File> files, File file) {
-            for (Iterator<File> iter = files.iterator(); iter.hasNext(); ) {
-                File f = iter.next();
-                if (contains(file, f))
-                    iter.remove();
-            }
-            files.add(file);
-        }
-
-        private void addFile(Collection<Path> files, Path file) {
-            for (Iterator<Path> iter = files.iterator(); iter.hasNext(); ) {
-                Path f = iter.next();
-                if (contains(file, f))
-                    iter.remove();
-            }
-            files.add(file);
+        @Override
+        public String toString() {
+            return name;
         }
+    }
 
-        private boolean contains(Collection<File> files, File file) {
-            for (File f: files) {
-                if (f.equals(file) || contains(f, file)) {
-                    return true;
-                }
+    /**
+     * A set of files and directories to be included or excluded, organized as a trie
+     * of the names in their paths, so that the files and directories that are included
+     * and not excluded can be determined without comparing every path with every other.
+     *
+     * <p>A directory that is included, and which contains some paths that are excluded,
+     * is replaced by its contents; otherwise, a directory that is included is given
+     * by its own path, and not the paths of any files and directories that it contains.
+     */
+    private class PathTrie {
+        private class Node {
+            final Path path;
+            final Map<String, Node> children = new LinkedHashMap<>();
+            boolean included;
+            boolean excluded;
+            boolean containsExcluded;
+
+            Node(Path path) {
+                this.path = path;
             }
-            return false;
         }
 
-        private boolean contains(Collection<Path> files, Path file) {
-            for (Path f: files) {
-                if (f.equals(file) || contains(f, file)) {
-                    return true;
-                }
-            }
-            return false;
-        }
+        private final Node rootNode = new Node(root);
 
-        private boolean contains(File dir, File file) {
-            String dirPath = dir.getPath();
-            if (!dirPath.endsWith(File.separator))
-                dirPath += File.separator;
-            return file.getPath().startsWith(dirPath);
+        void include(Path p) {
+            getNode(p, false).included = true;
         }
 
-        private boolean contains(Path dir, Path file) {
-            return file.startsWith(dir);
+        void exclude(Path p) {
+            getNode(p, true).excluded = true;
         }
 
-        private Set<File> filter(File dir, Collection<File> files) {
-            Set<File> results = null;
-            String dirPath = dir.getPath();
-            if (!dirPath.endsWith(File.separator))
-                dirPath += File.separator;
-            for (File f: files) {
-                String fp = f.getPath();
-                if (fp.startsWith(dirPath)) {
-                    if (results == null) results = new LinkedHashSet<>();
-                    results.add(f);
-                }
+        private Node getNode(Path p, boolean exclude) {
+            Node n = rootNode;
+            Path rel = root.relativize(p);
+            if (rel.toString().isEmpty())
+                return n;
+            for (Path name: rel) {
+                if (exclude)
+                    n.containsExcluded = true;
+                Node parent = n;
+                n = parent.children.computeIfAbsent(name.toString(), k -> new Node(parent.path.resolve(k)));
             }
-            return results == null ? Collections.<File>emptySet() : results;
+            return n;
         }
 
-        private Set<Path> filter(Path dir, Collection<Path> files) {
-            Set<Path> results = null;
-            for (Path f: files) {
-                if (f.startsWith(dir)) {
-                    if (results == null) results = new LinkedHashSet<>();
-                    results.add(f);
-                }
-            }
-            return results == null ? Set.of() : results;
+        Set<Path> getPaths() {
+            Set<Path> results = new LinkedHashSet<>();
+            addPaths(rootNode, false, results);
+            return results;
         }
 
-        private List<File> list(File file) {
-            List<File> children = new ArrayList<>();
-            for (File f: file.listFiles()) {
-                String fn = f.getName();
-                if (f.isDirectory() && !ignoreDirs.contains(fn)
-                        || f.isFile() && allowExtns.contains(getExtension(fn)))
-                    children.add(f);
-            }
-            return children;
-        }
+        private void addPaths(Node n, boolean included, Set<Path> results) {
+            if (n.excluded)
+                return;
 
-        private List<Path> list(Path file) {
-            List<Path> children = new ArrayList<>();
-            for (Path f: FileUtils.listFiles(file)) {
-                String fn = f.getFileName().toString();
-                if (Files.isDirectory(f) && !ignoreDirs.contains(fn)
-                        || Files.isRegularFile(f) && allowExtns.contains(getExtension(fn)))
-                    children.add(f);
+            if (included || n.included) {
+                if (Files.isRegularFile(n.path) || Files.isDirectory(n.path) && !n.containsExcluded) {
+                    results.add(n.path);
+                } else if (Files.isDirectory(n.path)) {
+                    Set<String> listed = new HashSet<>();
+                    for (Path f: list(n.path)) {
+                        String fn = f.getFileName().toString();
+                        listed.add(fn);
+                        Node c = n.children.get(fn);
+                        if (c == null)
+                            results.add(f);
+                        else
+                            addPaths(c, true, results);
+                    }
+                    // explicitly included paths that are not normally listed,
+                    // such as files with extensions that are not allowed
+                    for (Node c: n.children.values()) {
+                        if (!listed.contains(c.path.getFileName().toString()))
+                            addPaths(c, false, results);
+                    }
+                }
+            } else {
+                for (Node c: n.children.values())
+                    addPaths(c, false, results);
             }
-            return children;
         }
+    }
 
-        private String getExtension(String name) {
-            int sep = name.lastIndexOf(".");
-            return (sep == -1) ? null : name.substring(sep);
+    private List<Path> list(Path file) {
+        List<Path> children = new ArrayList<>();
+        for (Path f: FileUtils.listFiles(file)) {
+            String fn = f.getFileName().toString();
+            if (Files.isDirectory(f) && !ignoreDirs.contains(fn)
+                    || Files.isRegularFile(f) && allowExtns.contains(getExtension(fn)))
+                children.add(f);
         }
+        return children;
+    }
 
-        @Override
-        public String toString() {
-            return name;
-        }
+    private String getExtension(String name) {
+        int sep = name.lastIndexOf(".");
+        return (sep == -1) ? null : name.substring(sep);
     }
 
     class Entry {
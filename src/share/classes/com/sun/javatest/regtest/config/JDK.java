@@ -31,11 +31,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -44,7 +46,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -110,6 +114,19 @@ public class JDK {
 
     private static final Map<Path, JDK> cache = new HashMap<>();
 
+    /**
+     * Sets the directory in which to save the information that is determined
+     * by running code in a JDK, so that the information can be reused by
+     * subsequent runs of jtreg, without running the code again.
+     *
+     * @param dir the directory, or {@code null} if the information should not be saved
+     */
+    public static void setProbeCacheDirectory(Path dir) {
+        probeCache = (dir == null) ? null : new JDKProbeCache(dir);
+    }
+
+    private static volatile JDKProbeCache probeCache;
+
     /**
      * Creates a JDK object, given its "$JAVA_HOME" path.
      *
@@ -290,12 +307,13 @@ public class JDK {
      *
      * @return the version of this JDK
      */
-    public synchronized JDK_Version getJDKVersion(SearchPath classpath, Consumer<String> logger) {
-        if (jdkVersion == null) {
-            jdkVersion = JDK_Version.forName(getJavaSpecificationVersion(classpath, logger));
+    public JDK_Version getJDKVersion(SearchPath classpath, Consumer<String> logger) {
+        JDK_Version v = jdkVersion;
+        if (v == null) {
+            jdkVersion = v = JDK_Version.forName(getJavaSpecificationVersion(classpath, logger));
         }
 
-        return jdkVersion;
+        return v;
     }
 
     /**
@@ -310,22 +328,30 @@ public class JDK {
      *
      * @return the value of the {@code java.specification.version} property
      */
-    private synchronized String getJavaSpecificationVersion(SearchPath getSysPropClassPath,
-                                                            Consumer<String> logger) {
-        if (javaSpecificationVersion != null)
-            return javaSpecificationVersion;
+    private String getJavaSpecificationVersion(SearchPath getSysPropClassPath,
+                                               Consumer<String> logger) {
+        return javaSpecificationVersion.get(() -> execGetJavaSpecificationVersion(getSysPropClassPath, logger));
+    }
 
+    private String execGetJavaSpecificationVersion(SearchPath getSysPropClassPath,
+                                                   Consumer<String> logger) {
         final String VERSION_PROPERTY = "java.specification.version";
 
         for (Info info : infoMap.values()) {
-            if (info.jdkProperties != null) {
-                javaSpecificationVersion = info.jdkProperties.getProperty(VERSION_PROPERTY);
-                if (javaSpecificationVersion != null)
-                    return javaSpecificationVersion;
+            Properties props = info.jdkProperties.peek();
+            if (props != null) {
+                String v = props.getProperty(VERSION_PROPERTY);
+                if (v != null)
+                    return v;
             }
         }
 
-        javaSpecificationVersion = "unknown"; // default
+        List<String> key = getProbeKey(getLauncherEnv(), VERSION_PROPERTY);
+        Properties cached = getCachedProbe(key);
+        if (cached != null && cached.getProperty(VERSION_PROPERTY) != null)
+            return cached.getProperty(VERSION_PROPERTY);
+
+        String version = "unknown"; // default
         ProcessBuilder pb = new ProcessBuilder();
         // since we are trying to determine the Java version, we have to assume
         // the worst, and use CLASSPATH.
@@ -340,13 +366,17 @@ public class JDK {
                 for (String line : lines) {
                     String[] v = line.trim().split("=", 2);
                     if (v.length == 2 && v[0].equals(VERSION_PROPERTY)) {
-                        javaSpecificationVersion = v[1];
+                        version = v[1];
                         break;
                     }
                 }
-                if (javaSpecificationVersion.equals("unknown")) {
+                if (version.equals("unknown")) {
                     logger.accept("Error getting " + VERSION_PROPERTY + " for " + jdk + ": property not found in output");
                     lines.forEach(logger::accept);
+                } else {
+                    Properties props = new Properties();
+                    props.setProperty(VERSION_PROPERTY, version);
+                    putCachedProbe(key, props);
                 }
             } else {
                 logger.accept("Error getting " + VERSION_PROPERTY + " for " + jdk + ": exit code " + rc);
@@ -361,10 +391,10 @@ public class JDK {
         }
 
         // java.specification.version is not defined in JDK1.1.*
-        if (javaSpecificationVersion == null || javaSpecificationVersion.length() == 0)
-            javaSpecificationVersion = "1.1";
+        if (version == null || version.length() == 0)
+            version = "1.1";
 
-        return javaSpecificationVersion;
+        return version;
     }
 
     /**
@@ -375,42 +405,47 @@ public class JDK {
      *
      * @return the output from "{@code java -version}"
      */
-    public synchronized String getVersionText(Collection<String> vmOpts, Consumer<String> logger) {
-        if (fullVersions == null)
-            fullVersions = new HashMap<>();
+    public String getVersionText(Collection<String> vmOpts, Consumer<String> logger) {
+        Set<String> vmOptsSet = new LinkedHashSet<>(vmOpts);
+        return fullVersions.computeIfAbsent(vmOptsSet, k -> new Lazy<>())
+                .get(() -> execGetVersionText(vmOpts, logger));
+    }
 
+    private String execGetVersionText(Collection<String> vmOpts, Consumer<String> logger) {
         final String VERSION_OPTION = "-version";
 
-        Set<String> vmOptsSet = new LinkedHashSet<>(vmOpts);
-        String fullVersion = fullVersions.get(vmOptsSet);
-        if (fullVersion == null) {
-            fullVersion = "";  // default
-            List<String> cmdArgs = new ArrayList<>();
-            cmdArgs.add(getJavaProg().toString());
-            cmdArgs.addAll(vmOpts);
-            cmdArgs.add(VERSION_OPTION);
+        List<String> key = getProbeKey(getLauncherEnv(), VERSION_OPTION, vmOpts);
+        Properties cached = getCachedProbe(key);
+        if (cached != null && cached.getProperty(VERSION_OPTION) != null)
+            return cached.getProperty(VERSION_OPTION);
 
-            try {
-                Process p = new ProcessBuilder(cmdArgs)
-                        .redirectErrorStream(true)
-                        .start();
-                List<String> lines = getOutput(p, logger);
-                int rc = p.waitFor();
-                if (rc == 0) {
-                    fullVersion = StringUtils.join(lines, "\n");
-                } else {
-                    logger.accept("Error running 'java " + VERSION_OPTION + "' for " + jdk + ": exit code " + rc);
-                    lines.forEach(logger::accept);
-                }
-            } catch (InterruptedException e) {
-                // ignore, leave version as default
-                logger.accept("Error running 'java " + VERSION_OPTION + "' for " + jdk + ": " + e);
-            } catch (IOException e) {
-                // ignore, leave version as default
-                logger.accept("Error running 'java " + VERSION_OPTION + "' for " + jdk + ": " + e);
-            }
+        String fullVersion = "";  // default
+        List<String> cmdArgs = new ArrayList<>();
+        cmdArgs.add(getJavaProg().toString());
+        cmdArgs.addAll(vmOpts);
+        cmdArgs.add(VERSION_OPTION);
 
-            fullVersions.put(vmOptsSet, fullVersion);
+        try {
+            Process p = new ProcessBuilder(cmdArgs)
+                    .redirectErrorStream(true)
+                    .start();
+            List<String> lines = getOutput(p, logger);
+            int rc = p.waitFor();
+            if (rc == 0) {
+                fullVersion = StringUtils.join(lines, "\n");
+                Properties props = new Properties();
+                props.setProperty(VERSION_OPTION, fullVersion);
+                putCachedProbe(key, props);
+            } else {
+                logger.accept("Error running 'java " + VERSION_OPTION + "' for " + jdk + ": exit code " + rc);
+                lines.forEach(logger::accept);
+            }
+        } catch (InterruptedException e) {
+            // ignore, leave version as default
+            logger.accept("Error running 'java " + VERSION_OPTION + "' for " + jdk + ": " + e);
+        } catch (IOException e) {
+            // ignore, leave version as default
+            logger.accept("Error running 'java " + VERSION_OPTION + "' for " + jdk + ": " + e);
         }
 
         return fullVersion;
@@ -432,20 +467,37 @@ public class JDK {
      * @return the properties
      * @throws Fault if an error occurred while getting the properties
      */
-    public synchronized Properties getProperties(RegressionParameters params,
-                                                 Consumer<String> logger) throws Fault {
+    public Properties getProperties(RegressionParameters params,
+                                    Consumer<String> logger) throws Fault {
         Info info = getInfo(params);
 
-        if (info.jdkProperties == null) {
-            // get default modules as well
-            info.jdkProperties = execGetProperties(params,
-                    Collections.emptyList(),
-                    Arrays.asList("--system-properties", "--modules=boot-layer"),
-                    true,
-                    logger);
-        }
+        // get default modules as well
+        return info.jdkProperties.get(() -> execGetProperties(params,
+                Collections.emptyList(),
+                Arrays.asList("--system-properties", "--modules=boot-layer"),
+                true,
+                logger));
+    }
 
-        return info.jdkProperties;
+    /**
+     * Starts to get the information about this JDK that will be needed to run tests
+     * with the given parameters, so that any code that needs to be run in the JDK
+     * to get the information is run concurrently with other such code.
+     * Any errors will be reported when the information is subsequently requested.
+     *
+     * @param params the parameters
+     * @param logger an object to which to write logging messages
+     */
+    public void prefetch(RegressionParameters params, Consumer<String> logger) {
+        Thread t = new Thread(() -> {
+            try {
+                getSystemModules(params, logger);
+            } catch (IllegalStateException e) {
+                // ignore: the error will be reported when the modules are next requested
+            }
+        }, "JDK prefetch");
+        t.setDaemon(true);
+        t.start();
     }
 
     /**
@@ -478,28 +530,28 @@ public class JDK {
      *
      * @return the set of installed modules
      */
-    public synchronized Set<String> getDefaultModules(RegressionParameters params, Consumer<String> logger) {
+    public Set<String> getDefaultModules(RegressionParameters params, Consumer<String> logger) {
         Info info = getInfo(params);
 
-        if (info.defaultModules == null) {
+        return info.defaultModules.get(() -> {
+            Set<String> defaultModules;
             try {
                 Properties props = getProperties(params, logger);
                 String m = props.getProperty(GetJDKProperties.JTREG_MODULES);
                 if (m == null) {
-                    info.defaultModules = Collections.emptySet();
+                    defaultModules = Collections.emptySet();
                 } else {
-                    info.defaultModules = Collections.unmodifiableSet(
+                    defaultModules = Collections.unmodifiableSet(
                                 new LinkedHashSet<>(Arrays.asList(m.split(" +"))));
                 }
             } catch (Fault f) {
                 throw new IllegalStateException(f);
             }
             if (showModules) {
-                System.err.println("default modules: " + new TreeSet<>(info.defaultModules));
+                System.err.println("default modules: " + new TreeSet<>(defaultModules));
             }
-        }
-
-        return info.defaultModules;
+            return defaultModules;
+        });
     }
 
     /**
@@ -513,11 +565,12 @@ public class JDK {
      *
      * @return the set of installed modules
      */
-    public synchronized Set<String> getSystemModules(RegressionParameters params,
-                                                     Consumer<String> logger) {
+    public Set<String> getSystemModules(RegressionParameters params,
+                                        Consumer<String> logger) {
         Info info = getInfo(params);
 
-        if (info.systemModules == null) {
+        return info.systemModules.get(() -> {
+            Set<String> systemModules;
             if (getVersion(params, logger).compareTo(JDK_Version.V9) >= 0) {
                 try {
                     // Despite the name, --add-modules=ALL-SYSTEM does not
@@ -542,23 +595,22 @@ public class JDK {
                             Arrays.asList(modulesOpt), false, logger);  // requested info from probe
                     String m = props.getProperty(GetJDKProperties.JTREG_MODULES);
                     if (m == null) {
-                        info.systemModules = Collections.emptySet();
+                        systemModules = Collections.emptySet();
                     } else {
-                        info.systemModules = Collections.unmodifiableSet(
+                        systemModules = Collections.unmodifiableSet(
                                 new LinkedHashSet<>(Arrays.asList(m.split(" +"))));
                     }
                 } catch (Fault f) {
                     throw new IllegalStateException(f);
                 }
             } else {
-                info.systemModules = Collections.emptySet();
+                systemModules = Collections.emptySet();
             }
             if (showModules) {
-                System.err.println("system modules: " + new TreeSet<>(info.systemModules));
+                System.err.println("system modules: " + new TreeSet<>(systemModules));
             }
-        }
-
-        return info.systemModules;
+            return systemModules;
+        });
     }
 
     /**
@@ -571,6 +623,7 @@ public class JDK {
      */
     public boolean hasOldSymbolFile() {
         if (hasOldSymbolFile == null) {
+            String javaSpecificationVersion = this.javaSpecificationVersion.peek();
             if (javaSpecificationVersion != null) {
                 JDK_Version v = JDK_Version.forName(javaSpecificationVersion);
                 if (v.compareTo(JDK_Version.V1_5) <= 0 || v.compareTo(JDK_Version.V10) >= 0) {
@@ -613,6 +666,32 @@ public class JDK {
                 throws Fault {
 
         ExtraPropDefns epd = includeExtraPropDefns ? params.getTestSuite().getExtraPropDefns() : new ExtraPropDefns();
+
+        List<String> key = null;
+        if (probeCache != null) {
+            List<String> basicTestProperties = new ArrayList<>();
+            params.getBasicTestProperties()
+                    .forEach((name, value) -> basicTestProperties.add(name + "=" + value));
+            try {
+                key = getProbeKey(params.getEnvVars(),
+                        GetJDKProperties.class.getName(),
+                        Arrays.asList(params.getHostName(),
+                                String.valueOf(Runtime.getRuntime().availableProcessors())),
+                        opts,
+                        basicTestProperties,
+                        params.getTestVMJavaOptions(),
+                        extraVMOpts,
+                        Collections.singletonList(params.getCompileJDK().getAbsoluteHomeDirectory().toString()),
+                        Collections.singletonList(Base64.getEncoder().encodeToString(epd.getDigest(params))));
+            } catch (ExtraPropDefns.Fault e) {
+                throw new Fault(e.getMessage(), e);
+            }
+            Properties cached = getCachedProbe(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         try {
             epd.compile(params, params.getCompileJDK(), params.getWorkDirectory().getFile("extraPropDefns"));
         } catch (ExtraPropDefns.Fault e) {
@@ -650,9 +729,13 @@ public class JDK {
             // The scratch directory probably already exists, but just in case,
             // we ensure that it does.
             scratchDir.mkdirs();
-            final Process p = new ProcessBuilder(cmdArgs)
-                    .directory(scratchDir)
-                    .start();
+            ProcessBuilder pb = new ProcessBuilder(cmdArgs)
+                    .directory(scratchDir);
+            // run with the same environment as the tests, so that the
+            // key for the cached properties need only include that environment
+            pb.environment().clear();
+            pb.environment().putAll(params.getEnvVars());
+            final Process p = pb.start();
             asyncCopy(p.getErrorStream(), logger);
             List<String> lines = readLines(p.getInputStream());
 
@@ -667,7 +750,11 @@ public class JDK {
                 throw new Fault(msg);
             }
 
-            return loadProperties(lines, logger);
+            Properties props = loadProperties(lines, logger);
+            if (key != null) {
+                putCachedProbe(key, props);
+            }
+            return props;
 
         } catch (InterruptedException e) {
             logger.accept("Error accessing extra property definitions: " + e);
@@ -732,33 +819,171 @@ public class JDK {
     }
 
     private Info getInfo(RegressionParameters params) {
-        Info info = infoMap.get(params);
-        if (info == null) {
-            infoMap.put(params, info = new Info());
+        return infoMap.computeIfAbsent(params, p -> new Info());
+    }
+
+    /**
+     * Returns a key for the result of running code in this JDK, for use with
+     * the persistent cache of such results. The key identifies this JDK,
+     * by its location, the contents of its {@code release} file, and the size and
+     * last-modified time of its {@code lib/modules} file and {@code java} launcher,
+     * followed by the environment in which the code is run, and the given
+     * values that identify the code and how it was run.
+     * The environment is included because the code may depend on it,
+     * such as the code to determine the values of extra properties for the
+     * test suite. Any other details of the host on which the code may depend
+     * should be included in the values.
+     *
+     * @param env    the environment variables in which the code is run
+     * @param name   the name of the code that is run
+     * @param values the values used to run the code
+     * @return the key
+     */
+    @SafeVarargs
+    private List<String> getProbeKey(Map<String, String> env, String name, Collection<String>... values) {
+        List<String> key = new ArrayList<>(getStamp());
+        Map<String, String> sortedEnv = new TreeMap<>(env);
+        key.add(String.valueOf(sortedEnv.size()));
+        sortedEnv.forEach((k, v) -> key.add(k + "=" + v));
+        key.add(name);
+        for (Collection<String> c : values) {
+            key.add(String.valueOf(c.size()));
+            key.addAll(c);
+        }
+        return key;
+    }
+
+    private List<String> getStamp() {
+        List<String> s = stamp;
+        if (s == null) {
+            s = new ArrayList<>();
+            s.add(absJDK.toString());
+            try {
+                s.add(new String(Files.readAllBytes(absJDK.resolve("release")), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                s.add("");
+            }
+            s.add(getFileStamp(absJDK.resolve("lib").resolve("modules")));
+            s.add(getFileStamp(getJavaProg()));
+            stamp = s = Collections.unmodifiableList(s);
+        }
+        return s;
+    }
+
+    /**
+     * Returns the environment variables for jtreg that may affect the output
+     * of {@code java} when it is run in the environment for jtreg,
+     * without running any code provided by the test suite.
+     */
+    private static Map<String, String> getLauncherEnv() {
+        Map<String, String> env = new TreeMap<>();
+        for (String name : LAUNCHER_ENV_VARS) {
+            String value = System.getenv(name);
+            if (value != null) {
+                env.put(name, value);
+            }
+        }
+        return env;
+    }
+
+    private static final List<String> LAUNCHER_ENV_VARS =
+            Arrays.asList("JAVA_TOOL_OPTIONS", "_JAVA_OPTIONS", "JDK_JAVA_OPTIONS");
+
+    private static String getFileStamp(Path file) {
+        try {
+            return Files.size(file) + " " + Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private Properties getCachedProbe(List<String> key) {
+        JDKProbeCache c = probeCache;
+        return (c == null) ? null : c.get(key);
+    }
+
+    private void putCachedProbe(List<String> key, Properties props) {
+        JDKProbeCache c = probeCache;
+        if (c != null) {
+            c.put(key, props);
         }
-        return info;
     }
 
     private final Path jdk;
     private final Path absJDK;
 
     /** Value of java.specification.version for this JDK. Lazily evaluated as needed. */
-    private String javaSpecificationVersion;
+    private final Lazy<String> javaSpecificationVersion = new Lazy<>();
 
     /** Interpreted value of javaSpecificationVersion. Lazily evaluated as needed. */
-    private JDK_Version jdkVersion;
+    private volatile JDK_Version jdkVersion;
 
     /** Value of java VMOPTS -version for this JDK. Lazily evaluated as needed. */
-    private Map<Set<String>, String> fullVersions;
+    private final Map<Set<String>, Lazy<String>> fullVersions = new ConcurrentHashMap<>();
+
+    /** Values that identify the content of this JDK. Lazily evaluated as needed. */
+    private volatile List<String> stamp;
 
     private Boolean hasOldSymbolFile = null;
 
-    private final Map<RegressionParameters, Info> infoMap = new HashMap<>();
+    private final Map<RegressionParameters, Info> infoMap = new ConcurrentHashMap<>();
 
     static class Info {
-        Properties jdkProperties;
-        Set<String> defaultModules;
-        Set<String> systemModules;
+        final Lazy<Properties> jdkProperties = new Lazy<>();
+        final Lazy<Set<String>> defaultModules = new Lazy<>();
+        final Lazy<Set<String>> systemModules = new Lazy<>();
+    }
+
+    /**
+     * Computes a value.
+     *
+     * @param <T> the type of the value
+     * @param <E> the type of exception that may be thrown while computing the value
+     */
+    interface Computation<T, E extends Exception> {
+        T compute() throws E;
+    }
+
+    /**
+     * A value that is computed when it is first requested. Each value is
+     * computed independently, so that different values can be computed
+     * concurrently. If an exception is thrown while computing the value,
+     * the value will be computed again when it is next requested.
+     *
+     * @param <T> the type of the value
+     */
+    static class Lazy<T> {
+        private volatile T value;
+
+        /**
+         * Returns the value, if it has already been computed, or {@code null} otherwise.
+         *
+         * @return the value
+         */
+        T peek() {
+            return value;
+        }
+
+        /**
+         * Returns the value, computing it if necessary.
+         *
+         * @param c   used to compute the value
+         * @param <E> the type of exception that may be thrown while computing the value
+         * @return the value
+         * @throws E if an exception is thrown while computing the value
+         */
+        <E extends Exception> T get(Computation<T, E> c) throws E {
+            T v = value;
+            if (v == null) {
+                synchronized (this) {
+                    v = value;
+                    if (v == null) {
+                        value = v = c.compute();
+                    }
+                }
+            }
+            return v;
+        }
     }
 
     private static final boolean showModules = Flags.get("showModules");
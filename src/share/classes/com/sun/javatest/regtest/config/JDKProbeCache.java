@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Properties;
+
+import com.sun.javatest.regtest.tool.Version;
+
+import static com.sun.javatest.regtest.util.DigestUtils.newDigest;
+import static com.sun.javatest.regtest.util.DigestUtils.toHex;
+import static com.sun.javatest.regtest.util.DigestUtils.update;
+
+/**
+ * A persistent cache of the results of running code in a JDK to determine
+ * information about the JDK, such as its system properties and modules,
+ * so that the results can be reused by subsequent runs of jtreg.
+ *
+ * <p>Each result is saved as a properties file, whose name is derived from
+ * a key that identifies the JDK and all the inputs used to get the result.
+ * It is the responsibility of the caller to ensure that the key changes
+ * whenever the result might change. Results saved by a different version
+ * of jtreg are ignored.
+ *
+ * <p>The cache may be shared by concurrent runs of jtreg: files are written
+ * to a temporary file and then renamed, and any file that cannot be read is
+ * treated as if it does not exist.
+ */
+class JDKProbeCache {
+    /**
+     * Creates a cache that saves results in a given directory.
+     * The directory is created when the first result is saved.
+     *
+     * @param dir the directory
+     */
+    JDKProbeCache(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the result saved for a key, or {@code null} if there is none.
+     *
+     * @param key the key
+     * @return the result
+     */
+    Properties get(List<String> key) {
+        Path file = getFile(key);
+        try (InputStream in = Files.newInputStream(file)) {
+            Properties p = new Properties();
+            p.load(in);
+            return p;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            // ignore a bad file; it will be rewritten
+            return null;
+        }
+    }
+
+    /**
+     * Saves the result for a key.
+     * Any problems writing the result are ignored.
+     *
+     * @param key the key
+     * @param p   the result
+     */
+    void put(List<String> key, Properties p) {
+        Path file = getFile(key);
+        Path tmp = null;
+        try {
+            Files.createDirectories(dir);
+            tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                p.store(out, null);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        } catch (IOException e) {
+            // ignore: the result will be determined again next time
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private Path getFile(List<String> key) {
+        MessageDigest md = newDigest();
+        update(md, getVersionKey());
+        for (String s : key) {
+            update(md, s);
+        }
+        return dir.resolve(toHex(md.digest()) + ".properties");
+    }
+
+    /**
+     * Returns a string that identifies the version of jtreg, since the code
+     * that is run to get the results may change from one version to the next.
+     */
+    private static String getVersionKey() {
+        Version v = Version.getCurrent();
+        return FORMAT_VERSION
+                + " " + v.product + " " + v.version + " " + v.milestone + " " + v.build
+                + " " + v.buildDate;
+    }
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path dir;
+}
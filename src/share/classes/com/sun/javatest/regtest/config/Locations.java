@@ -137,6 +137,19 @@ public class Locations {
                     && FileUtils.compareLastModifiedTimes(absClsFile, absSrcFile) > 0;
         }
 
+        /**
+         * Determines whether the class file is up to date, using the information
+         * recorded when the source file was last compiled, if available,
+         * or by comparing the last-modified times of the files otherwise.
+         *
+         * @param buildState the information recorded when source files are compiled
+         * @return whether the class file is up to date
+         */
+        public boolean isUpToDate(BuildState buildState) {
+            Boolean b = buildState.isUpToDate(absSrcFile, lib.absClsDir, absClsFile);
+            return (b != null) ? b : isUpToDate();
+        }
+
         @Override
         public String toString() {
             return "ClassLocn(" + lib.name + "," + optModule + "," + className +
@@ -153,6 +166,7 @@ public class Locations {
     private final Path absBaseSrcDir;
     private final Path absTestSrcDir;
     private final Path absBaseClsDir;
+    private final Path absLibBaseClsDir;
     private final Path absTestClsDir;
     private final Path absTestPatchDir;
     private final Path absTestModulesDir;
@@ -203,6 +217,7 @@ public class Locations {
         absTestWorkDir = workDirRoot.resolve(relTestWorkDir);
 
         absBaseClsDir = getThreadSafeDir(workDirRoot.resolve("classes"), params.getConcurrency());
+        absLibBaseClsDir = getSharedDir(workDirRoot.resolve("classes"), params.getConcurrency());
         Path relTestClsDir = (packageRoot != null) ? Path.of(packageRoot)
                 : useUniqueClassDir ? relTestDir.resolve(uniqueTestSubDir)
                 : relTestDir;
@@ -240,15 +255,15 @@ public class Locations {
             String libTail = lib.substring(1);
             checkLibPath(Path.of(libTail));
             if (Files.exists(absBaseSrcDir.resolve(libTail))) {
-                return createLibLocn(lib, absBaseSrcDir, absBaseClsDir);
+                return createLibLocn(lib, absBaseSrcDir, absLibBaseClsDir);
             } else {
                 try {
                     for (File extRootFile: testSuite.getExternalLibRoots(td)) {
                         Path extRoot = extRootFile.toPath();
                         if (Files.exists(extRoot.resolve(libTail))) {
                             // since absBaseSrcDir/lib does not exist, we can safely
-                            // use absBaseClsDir/lib for the compiled classes
-                            return createLibLocn(lib, extRoot, absBaseClsDir);
+                            // use absLibBaseClsDir/lib for the compiled classes
+                            return createLibLocn(lib, extRoot, absLibBaseClsDir);
                         }
                     }
                 } catch (RegressionTestSuite.Fault e) {
@@ -275,7 +290,7 @@ public class Locations {
         } else {
             checkLibPath(relLibDir.resolve(lib));
             if (Files.exists(absTestSrcDir.resolve(lib)))
-                return createLibLocn(lib, absTestSrcDir, absBaseClsDir.resolve(relLibDir));
+                return createLibLocn(lib, absTestSrcDir, absLibBaseClsDir.resolve(relLibDir));
         }
         throw new Fault(CANT_FIND_LIB + lib);
     }
@@ -472,6 +487,17 @@ public class Locations {
         return absBaseClsDir;
     }
 
+    /**
+     * Gets the base directory for the compiled classes of libraries.
+     * When tests are run concurrently, the classes for libraries are shared by all
+     * the tests, and so this directory is different from {@link #absBaseClsDir()},
+     * which is specific to the thread running the test.
+     * @return the base directory
+     */
+    public Path absLibBaseClsDir() {
+        return absLibBaseClsDir;
+    }
+
     /**
      * Gets the directory for the compiled classes of a test in the unnamed module.
      * @return the directory
@@ -786,6 +812,19 @@ public class Locations {
                 : file.resolve(String.valueOf(getCurrentThreadId()));
     }
 
+    /**
+     * Returns the directory for files that are shared by all threads.
+     * Access to the contents must be coordinated between the threads.
+     */
+    private Path getSharedDir(Path file, int concurrency) {
+        return (concurrency == 1)
+                ? file
+                : file.resolve(SHARED_DIR);
+    }
+
+    // a name that cannot conflict with the names used by getThreadSafeDir
+    private static final String SHARED_DIR = "shared";
+
     private static int getCurrentThreadId() {
         return uniqueNum.get();
     }
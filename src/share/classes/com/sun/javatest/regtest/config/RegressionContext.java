@@ -139,6 +139,19 @@ public class RegressionContext implements Expr.Context {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The values in a regression context are determined when the context
+     * is created, and do not change.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isFixed() {
+        return true;
+    }
+
     @Override
     public String toString() {
         return values.toString();
@@ -27,8 +27,10 @@ package com.sun.javatest.regtest.config;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.UnknownHostException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
@@ -36,13 +38,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Pattern;
@@ -64,6 +67,7 @@ import com.sun.javatest.interview.BasicInterviewParameters;
 import com.sun.javatest.regtest.agent.JDK_Version;
 import com.sun.javatest.regtest.agent.SearchPath;
 import com.sun.javatest.regtest.exec.TimeoutHandlerProvider;
+import com.sun.javatest.regtest.tool.Version;
 import com.sun.javatest.regtest.util.FileUtils;
 import com.sun.javatest.regtest.util.StringUtils;
 import com.sun.javatest.util.I18NResourceBundle;
@@ -184,7 +188,7 @@ public class RegressionParameters
      * The following map provides a way of recording whether a problem
      * was encountered by a filter.
      */
-    public Map<String, String> filterFaults = new HashMap<>();
+    public Map<String, String> filterFaults = new ConcurrentHashMap<>();
 
     /* A RegressionContext is used by various filters, but initializing it may throw an
      * exception. Therefore, it should be initialized explicitly, and the exception
@@ -193,6 +197,11 @@ public class RegressionParameters
     private Expr.Context exprContext;
 
     public void initExprContext() throws JDK.Fault {
+        // get the system modules, used to filter tests, while getting the properties for the context
+        JDK jdk = getTestJDK();
+        if (jdk != null) {
+            jdk.prefetch(this, logger);
+        }
         exprContext = new RegressionContext(this, logger);
     }
 
@@ -219,8 +228,10 @@ public class RegressionParameters
             if (mlf != null)
                 filters.add(mlf);
 
+            relevantTestFilters = filters;
+
             final TestFilter f = new CompositeFilter(filters.toArray(new TestFilter[filters.size()]));
-            return new CachingTestFilter(f.getName(), f.getDescription(), f.getReason()) {
+            relevantTestFilter = new CachingTestFilter(f.getName(), f.getDescription(), f.getReason()) {
                 @Override
                 protected String getCacheKey(TestDescription td) {
                     return td.getRootRelativeURL();
@@ -237,6 +248,32 @@ public class RegressionParameters
     }
 
     TestFilter relevantTestFilter = UNSET;
+    private List<TestFilter> relevantTestFilters = Collections.emptyList();
+
+    /**
+     * Returns the caching filters that have been created to select the tests
+     * to be run, such as the filters for {@code @requires} and {@code @modules},
+     * and for any exclude lists and match lists.
+     * The statistics for the filters may be used to see which filters account
+     * for the time taken to select tests.
+     *
+     * @return the filters
+     */
+    public List<CachingTestFilter> getCachingTestFilters() {
+        List<CachingTestFilter> list = new ArrayList<>();
+        for (TestFilter f : relevantTestFilters) {
+            if (f instanceof CachingTestFilter) {
+                list.add((CachingTestFilter) f);
+            }
+        }
+        if (excludeListFilter != UNSET && excludeListFilter != null) {
+            list.add(excludeListFilter);
+        }
+        if (priorStatusFilter != UNSET && priorStatusFilter != null) {
+            list.add(priorStatusFilter);
+        }
+        return list;
+    }
 
     TestFilter getModulesFilter() {
         JDK jdk = getTestJDK();
@@ -625,6 +662,9 @@ public class RegressionParameters
     private static final String TIMELIMIT = ".timeLimit";
     private static final String REPORTDIR = ".reportDir";
     private static final String EXCLUSIVE_LOCK = ".exclLock";
+    private static final String WEIGHT_BUDGET = ".weightBudget";
+    private static final String CDS_ARCHIVES = ".cdsArchives";
+    private static final String RESULT_CACHE = ".resultCache";
     private static final String NATIVEDIR = ".nativeDir";
     private static final String TIMEOUT_HANDLER = ".timeoutHandler";
     private static final String TIMEOUT_HANDLER_PATH = ".timeoutHandlerPath";
@@ -706,6 +746,18 @@ public class RegressionParameters
             if (v != null)
                 setExclusiveLock(Path.of(v));
 
+            v = data.get(prefix + WEIGHT_BUDGET);
+            if (v != null)
+                setWeightBudget(Integer.parseInt(v));
+
+            v = data.get(prefix + CDS_ARCHIVES);
+            if (v != null)
+                setUseCDSArchives(Boolean.parseBoolean(v));
+
+            v = data.get(prefix + RESULT_CACHE);
+            if (v != null)
+                setResultCacheDir(Path.of(v));
+
             v = data.get(prefix + NATIVEDIR);
             if (v != null)
                 setNativeDir(Path.of(v));
@@ -782,6 +834,15 @@ public class RegressionParameters
         if (exclusiveLock != null)
             data.put(prefix + EXCLUSIVE_LOCK, exclusiveLock.toString());
 
+        if (weightBudget > 0)
+            data.put(prefix + WEIGHT_BUDGET, String.valueOf(weightBudget));
+
+        if (useCDSArchives)
+            data.put(prefix + CDS_ARCHIVES, String.valueOf(useCDSArchives));
+
+        if (resultCacheDir != null)
+            data.put(prefix + RESULT_CACHE, resultCacheDir.toString());
+
         if (nativeDir != null)
             data.put(prefix + NATIVEDIR, nativeDir.toString());
 
@@ -908,6 +969,7 @@ public class RegressionParameters
     public void setCompileJDK(JDK compileJDK) {
         compileJDK.getClass(); // null check
         this.compileJDK = compileJDK;
+        resultProperties = null;
     }
 
     public JDK getCompileJDK() {
@@ -921,6 +983,7 @@ public class RegressionParameters
     public void setTestJDK(JDK testJDK) {
         testJDK.getClass(); // null check
         this.testJDK = testJDK;
+        resultProperties = null;
     }
 
     public JDK getTestJDK() {
@@ -931,6 +994,25 @@ public class RegressionParameters
 
     //---------------------------------------------------------------------
 
+    /**
+     * Returns the record of the files compiled by the {@code build} action,
+     * saved in the work directory.
+     *
+     * @return the record
+     */
+    public synchronized BuildState getBuildState() {
+        if (buildState == null) {
+            buildState = new BuildState(getWorkDirectory().getSystemFile(BUILD_STATE).toPath());
+        }
+        return buildState;
+    }
+
+    private BuildState buildState;
+
+    private static final String BUILD_STATE = "buildState";
+
+    //---------------------------------------------------------------------
+
     public void setJUnitPath(SearchPath junitPath) {
         junitPath.getClass(); // null check
         this.junitPath = junitPath;
@@ -1190,6 +1272,81 @@ public class RegressionParameters
 
     //---------------------------------------------------------------------
 
+    /**
+     * Sets the maximum total weight of the tests that may be executing at any one time.
+     *
+     * @param budget the budget
+     * @see com.sun.javatest.regtest.exec.ResourceScheduler
+     */
+    public void setWeightBudget(int budget) {
+        this.weightBudget = budget;
+    }
+
+    /**
+     * Returns the maximum total weight of the tests that may be executing at any one time,
+     * or 0 if it has not been set.
+     *
+     * @return the budget
+     */
+    public int getWeightBudget() {
+        return weightBudget;
+    }
+
+    private int weightBudget;
+
+    //---------------------------------------------------------------------
+
+    /**
+     * Sets whether to use dynamic class data sharing archives for the VMs
+     * started to execute the actions of tests, when the VMs support them.
+     *
+     * @param b whether to use archives
+     * @see com.sun.javatest.regtest.exec.ClassDataSharing
+     */
+    public void setUseCDSArchives(boolean b) {
+        this.useCDSArchives = b;
+    }
+
+    /**
+     * Returns whether to use dynamic class data sharing archives for the VMs
+     * started to execute the actions of tests.
+     *
+     * @return whether to use archives
+     */
+    public boolean isUseCDSArchives() {
+        return useCDSArchives;
+    }
+
+    private boolean useCDSArchives;
+
+    //---------------------------------------------------------------------
+
+    /**
+     * Sets the directory for the cache of the tests that have passed,
+     * such that a test is not run again if its inputs have not changed
+     * since it last passed.
+     *
+     * @param dir the directory
+     * @see com.sun.javatest.regtest.exec.ResultCache
+     */
+    public void setResultCacheDir(Path dir) {
+        this.resultCacheDir = dir;
+    }
+
+    /**
+     * Returns the directory for the cache of the tests that have passed,
+     * or {@code null} if no cache is to be used.
+     *
+     * @return the directory
+     */
+    public Path getResultCacheDir() {
+        return resultCacheDir;
+    }
+
+    private Path resultCacheDir;
+
+    //---------------------------------------------------------------------
+
     public void setNativeDir(Path nativeDir) {
         this.nativeDir = nativeDir;
     }
@@ -1383,6 +1540,89 @@ public class RegressionParameters
 
     //---------------------------------------------------------------------
 
+    /**
+     * Starts to determine the name of the local host, if it has not already been started.
+     * The lookup may be slow on systems with poorly configured name services,
+     * and so it is done in the background, such that it can be overlapped with other work,
+     * and is done at most once for each set of parameters.
+     */
+    public synchronized void startHostNameLookup() {
+        if (hostName == null) {
+            hostName = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return InetAddress.getLocalHost().getCanonicalHostName();
+                } catch (UnknownHostException e) {
+                    return "127.0.0.1";
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the name of the local host, waiting if necessary for the lookup to complete.
+     *
+     * @return the name of the local host
+     */
+    public String getHostName() {
+        CompletableFuture<String> f;
+        synchronized (this) {
+            startHostNameLookup();
+            f = hostName;
+        }
+        return f.join();
+    }
+
+    private CompletableFuture<String> hostName;
+
+    /**
+     * Returns the properties that are recorded in the result of every test,
+     * and which do not depend on the test itself.
+     * The values are computed when first required, and shared by all tests.
+     *
+     * @return the properties
+     */
+    public Map<String, String> getResultProperties() {
+        // wait for the host name without holding the lock on this object,
+        // so that a slow lookup does not block other synchronized methods
+        String host = getHostName();
+        synchronized (this) {
+            if (resultProperties == null) {
+                Map<String, String> map = new LinkedHashMap<>();
+                map.put("hostname", host);
+                map.put("user.name", System.getProperty("user.name"));
+                map.put("jtregVersion", getJTRegVersion());
+                map.put("testJDK", getTestJDK().getAbsolutePath());
+                OS testOs = getTestOS();
+                map.put("testJDK_OS", testOs.toString());
+                map.put("testJDK_os.name", testOs.name);
+                map.put("testJDK_os.version", testOs.version);
+                map.put("testJDK_os.arch", testOs.arch);
+                if (!getCompileJDK().equals(getTestJDK())) {
+                    map.put("compileJDK", getCompileJDK().getAbsolutePath());
+                }
+                resultProperties = Collections.unmodifiableMap(map);
+            }
+            return resultProperties;
+        }
+    }
+
+    private Map<String, String> resultProperties;
+
+    private static String getJTRegVersion() {
+        StringBuilder sb = new StringBuilder();
+        Version v = Version.getCurrent();
+        sb.append(v.product == null ? "jtreg" : v.product);
+        if (v.version != null)
+            sb.append(' ').append(v.version);
+        if (v.milestone != null)
+            sb.append(' ').append(v.milestone);
+        if (v.build != null)
+            sb.append(' ').append(v.build);
+        return sb.toString();
+    }
+
+    //---------------------------------------------------------------------
+
     private List<String> retainArgs;
     private final Set<Integer> retainStatusSet = new HashSet<>(4);
     private Pattern retainFilesPattern;
@@ -26,19 +26,31 @@
 package com.sun.javatest.regtest.config;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StreamTokenizer;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -168,13 +180,9 @@ public class RegressionTestFinder extends TagTestFinder
         I18NResourceBundle super_i18n;
         boolean super_fastScan;
         try {
-            Field i18nField = TagTestFinder.class.getDeclaredField("i18n");
-            i18nField.setAccessible(true);
-            super_i18n = (I18NResourceBundle) i18nField.get(this);
-            Field fastScanField = TagTestFinder.class.getDeclaredField("fastScan");
-            fastScanField.setAccessible(true);
-            super_fastScan = (boolean) fastScanField.get(this);
-        } catch (NoSuchFieldException | IllegalAccessException ex) {
+            super_i18n = (I18NResourceBundle) super_i18nField.get(this);
+            super_fastScan = (boolean) super_fastScanField.get(this);
+        } catch (IllegalAccessException ex) {
             throw new Error(ex);
         }
         int testDescNumber = 0;
@@ -189,6 +197,40 @@ public class RegressionTestFinder extends TagTestFinder
             error(super_i18n, "tag.noParser", file, extn);
             return;
         }
+
+        // If there is an index, use it if possible, instead of parsing the file.
+        // If the file needs to be parsed, the contents are read first,
+        // so that the index can be updated with the results.
+        BasicFileAttributes attrs = null;
+        byte[] bytes = null;
+        if (index != null) {
+            try {
+                attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                TestDescriptionIndex.Entry e = index.get(file, attrs);
+                if (e == null) {
+                    bytes = Files.readAllBytes(file.toPath());
+                    e = index.get(file, attrs, bytes);
+                }
+                if (e != null) {
+                    for (String msg : e.errors) {
+                        localizedError(msg);
+                    }
+                    for (TestDescriptionIndex.Description d : e.descriptions) {
+                        foundTestDescription(new HashMap<>(d.tagValues), file, d.line);
+                    }
+                    return;
+                }
+            } catch (NoSuchFileException e) {
+                error(super_i18n, "tag.cantFindFile", file);
+                return;
+            } catch (IOException e) {
+                error(super_i18n, "tag.ioError", file);
+                return;
+            }
+        }
+        List<TestDescriptionIndex.Description> descriptions = (index == null) ? null : new ArrayList<>();
+        List<String> errors = (index == null) ? null : new ArrayList<>();
+
         CommentStream cs;
         try {
             cs = csc.getDeclaredConstructor().newInstance();
@@ -199,7 +241,12 @@ public class RegressionTestFinder extends TagTestFinder
         }
 
         try {
-            LineCounterBufferedReader r = new LineCounterBufferedReader(new FileReader(file));
+            if (bytes == null) {
+                bytes = Files.readAllBytes(file.toPath());
+            }
+            int length = getScanLength(bytes, csc);
+            Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes, 0, length));
+            LineCounterBufferedReader r = new LineCounterBufferedReader(reader);
             cs.init(r);
             if (super_fastScan)
                 cs.setFastScan(true);
@@ -207,8 +254,18 @@ public class RegressionTestFinder extends TagTestFinder
             String comment = cs.readComment();
             int commentLine = r.lineNumber;
             while (comment != null) {
-                @SuppressWarnings({"unchecked", "cast"}) // temporary, to cover transition generifying TestFinder
-                Map<String,String> tagValues = (Map<String,String>) parseComment(comment, file);
+                // Errors found while parsing the comment are saved in the index, so that they
+                // can be reported again when the entry is used; errors found when the values
+                // are normalized will be reported again by foundTestDescription.
+                Map<String,String> tagValues;
+                parseErrors = errors;
+                try {
+                    @SuppressWarnings({"unchecked", "cast"}) // temporary, to cover transition generifying TestFinder
+                    Map<String,String> tv = (Map<String,String>) parseComment(comment, file);
+                    tagValues = tv;
+                } finally {
+                    parseErrors = null;
+                }
 
                 // Look ahead to see if there are more comments
                 String nextComment = cs.readComment();
@@ -237,14 +294,22 @@ public class RegressionTestFinder extends TagTestFinder
                     // still needs to evaluate to a valid test description.)
                     tagValues.remove("test");
 
+                    if (descriptions != null) {
+                        // save a copy before the values are normalized
+                        descriptions.add(new TestDescriptionIndex.Description(commentLine, new HashMap<>(tagValues)));
+                    }
                     foundTestDescription(tagValues, file, commentLine);
                 }
 
                 comment = nextComment;
                 commentLine = nextCommentLine;
             }
+
+            if (descriptions != null) {
+                index.put(file, attrs, bytes, descriptions, errors);
+            }
         }
-        catch (FileNotFoundException e) {
+        catch (FileNotFoundException | NoSuchFileException e) {
             error(super_i18n, "tag.cantFindFile", file);
         }
         catch (IOException e) {
@@ -259,10 +324,232 @@ public class RegressionTestFinder extends TagTestFinder
         }
     }
 
+    /**
+     * Returns the length of the initial part of the contents of a file that
+     * needs to be read by a comment stream to find all the test descriptions
+     * in the file.
+     *
+     * <p>Every test description contains the marker {@code @test}, and so
+     * the comment stream does not need to read any of the file after the
+     * comment that contains the last marker. If the file does not contain
+     * the marker at all, nothing needs to be read. The search is done on
+     * the bytes of the file, so that the contents only need to be decoded
+     * if the file might contain a test description.
+     *
+     * <p>For Java source files, block comments end at the first {@code *}{@code /}
+     * after they begin, and so the file can be truncated at the first
+     * occurrence after the last marker. For other kinds of files, the whole
+     * file is read if it contains a marker.
+     *
+     * @param bytes the contents of the file
+     * @param csc   the class of the comment stream used to read the file
+     * @return the length of the part of the file to be read
+     */
+    static int getScanLength(byte[] bytes, Class<? extends CommentStream> csc) {
+        int marker = lastIndexOf(bytes, TEST_MARKER);
+        if (marker == -1) {
+            return 0;
+        }
+        if (JavaCommentStream.class.isAssignableFrom(csc)) {
+            int end = indexOf(bytes, JAVA_COMMENT_END, marker + TEST_MARKER.length);
+            if (end != -1) {
+                return end + JAVA_COMMENT_END.length;
+            }
+        }
+        return bytes.length;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target, int from) {
+        byte first = target[0];
+        int max = bytes.length - target.length;
+        for (int i = from; i <= max; i++) {
+            if (bytes[i] == first && matches(bytes, i, target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] bytes, byte[] target) {
+        byte first = target[0];
+        for (int i = bytes.length - target.length; i >= 0; i--) {
+            if (bytes[i] == first && matches(bytes, i, target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(byte[] bytes, int offset, byte[] target) {
+        for (int j = 1; j < target.length; j++) {
+            if (bytes[offset + j] != target[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final byte[] TEST_MARKER = "@test".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JAVA_COMMENT_END = "*/".getBytes(StandardCharsets.US_ASCII);
+
+    @Override
+    protected void localizedError(String msg) {
+        if (parseErrors != null) {
+            parseErrors.add(msg);
+        }
+        super.localizedError(msg);
+    }
+
+    /**
+     * Sets the file used to save an index of the test descriptions found in the
+     * files of the test suite, and reads any index saved there by a previous run.
+     * When an index is available, files that have not changed since they were
+     * last scanned are not read again.
+     *
+     * <p>Each file has its own index, such as for each work directory in which
+     * the test suite is used; the index for the most recently set file is the
+     * one that is used when reading files.
+     *
+     * @param file the file
+     */
+    public synchronized void setIndexFile(Path file) {
+        index = indexes.computeIfAbsent(file, f -> new TestDescriptionIndex(getRootDir(), f));
+    }
+
+    /**
+     * Writes the indexes of test descriptions that have been set, if they have been modified.
+     *
+     * @throws IOException if there is a problem writing an index
+     */
+    public synchronized void writeIndex() throws IOException {
+        for (TestDescriptionIndex i : indexes.values()) {
+            i.write();
+        }
+    }
+
+    private final Map<Path, TestDescriptionIndex> indexes = new HashMap<>();
+    private TestDescriptionIndex index;
+    private List<String> parseErrors;
+
+    /**
+     * Reads the test descriptions in a set of files and directories, using multiple
+     * threads, and saves the results in the index of test descriptions, so that
+     * they are readily available when the files are subsequently read by the harness.
+     * Directories are read recursively, using a fork-join pool over the subdirectories.
+     *
+     * <p>The files are read by additional instances of this class, one per thread,
+     * which share the index and test suite properties with this instance.
+     * Any errors found while reading the files are not reported here;
+     * they will be reported when the files are read again by the harness,
+     * which also determines the order of the test descriptions that are found.
+     *
+     * <p>This method has no effect if no index has been set.
+     *
+     * @param files       the files and directories to be read
+     * @param parallelism the number of threads to use
+     */
+    public void prefetch(List<File> files, int parallelism) {
+        if (index == null) {
+            return;
+        }
+
+        Set<String> ignoredNames = getIgnoredDirectories();
+        ThreadLocal<RegressionTestFinder> finders = ThreadLocal.withInitial(this::createPrefetchFinder);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<PrefetchTask> tasks = new ArrayList<>();
+            for (File f : files) {
+                tasks.add(new PrefetchTask(f, ignoredNames, finders));
+            }
+            pool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 0;
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private RegressionTestFinder createPrefetchFinder() {
+        RegressionTestFinder f = new RegressionTestFinder(properties, msg -> { });
+        try {
+            f.init(new String[] { }, getRoot(), null);
+            super_fastScanField.setBoolean(f, super_fastScanField.getBoolean(this));
+        } catch (Fault | IllegalAccessException e) {
+            throw new Error(e);
+        }
+        f.index = index;
+        return f;
+    }
+
+    private class PrefetchTask extends RecursiveAction {
+        private static final long serialVersionUID = 0;
+        private final File file;
+        private final Set<String> ignoredNames;
+        private final transient ThreadLocal<RegressionTestFinder> finders;
+
+        PrefetchTask(File file, Set<String> ignoredNames, ThreadLocal<RegressionTestFinder> finders) {
+            this.file = file;
+            this.ignoredNames = ignoredNames;
+            this.finders = finders;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                // TestNG tests are not recorded in the index
+                if (properties.getTestNGRoot(file) != null) {
+                    return;
+                }
+            } catch (TestSuite.Fault e) {
+                return;
+            }
+
+            if (file.isDirectory()) {
+                String[] names = file.list();
+                if (names == null) {
+                    return;
+                }
+                List<PrefetchTask> tasks = new ArrayList<>();
+                for (String name : names) {
+                    if (!ignoredNames.contains(name) && !name.startsWith(",")) {
+                        tasks.add(new PrefetchTask(new File(file, name), ignoredNames, finders));
+                    }
+                }
+                invokeAll(tasks);
+            } else {
+                String name = file.getName();
+                int dot = name.indexOf('.');
+                if (dot != -1) {
+                    RegressionTestFinder f = finders.get();
+                    if (f.getClassForExtension(name.substring(dot)) != null) {
+                        f.read(file);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Field getSuperField(String name) {
+        try {
+            Field f = TagTestFinder.class.getDeclaredField(name);
+            f.setAccessible(true);
+            return f;
+        } catch (NoSuchFieldException e) {
+            throw new Error(e);
+        }
+    }
+
+    private static final Field super_i18nField = getSuperField("i18n");
+    private static final Field super_fastScanField = getSuperField("fastScan");
+
     private class LineCounterBufferedReader extends BufferedReader {
         int lineNumber;
 
-        LineCounterBufferedReader(FileReader r) {
+        LineCounterBufferedReader(Reader r) {
             super(r);
             lineNumber = 1;
         }
@@ -627,6 +914,13 @@ public class RegressionTestFinder extends TagTestFinder
                     newTagValues.put(ENABLE_PREVIEW, "true");
                 }
             }
+
+            if (newTagValues.get(WEIGHT) == null) {
+                int w = properties.getWeight(getCurrentFile());
+                if (w != 1) {
+                    newTagValues.put(WEIGHT, String.valueOf(w));
+                }
+            }
         } catch (TestSuite.Fault e) {
             error(i18n, "finder.cant.read.test.properties", e.getMessage());
         }
@@ -715,6 +1009,10 @@ public class RegressionTestFinder extends TagTestFinder
                     processEnablePreview(tagValues, value);
                     break;
 
+                case WEIGHT:
+                    processWeight(tagValues, value);
+                    break;
+
                 default:
                     if (!validTagNames.contains(name)) {
                         parseError(tagValues, PARSE_TAG_BAD + name);
@@ -959,6 +1257,19 @@ public class RegressionTestFinder extends TagTestFinder
 
     }
 
+    private void processWeight(Map<String, String> tagValues, String value) {
+        String v = value.trim();
+        try {
+            if (Integer.parseInt(v) >= 1) {
+                tagValues.put(WEIGHT, v);
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        parseError(tagValues, PARSE_INVALID_WEIGHT + v);
+    }
+
     private Set<String> getValidTagNames(boolean allowKey) {
         Set<String> tags = new HashSet<>();
         // JDK specific tags
@@ -976,6 +1287,7 @@ public class RegressionTestFinder extends TagTestFinder
         tags.add(REQUIRES);
         tags.add(COMMENT);
         tags.add(ENABLE_PREVIEW);
+        tags.add(WEIGHT);
 
         // @key allowed only if TEST.ROOT contains a non-empty entry for
         // "key".  This is handled by the testsuite object.
@@ -1004,6 +1316,7 @@ public class RegressionTestFinder extends TagTestFinder
     public static final String RUN     = "run";
     public static final String SUMMARY = "summary";
     public static final String COMMENT = "comment";
+    public static final String WEIGHT  = "weight";
 
     private static final String LINESEP = System.getProperty("line.separator");
 
@@ -1031,7 +1344,8 @@ public class RegressionTestFinder extends TagTestFinder
         PARSE_MULTIPLE_COMMENTS_NOT_ALLOWED
                               = "Multiple test descriptions not allowed",
         PARSE_INVALID_ENABLE_PREVIEW
-                              = "invalid value for @enablePreview: ";
+                              = "invalid value for @enablePreview: ",
+        PARSE_INVALID_WEIGHT  = "invalid value for @weight: ";
 
 
     private static final Pattern
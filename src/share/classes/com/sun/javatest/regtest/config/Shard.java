@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * One of a number of disjoint subsets ("shards") of a set of tests,
+ * such that the tests can be run on different machines.
+ *
+ * <p>By default, each test is assigned to a shard according to a hash of its
+ * name, so that the assignment of a test does not depend on the other tests
+ * in the set. Alternatively, the tests may be assigned so that each shard
+ * has a similar total expected duration. To get a consistent assignment,
+ * all the shards must be determined from the same expected durations.
+ *
+ * <p>Shards are numbered from 1.
+ */
+public class Shard {
+    /**
+     * The ways in which tests may be assigned to shards.
+     */
+    public enum Mode {
+        /** Assign tests according to a hash of their names. */
+        HASH("hash"),
+        /** Assign tests so that each shard has a similar total expected duration. */
+        DURATION("duration");
+
+        Mode(String option) {
+            this.option = option;
+        }
+
+        /** The name of this mode, as written in the manifest and string form of a shard. */
+        final String option;
+    }
+
+    /**
+     * Returns a shard given by a string of the form <i>index</i>{@code /}<i>count</i>.
+     *
+     * @param s    the string
+     * @param mode the way in which to assign tests to shards
+     * @return the shard
+     * @throws IllegalArgumentException if the string is not valid
+     */
+    public static Shard parse(String s, Mode mode) throws IllegalArgumentException {
+        int sep = s.indexOf('/');
+        if (sep == -1) {
+            throw new IllegalArgumentException(s);
+        }
+        try {
+            int index = Integer.parseInt(s.substring(0, sep).trim());
+            int count = Integer.parseInt(s.substring(sep + 1).trim());
+            return new Shard(index, count, mode);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(s);
+        }
+    }
+
+    /**
+     * Creates a shard.
+     *
+     * @param index the number of this shard, from 1 to {@code count}
+     * @param count the number of shards
+     * @param mode  the way in which to assign tests to shards
+     * @throws IllegalArgumentException if the index or count are not valid
+     */
+    public Shard(int index, int count, Mode mode) throws IllegalArgumentException {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException(index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+        this.mode = mode;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the tests in this shard.
+     *
+     * @param tests     the names of all the tests, in the order in which they should be returned
+     * @param durations the expected durations of the tests, if the tests are to be assigned by duration
+     * @return the names of the tests in this shard
+     */
+    public List<String> select(List<String> tests, Map<String, Double> durations) {
+        List<String> selected = new ArrayList<>();
+        if (mode == Mode.HASH) {
+            for (String t : tests) {
+                if (getHashShard(t) == index) {
+                    selected.add(t);
+                }
+            }
+        } else {
+            // Assign the tests longest first, each to the shard with the least
+            // total expected duration so far, using the test name to break ties,
+            // so that the result does not depend on the order of the tests.
+            List<String> sorted = new ArrayList<>(tests);
+            sorted.sort(Comparator.comparingDouble((String t) -> durations.getOrDefault(t, 0d))
+                    .reversed()
+                    .thenComparing(Comparator.naturalOrder()));
+            double[] totals = new double[count];
+            Set<String> mine = new HashSet<>();
+            for (String t : sorted) {
+                int s = 0;
+                for (int i = 1; i < count; i++) {
+                    if (totals[i] < totals[s]) {
+                        s = i;
+                    }
+                }
+                totals[s] += durations.getOrDefault(t, 0d);
+                if (s + 1 == index) {
+                    mine.add(t);
+                }
+            }
+            // return the selected tests in the order given
+            for (String t : tests) {
+                if (mine.contains(t)) {
+                    selected.add(t);
+                }
+            }
+        }
+        return selected;
+    }
+
+    private int getHashShard(String test) {
+        CRC32 crc = new CRC32();
+        crc.update(test.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % count) + 1;
+    }
+
+    /**
+     * Writes a manifest for this shard, giving the tests that were assigned to it.
+     * The first line identifies the shard; each subsequent line gives the name
+     * of a test.
+     *
+     * @param file  the file
+     * @param tests the tests assigned to this shard
+     * @throws IOException if there is a problem writing the file
+     */
+    public void writeManifest(Path file, List<String> tests) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println(MANIFEST_HEADER + " " + index + "/" + count + " " + mode.option);
+            for (String t : tests) {
+                out.println(t);
+            }
+        }
+    }
+
+    /**
+     * Reads the identity of a shard from a manifest written by {@link #writeManifest}.
+     *
+     * @param file the file
+     * @return the shard
+     * @throws IOException if there is a problem reading the file, or if it is not a valid manifest
+     */
+    public static Shard readManifest(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            String line = in.readLine();
+            String[] fields = (line == null) ? new String[0] : line.split(" ");
+            if (fields.length == 3 && fields[0].equals(MANIFEST_HEADER)) {
+                for (Mode m : Mode.values()) {
+                    if (m.option.equals(fields[2])) {
+                        try {
+                            return parse(fields[1], m);
+                        } catch (IllegalArgumentException e) {
+                            break;
+                        }
+                    }
+                }
+            }
+            throw new IOException("invalid shard manifest: " + file);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count + " " + mode.option;
+    }
+
+    /** The name of the manifest file, written in the {@code text} subdirectory of the report directory. */
+    public static final String MANIFEST = "shard.txt";
+
+    private static final String MANIFEST_HEADER = "shard";
+
+    private final int index;
+    private final int count;
+    private final Mode mode;
+}
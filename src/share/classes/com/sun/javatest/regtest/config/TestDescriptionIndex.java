@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.javatest.regtest.tool.Version;
+
+import static com.sun.javatest.regtest.util.DigestUtils.digest;
+
+/**
+ * A persistent index of the test descriptions found in the files of a test suite,
+ * used to avoid reading and parsing files that have not changed since a previous run.
+ *
+ * <p>For each file, the index records the size, last-modified time and a digest of
+ * the contents, along with the tags and values for the test descriptions found in
+ * the file, before they are normalized by the test finder, and any errors reported
+ * while the comments containing those descriptions were parsed. The index also records
+ * a "stamp" for the {@code TEST.ROOT} and {@code TEST.properties} files that apply
+ * to the file, since the interpretation of some tags depends on the contents of
+ * those files.
+ *
+ * <p>An entry is used if the size and configuration stamp are unchanged and if either
+ * the last-modified time or the digest of the contents are unchanged.
+ */
+class TestDescriptionIndex {
+    /**
+     * A test description found in a file: the tags and values in the comment,
+     * and the line number of the comment.
+     */
+    static class Description {
+        final int line;
+        final Map<String, String> tagValues;
+
+        Description(int line, Map<String, String> tagValues) {
+            this.line = line;
+            this.tagValues = tagValues;
+        }
+    }
+
+    /**
+     * The information recorded for a file in the test suite.
+     */
+    static class Entry {
+        final long size;
+        volatile long lastModified;
+        final byte[] digest;
+        final long configStamp;
+        final List<Description> descriptions;
+        final List<String> errors;
+        volatile boolean used;
+
+        Entry(long size, long lastModified, byte[] digest, long configStamp,
+                List<Description> descriptions, List<String> errors) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.digest = digest;
+            this.configStamp = configStamp;
+            this.descriptions = descriptions;
+            this.errors = errors;
+        }
+    }
+
+    /**
+     * Creates an index for the files in a test suite, and reads any entries
+     * saved in a file by a previous run. The content of the file is ignored
+     * if it cannot be read, or if it was written by a different version of jtreg.
+     *
+     * @param rootDir the root directory of the test suite
+     * @param file the file in which to save the index
+     */
+    TestDescriptionIndex(File rootDir, Path file) {
+        this.rootDir = rootDir;
+        this.file = file;
+        read();
+    }
+
+    /**
+     * Returns the entry for a file, if there is one that can be used,
+     * given the current state of the file.
+     *
+     * @param f     the file
+     * @param attrs the basic attributes of the file
+     * @return the entry, or {@code null}
+     */
+    Entry get(File f, BasicFileAttributes attrs) {
+        String key = getKey(f);
+        if (key == null) {
+            return null;
+        }
+        Entry e = entries.get(key);
+        if (e == null
+                || e.size != attrs.size()
+                || e.lastModified != attrs.lastModifiedTime().toMillis()
+                || e.configStamp != getConfigStamp(f.getParentFile())) {
+            return null;
+        }
+        e.used = true;
+        return e;
+    }
+
+    /**
+     * Returns the entry for a file if there is one whose contents are the same as
+     * given contents, updating the last-modified time for the entry if necessary.
+     * This allows an entry to be used when the last-modified time of a file has changed
+     * but the contents have not, such as when the file has been checked out again.
+     *
+     * @param f     the file
+     * @param attrs the basic attributes of the file
+     * @param bytes the current contents of the file
+     * @return the entry, or {@code null}
+     */
+    Entry get(File f, BasicFileAttributes attrs, byte[] bytes) {
+        String key = getKey(f);
+        if (key == null) {
+            return null;
+        }
+        Entry e = entries.get(key);
+        if (e == null
+                || e.size != attrs.size()
+                || e.configStamp != getConfigStamp(f.getParentFile())
+                || !Arrays.equals(e.digest, digest(bytes))) {
+            return null;
+        }
+        e.lastModified = attrs.lastModifiedTime().toMillis();
+        e.used = true;
+        modified = true;
+        return e;
+    }
+
+    /**
+     * Records the test descriptions found in a file.
+     *
+     * @param f            the file
+     * @param attrs        the basic attributes of the file
+     * @param bytes        the contents of the file
+     * @param descriptions the test descriptions found in the file
+     * @param errors       the errors reported while parsing the test descriptions
+     */
+    void put(File f, BasicFileAttributes attrs, byte[] bytes, List<Description> descriptions, List<String> errors) {
+        String key = getKey(f);
+        if (key == null) {
+            return;
+        }
+        Entry e = new Entry(attrs.size(), attrs.lastModifiedTime().toMillis(), digest(bytes),
+                getConfigStamp(f.getParentFile()), descriptions, errors);
+        e.used = true;
+        entries.put(key, e);
+        modified = true;
+    }
+
+    /**
+     * Writes the index to its file, if it has been modified.
+     * Entries for files that have been deleted are discarded.
+     *
+     * @throws IOException if there is a problem writing the file
+     */
+    void write() throws IOException {
+        if (entries.entrySet().removeIf(e -> !e.getValue().used && !new File(rootDir, e.getKey()).exists())) {
+            modified = true;
+        }
+        if (!modified) {
+            return;
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.createDirectories(file.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            writeString(out, getVersionKey());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> me : entries.entrySet()) {
+                Entry e = me.getValue();
+                writeString(out, me.getKey());
+                out.writeLong(e.size);
+                out.writeLong(e.lastModified);
+                out.writeInt(e.digest.length);
+                out.write(e.digest);
+                out.writeLong(e.configStamp);
+                out.writeInt(e.descriptions.size());
+                for (Description d : e.descriptions) {
+                    out.writeInt(d.line);
+                    out.writeInt(d.tagValues.size());
+                    for (Map.Entry<String, String> tv : d.tagValues.entrySet()) {
+                        writeString(out, tv.getKey());
+                        writeString(out, tv.getValue());
+                    }
+                }
+                out.writeInt(e.errors.size());
+                for (String msg : e.errors) {
+                    writeString(out, msg);
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        modified = false;
+    }
+
+    private void read() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !readString(in).equals(getVersionKey())) {
+                return;
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String key = readString(in);
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                byte[] digest = new byte[in.readInt()];
+                in.readFully(digest);
+                long configStamp = in.readLong();
+                int nd = in.readInt();
+                List<Description> descriptions = new ArrayList<>(nd);
+                for (int j = 0; j < nd; j++) {
+                    int line = in.readInt();
+                    int nt = in.readInt();
+                    Map<String, String> tagValues = new LinkedHashMap<>();
+                    for (int k = 0; k < nt; k++) {
+                        String tag = readString(in);
+                        tagValues.put(tag, readString(in));
+                    }
+                    descriptions.add(new Description(line, Collections.unmodifiableMap(tagValues)));
+                }
+                int ne = in.readInt();
+                List<String> errors = new ArrayList<>(ne);
+                for (int j = 0; j < ne; j++) {
+                    errors.add(readString(in));
+                }
+                entries.put(key, new Entry(size, lastModified, digest, configStamp,
+                        Collections.unmodifiableList(descriptions), Collections.unmodifiableList(errors)));
+            }
+        } catch (NoSuchFileException e) {
+            // no index saved by a previous run
+        } catch (IOException | RuntimeException e) {
+            // ignore the content of a bad index file; it will be rewritten
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the path of a file relative to the root of the test suite,
+     * or {@code null} if the file is not within the test suite.
+     */
+    private String getKey(File f) {
+        String rootPath = rootDir.getPath();
+        String path = f.getPath();
+        if (path.length() > rootPath.length()
+                && path.startsWith(rootPath)
+                && path.charAt(rootPath.length()) == File.separatorChar) {
+            return path.substring(rootPath.length() + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a value derived from the size and last-modified time of the
+     * {@code TEST.ROOT} file and any {@code TEST.properties} files that
+     * apply to the files in a directory.
+     */
+    private long getConfigStamp(File dir) {
+        if (dir == null) {
+            return -1;
+        }
+        Long stamp = configStamps.get(dir);
+        if (stamp == null) {
+            long s;
+            if (dir.equals(rootDir)) {
+                s = getFileStamp(new File(rootDir, "TEST.ROOT"));
+            } else {
+                s = getConfigStamp(dir.getParentFile());
+            }
+            s = s * 1_000_003 + getFileStamp(new File(dir, "TEST.properties"));
+            configStamps.put(dir, s);
+            stamp = s;
+        }
+        return stamp;
+    }
+
+    private long getFileStamp(File f) {
+        return f.exists() ? f.lastModified() * 31 + f.length() : -1;
+    }
+
+    /**
+     * Returns a string that identifies the version of jtreg, and any settings
+     * that affect the way that files are parsed, such that any index written
+     * by a different version, or with different settings, will be ignored.
+     */
+    private static String getVersionKey() {
+        Version v = Version.getCurrent();
+        return FORMAT_VERSION
+                + " " + v.product + " " + v.version + " " + v.milestone + " " + v.build
+                + " " + v.buildDate
+                + " " + Boolean.getBoolean("javatest.regtest.allowTrailingBuild");
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final int MAGIC = 0x4A544449; // "JTDI"
+    private static final int FORMAT_VERSION = 2;
+
+    private final File rootDir;
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<File, Long> configStamps = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+}
@@ -33,15 +33,18 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.regex.Pattern;
 
 import com.sun.javatest.TestFilter;
 import com.sun.javatest.TestFinder;
@@ -204,6 +207,10 @@ public class TestManager {
                 initSubdirs();
             Path wd = (e.subdir == null) ? workDir : workDir.resolve(e.subdir);
             File wdf = wd.toFile();
+            TestFinder tf = ts.getTestFinder();
+            if (tf instanceof RegressionTestFinder) {
+                ((RegressionTestFinder) tf).setIndexFile(wd.resolve("jtData").resolve(TEST_INDEX));
+            }
             try {
                 if (WorkDirectory.isWorkDirectory(wdf))
                     e.workDir = WorkDirectory.open(wdf, ts);
@@ -266,18 +273,25 @@ public class TestManager {
         if (e.all)
             return null;
         WorkDirectory wd = getWorkDirectory(ts);
+        List<String> groupTests = new ArrayList<>();
+        for (Path f: expandGroups(e)) {
+            groupTests.add(getRelativePath(e.rootDir, f, null));
+        }
+        Set<String> allPaths = new LinkedHashSet<>(e.files.keySet());
+        allPaths.addAll(groupTests);
+        Set<String> validPaths = validatePaths(wd, allPaths);
+
         Set<String> tests = new LinkedHashSet<>();
         for (Map.Entry<String,Boolean> me: e.files.entrySet()) {
             String test = me.getKey();
             boolean ignoreEmptyFiles = me.getValue();
-            if (validatePath(wd, test))
+            if (validPaths.contains(test))
                 tests.add(test);
             else if (!ignoreEmptyFiles)
                 throw new Fault(i18n, "tm.notATest", test);
         }
-        for (Path f: expandGroups(e)) {
-            String test = getRelativePath(e.rootDir, f, null);
-            if (validatePath(wd, test))
+        for (String test: groupTests) {
+            if (validPaths.contains(test))
                 tests.add(test);
         }
         if (tests.isEmpty() && (!allowEmptyGroups || e.groups.isEmpty()))
@@ -285,40 +299,78 @@ public class TestManager {
         return tests;
     }
 
-    // This method is to work around a bug in TestResultTable.validatePath
-    // such that the extension of the file name is not validated.
-    // In other words, an invalid path dir/file.ex1 will be reported as
-    // valid if dir/file.ex2 exists and is valid.
-    // The problem only exists for paths to files (not directories.)
-    // The solution is to check the root-relative path in the test description
-    // to make sure it is the same as the original path.
-    // See JBS CODETOOLS-7900138, CODETOOLS-7900139
+    /**
+     * Returns the subset of a collection of paths that identify tests or
+     * directories of tests in the test suite for a work directory.
+     *
+     * <p>Each path is first checked with {@link TestResultTable#validatePath}.
+     * However, that method does not validate the extension of the file name:
+     * an invalid path dir/file.ex1 will be reported as valid if dir/file.ex2
+     * exists and is valid. The problem only exists for paths to files (not
+     * directories.) The solution is to check the root-relative path in the
+     * test description to make sure it is the same as the original path.
+     * See JBS CODETOOLS-7900138, CODETOOLS-7900139.
+     *
+     * <p>The test descriptions for all the paths that need to be checked in
+     * this way are found with a single iteration over the test result table.
+     *
+     * @param wd    the work directory
+     * @param paths the paths
+     * @return the paths that are valid
+     */
     @SuppressWarnings("cast") // temporary: to cover transition for generifying TreeIterator
-    private boolean validatePath(WorkDirectory wd, String path) {
-        try {
-            TestResultTable trt = wd.getTestResultTable();
-            if (trt.validatePath(path)) {
-                // bypass check when fragment syntax used
-                if (path.matches(".*#[A-Za-z0-9-_]+"))
-                    return true;
-                File rootDir = wd.getTestSuite().getRootDir();
-                File f = new File(rootDir, path);
-                if (f.isDirectory())
-                    return true;
-                TreeIterator iter = trt.getIterator(new String[] { path }, new TestFilter[0]);
-                while (iter.hasNext()) {
-                    TestResult tr = (TestResult) iter.next();
-                    String trp = tr.getDescription().getRootRelativePath();
-                    if (path.equals(trp))
-                        return true;
+    private Set<String> validatePaths(WorkDirectory wd, Collection<String> paths) {
+        TestResultTable trt = wd.getTestResultTable();
+        File rootDir = wd.getTestSuite().getRootDir();
+        Set<String> valid = new HashSet<>();
+        List<String> files = new ArrayList<>();
+        for (String path: paths) {
+            if (!trt.validatePath(path))
+                continue;
+            // bypass check when fragment syntax used
+            if (FRAGMENT_PATTERN.matcher(path).matches()) {
+                valid.add(path);
+            } else if (looksLikeFile(path) || !new File(rootDir, path).isDirectory()) {
+                files.add(path);
+            } else {
+                valid.add(path);
+            }
+        }
+
+        if (!files.isEmpty()) {
+            Set<String> knownPaths = new HashSet<>();
+            TreeIterator iter = trt.getIterator(files.toArray(new String[0]), new TestFilter[0]);
+            while (iter.hasNext()) {
+                TestResult tr = (TestResult) iter.next();
+                try {
+                    knownPaths.add(tr.getDescription().getRootRelativePath());
+                } catch (TestResult.Fault f) {
+                    // ignore: the path will be reported as invalid
+                }
+            }
+            for (String path: files) {
+                if (knownPaths.contains(path)
+                        || looksLikeFile(path) && new File(rootDir, path).isDirectory()) {
+                    valid.add(path);
                 }
             }
-            return false;
-        } catch (TestResult.Fault f) {
-            return false;
         }
+        return valid;
+    }
+
+    /**
+     * Returns whether a path is expected to identify a file rather than a directory,
+     * because the last component of the path has an extension.
+     * Directories are not expected to have names with extensions, but if they do,
+     * they are still found to be valid, albeit more slowly.
+     */
+    private static boolean looksLikeFile(String path) {
+        int lastSep = path.lastIndexOf('/');
+        return path.indexOf('.', lastSep + 1) > 0;
     }
 
+    private static final Pattern FRAGMENT_PATTERN = Pattern.compile(".*#[A-Za-z0-9-_]+");
+
     public Set<String> getGroups(RegressionTestSuite ts) throws Fault {
         Entry e = map.get(ts.getRootDir().toPath());
         if (e == null)
@@ -489,5 +541,8 @@ public class TestManager {
         return null;
     }
 
+    /** The name of the file in the work directory used to save the index of test descriptions. */
+    private static final String TEST_INDEX = "testDescriptions.index";
+
     private static final I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(TestManager.class);
 }
@@ -32,12 +32,12 @@ import java.io.IOException;
 import java.lang.ref.SoftReference;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.sun.javatest.TestFinder;
 import com.sun.javatest.TestSuite;
@@ -163,6 +163,10 @@ public class TestProperties {
         return getEntry(file).enablePreview;
     }
 
+    int getWeight(File file) {
+        return getEntry(file).weight;
+    }
+
     private Cache.Entry getEntry(File file) {
         File dir = file.isDirectory() ? file : file.getParentFile();
         return cache.getEntry(dir);
@@ -211,6 +215,7 @@ public class TestProperties {
             final int maxOutputSize;
             final boolean allowSmartActionArgs;
             final boolean enablePreview;
+            final int weight;
 
             Entry(Entry parent, File dir) {
                 this.parent = parent;
@@ -263,6 +268,9 @@ public class TestProperties {
 
                     // determine whether tests use preview features, and so require --enable-preview option
                     enablePreview = initEnablePreview(parent);
+
+                    // determine the weight of tests, for use by the resource scheduler
+                    weight = initWeight();
                 } else {
                     if (parent == null)
                         throw new IllegalStateException("TEST.ROOT not found");
@@ -280,6 +288,7 @@ public class TestProperties {
                     maxOutputSize = parent.maxOutputSize;
                     allowSmartActionArgs = parent.allowSmartActionArgs;
                     enablePreview = parent.enablePreview;
+                    weight = parent.weight;
                 }
 
                 useBootClassPath= initUseBootClassPath(parent, dir);
@@ -455,6 +464,15 @@ public class TestProperties {
                 return false;
             }
 
+            private int initWeight() {
+                int w = getInt("weight", 1);
+                if (w < 1) {
+                    error(i18n, "props.bad.value", "weight", w);
+                    return 1;
+                }
+                return w;
+            }
+
             private boolean initEnablePreview(Entry parent) {
                 if (properties.containsKey("enablePreview")) {
                     return properties.getProperty("enablePreview").equals("true");
@@ -484,21 +502,26 @@ public class TestProperties {
         }
 
 
-        /** Cache map, using soft references. */
-        Map<File, SoftReference<Entry>> map;
+        /**
+         * Cache map, using soft references.
+         * The map may be accessed by multiple threads, such as when
+         * test descriptions are read in parallel.
+         */
+        final Map<File, SoftReference<Entry>> map;
         /** Strong reference to most recent entry, and all its ancestors */
-        Entry lastUsedEntry;
+        volatile Entry lastUsedEntry;
         File rootDir;
 
         Cache(File rootDir) {
             this.rootDir = rootDir;
-            map = new HashMap<>();
+            map = new ConcurrentHashMap<>();
         }
 
-        synchronized Entry getEntry(File dir) {
-            if (lastUsedEntry == null || !lastUsedEntry.dir.equals(dir))
-                lastUsedEntry = getEntryInternal(dir);
-            return lastUsedEntry;
+        Entry getEntry(File dir) {
+            Entry e = lastUsedEntry;
+            if (e == null || !e.dir.equals(dir))
+                lastUsedEntry = e = getEntryInternal(dir);
+            return e;
         }
 
         private Entry getEntryInternal(File dir) {
@@ -506,7 +529,20 @@ public class TestProperties {
             Entry e = (ref == null) ? null : ref.get();
             if (e == null) {
                 Entry parent = dir.equals(rootDir) ? null : getEntryInternal(dir.getParentFile());
-                map.put(dir, new SoftReference<>(e = new Entry(parent, dir)));
+                // Use compute to ensure that at most one thread creates the entry
+                // for a directory; the entry for the parent is created beforehand,
+                // because the function must not update any other mappings.
+                Entry[] result = { null };
+                map.compute(dir, (d, r) -> {
+                    Entry re = (r == null) ? null : r.get();
+                    if (re == null) {
+                        re = new Entry(parent, d);
+                        r = new SoftReference<>(re);
+                    }
+                    result[0] = re;
+                    return r;
+                });
+                e = result[0];
             }
             return e;
         }
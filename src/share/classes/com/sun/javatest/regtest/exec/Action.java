@@ -287,6 +287,11 @@ public abstract class Action extends ActionHelper {
                 fw.write("    permission java.io.FilePermission \""
                         + script.absTestClsTopDir().toString().replace(FILESEP, "{/}")
                         + "${/}-\", \"read\";" + LINESEP);
+                if (!script.absLibClsTopDir().equals(script.absTestClsTopDir())) {
+                    fw.write("    permission java.io.FilePermission \""
+                            + script.absLibClsTopDir().toString().replace(FILESEP, "{/}")
+                            + "${/}-\", \"read\";" + LINESEP);
+                }
                 if (argFile != null) {
                     fw.write("    permission java.io.FilePermission \""
                             + argFile.getPath().replace(FILESEP, "{/}")
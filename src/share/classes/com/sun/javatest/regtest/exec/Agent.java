@@ -26,6 +26,8 @@
 package com.sun.javatest.regtest.exec;
 
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -40,10 +42,13 @@ import java.io.PrintWriter;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Deque;
@@ -57,20 +62,26 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.sun.javatest.Status;
 import com.sun.javatest.TestResult;
 import com.sun.javatest.WorkDirectory;
 import com.sun.javatest.regtest.TimeoutHandler;
 import com.sun.javatest.regtest.agent.ActionHelper;
+import com.sun.javatest.regtest.agent.AgentProtocol;
 import com.sun.javatest.regtest.agent.AgentServer;
 import com.sun.javatest.regtest.agent.Alarm;
 import com.sun.javatest.regtest.agent.Flags;
 import com.sun.javatest.regtest.agent.SearchPath;
 import com.sun.javatest.regtest.config.JDK;
 import com.sun.javatest.regtest.config.RegressionParameters;
+import com.sun.javatest.regtest.tool.Version;
 import com.sun.javatest.regtest.util.ProcessUtils;
 import com.sun.javatest.regtest.util.StringUtils;
 
@@ -89,22 +100,32 @@ public class Agent {
     // showAgent is superseded by always-on log to file
     static final boolean showAgent = Flags.get("showAgent");
     static final boolean traceAgent = Flags.get("traceAgent");
+    // use the original protocol to communicate with agents
+    static final boolean useV1Protocol = Flags.get("agentV1Protocol");
 
     /**
      * Start a JDK with given JVM options.
+     * Any options to use a class data sharing archive are given separately,
+     * since they do not affect the behavior of the agent.
      */
-    private Agent(File dir, JDK jdk, List<String> vmOpts, Map<String, String> envVars,
-            File policyFile, float timeoutFactor, Logger logger) throws Fault {
+    private Agent(File dir, JDK jdk, List<String> vmOpts, List<String> cdsOpts, Map<String, String> envVars,
+            File policyFile, float timeoutFactor, boolean sharedDirs, boolean compilerService,
+            boolean libraryClassLoaders, boolean testRunnerService, Logger logger) throws Fault {
         try {
-            id = ++count;
+            id = count.incrementAndGet();
             this.jdk = jdk;
             this.execDir = dir;
             this.vmOpts = vmOpts;
+            this.sharedDirs = sharedDirs;
+            this.libraryClassLoaders = libraryClassLoaders;
             this.logger = logger;
+            currentDir = dir;
+            serverDir = dir;
 
             List<String> cmd = new ArrayList<>();
             cmd.add(jdk.getJavaProg().toString());
             cmd.addAll(vmOpts);
+            cmd.addAll(cdsOpts);
             if (policyFile != null)
                 cmd.add("-Djava.security.policy=" + policyFile.toURI());
             cmd.add(AgentServer.class.getName());
@@ -117,6 +138,15 @@ public class Agent {
             if (policyFile != null)
                 cmd.add(AgentServer.ALLOW_SET_SECURITY_MANAGER);
 
+            if (compilerService)
+                cmd.add(AgentServer.COMPILER_SERVICE);
+
+            if (libraryClassLoaders)
+                cmd.add(AgentServer.LIBRARY_CLASS_LOADERS);
+
+            if (testRunnerService)
+                cmd.add(AgentServer.TEST_RUNNER_SERVICE);
+
             ServerSocket ss = new ServerSocket();
             // Ensure SO_REUSEADDR is false. (It is only needed if we're
             // using a fixed port.) The default setting for SO_REUSEADDR
@@ -133,6 +163,7 @@ public class Agent {
 
             log("Started " + cmd);
 
+            Instant start = Instant.now();
             ProcessBuilder pb = new ProcessBuilder(cmd);
             pb.directory(dir);
             Map<String, String> env = pb.environment();
@@ -148,12 +179,16 @@ public class Agent {
                 ss.setSoTimeout(ACCEPT_TIMEOUT);
                 Socket s = ss.accept();
                 s.setSoTimeout((int)(KeepAlive.READ_TIMEOUT * timeoutFactor));
-                in = new DataInputStream(s.getInputStream());
-                out = new DataOutputStream(s.getOutputStream());
+                in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
             } finally {
                 ss.close();
             }
 
+            protocol = negotiateProtocol();
+            startupTime = Duration.between(start, Instant.now());
+            usesSharedArchive = !cdsOpts.isEmpty();
+
             keepAlive = new KeepAlive(out, traceAgent);
             // send keep-alive messages to server while not executing actions
             keepAlive.setEnabled(true);
@@ -162,6 +197,40 @@ public class Agent {
         }
     }
 
+    /**
+     * Determines the version of the protocol to use to communicate with the server.
+     * Unless the use of the original protocol is explicitly requested, the latest
+     * version supported by this class is proposed, and the server replies with
+     * the version that it will use, which may be an earlier version.
+     *
+     * @return the protocol
+     * @throws IOException if an error occurs while communicating with the server
+     */
+    private AgentProtocol negotiateProtocol() throws IOException {
+        if (useV1Protocol) {
+            return AgentProtocol.forVersion(AgentProtocol.V1);
+        }
+
+        // See corresponding code in AgentServer.doProtocol
+        out.writeByte(PROTOCOL);
+        out.writeInt(AgentProtocol.LATEST);
+        out.flush();
+        int op;
+        while ((op = in.readByte()) == KEEPALIVE) {
+            // ignore
+        }
+        if (op != PROTOCOL) {
+            throw new IOException("Agent: unexpected op: " + op);
+        }
+        int version = in.readInt();
+        log("Using protocol version " + version);
+        try {
+            return AgentProtocol.forVersion(version);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
     /**
      * Reads the output written by an agent process, and copies it either to
      * the current TestResult object (when one is available) or to the agent's
@@ -247,11 +316,25 @@ public class Agent {
     }
 
     public boolean matches(File execDir, JDK jdk, List<String> vmOpts) {
-        return this.execDir.getName().equals(execDir.getName())
+        return (sharedDirs || this.execDir.getName().equals(execDir.getName()))
                 && this.jdk.equals(jdk)
                 && this.vmOpts.equals(vmOpts);
     }
 
+    /**
+     * Sets the directory in which subsequent actions should be executed.
+     * The directory is only changed for agents that may be shared between
+     * different execution directories; otherwise, actions are always executed
+     * in the directory in which the agent was started.
+     *
+     * @param dir the directory
+     */
+    void setCurrentDirectory(File dir) {
+        if (sharedDirs) {
+            currentDir = dir;
+        }
+    }
+
     public Status doCompileAction(
             final String testName,
             final Map<String, String> testProps,
@@ -268,7 +351,7 @@ public class Agent {
                     public void send() throws IOException {
                             // See corresponding list in AgentServer.doCompile
                             out.writeByte(DO_COMPILE);
-                            out.writeUTF(testName);
+                            protocol.writeString(out, testName);
                             writeMap(testProps);
                             writeCollection(cmdArgs);
                             out.flush();
@@ -286,6 +369,8 @@ public class Agent {
             final Set<String> addOpens,
             final Set<String> addMods,
             final SearchPath testClassPath,
+            final SearchPath libraryClassPath,
+            final String libraryKey,
             final SearchPath modulePath,
             final String testClass,
             final List<String> testArgs,
@@ -295,6 +380,7 @@ public class Agent {
                 throws Fault {
         trace("doMainAction: " + testName
                     + " " + testClassPath
+                    + " " + libraryClassPath
                     + " " + modulePath
                     + " " + testClass
                     + " " + testArgs);
@@ -305,15 +391,19 @@ public class Agent {
                     public void send() throws IOException {
                         // See corresponding list in AgentServer.doMain
                         out.writeByte(DO_MAIN);
-                        out.writeUTF(testName);
+                        protocol.writeString(out, testName);
                         writeMap(testProps);
                         writeCollection(addExports);
                         writeCollection(addOpens);
                         writeCollection(addMods);
-                        out.writeUTF(testClassPath.toString());
-                        out.writeUTF(modulePath.toString());
-                        out.writeUTF(testClass);
+                        protocol.writeString(out, testClassPath.toString());
+                        protocol.writeString(out, modulePath.toString());
+                        protocol.writeString(out, testClass);
                         writeCollection(testArgs);
+                        if (libraryClassLoaders) {
+                            protocol.writeString(out, libraryClassPath.toString());
+                            protocol.writeString(out, libraryKey);
+                        }
                         out.flush();
                     }
                 },
@@ -354,6 +444,12 @@ public class Agent {
         try {
             captureProcessStreams(trs);
             synchronized (out) {
+                if (!currentDir.equals(serverDir)) {
+                    // See corresponding code in AgentServer.doSetDir
+                    out.writeByte(SET_DIR);
+                    protocol.writeString(out, currentDir.getPath());
+                    serverDir = currentDir;
+                }
                 agentAction.send();
             }
             trace(actionName + ": request sent");
@@ -453,9 +549,7 @@ public class Agent {
     }
 
     void writeCollection(Collection<String> c) throws IOException {
-        out.writeShort(c.size());
-        for (String s: c)
-            out.writeUTF(s);
+        protocol.writeCollection(out, c);
     }
 
     void writeOptionalString(String s) throws IOException {
@@ -463,21 +557,17 @@ public class Agent {
             out.writeByte(0);
         else {
             out.writeByte(1);
-            out.writeUTF(s);
+            protocol.writeString(out, s);
         }
     }
 
-    static String readOptionalString(DataInputStream in) throws IOException {
+    String readOptionalString() throws IOException {
         int b = in.readByte();
-        return (b == 0) ? null : in.readUTF();
+        return (b == 0) ? null : protocol.readString(in);
     }
 
     void writeMap(Map<String, String> map) throws IOException {
-        out.writeShort(map.size());
-        for (Map.Entry<String, String> e: map.entrySet()) {
-            out.writeUTF(e.getKey());
-            out.writeUTF(e.getValue());
-        }
+        protocol.writeMap(out, map);
     }
 
     Status readResults(TestResult.Section trs) throws IOException {
@@ -486,8 +576,8 @@ public class Agent {
         while ((op = in.readByte()) != -1) {
             switch (op) {
                 case OUTPUT: {
-                    String name = in.readUTF();
-                    String data = in.readUTF();
+                    String name = protocol.readOutputName(in);
+                    String data = protocol.readString(in);
                     trace("readResults: OUTPUT \'" + name + "\' \'" + data + "\"");
                     PrintWriter pw = streams.get(name);
                     if (pw == null) {
@@ -502,7 +592,7 @@ public class Agent {
                 }
                 case STATUS: {
                     int type = in.readByte();
-                    String reason = in.readUTF();
+                    String reason = protocol.readString(in);
                     trace("readResults: STATUS \'" + type + "\' \'" + reason + "\"");
                     for (PrintWriter pw: streams.values()) {
                         if (pw != trs.getMessageWriter())
@@ -568,15 +658,27 @@ public class Agent {
     final JDK jdk;
     final List<String> vmOpts;
     final File execDir;
+    final boolean sharedDirs;
+    /** Whether the agent loads library classes with class loaders that are shared between tests. */
+    final boolean libraryClassLoaders;
+    /** The directory in which the next action should be executed. */
+    File currentDir;
+    /** The directory most recently sent to the agent server. */
+    private File serverDir;
     final Process process;
     final DataInputStream in;
     final DataOutputStream out;
+    final AgentProtocol protocol;
     final KeepAlive keepAlive;
     final int id;
     final Logger logger;
+    /** The time taken for the agent to start and connect to this object. */
+    final Duration startupTime;
+    /** Whether the agent was started with a class data sharing archive. */
+    final boolean usesSharedArchive;
     Instant idleStartTime;
 
-    static int count;
+    static final AtomicInteger count = new AtomicInteger();
 
     /**
      * Logger provides a directory ion which log files can be created,
@@ -676,7 +778,10 @@ public class Agent {
         private Pool(RegressionParameters params) {
             agentsByKey = new HashMap<>();
             allAgents = new LinkedList<>();
+            pendingByKey = new HashMap<>();
             logger = Logger.instance(params);
+            agentDirs = params.getWorkDirectory().getFile("scratch_agents");
+            cds = params.isUseCDSArchives() ? ClassDataSharing.instance(params) : null;
         }
 
         /**
@@ -707,6 +812,20 @@ public class Agent {
             logger.log(null, "POOL: idle timeout: " + timeout);
         }
 
+        /**
+         * Sets whether VMs in the pool may be shared between different execution
+         * directories. If they can, VMs are started in a directory of their own,
+         * and the working directory for each action is set with the
+         * {@code user.dir} system property. VMs are then selected from the pool
+         * using just the JDK and VM options.
+         *
+         * @param b whether VMs may be shared between execution directories
+         */
+        public void setSharedDirectories(boolean b) {
+            this.sharedDirs = b;
+            logger.log(null, "POOL: shared directories: " + b);
+        }
+
         /**
          * Sets the maximum number of VMs in the pool.
          *
@@ -717,13 +836,115 @@ public class Agent {
             logger.log(null, "POOL: max pool size: " + maxPoolSize);
         }
 
+        /**
+         * Sets whether VMs in the pool should compile classes with a compiler
+         * service that reuses the compiler and its file manager for successive
+         * compilations, instead of creating a new instance of the compiler
+         * for each compilation.
+         *
+         * @param b whether VMs should use a compiler service
+         */
+        public void setCompilerService(boolean b) {
+            this.compilerService = b;
+            logger.log(null, "POOL: compiler service: " + b);
+        }
+
+        /**
+         * Sets the names of libraries, as given in {@code @library} tags, whose classes
+         * may be loaded with class loaders that are shared by all the tests in each VM
+         * that use the same libraries, instead of with a new class loader for each test.
+         * Only tests that use none but these libraries are executed with shared class
+         * loaders, in which case only the classes in the test's own directories are
+         * loaded with a new class loader for each test.
+         * The classes in the libraries must not have static state that depends on
+         * the test that first uses them.
+         * VMs in the pool use shared class loaders if any libraries are given.
+         *
+         * @param libs the names of the libraries
+         */
+        public void setSharedLibraries(Set<String> libs) {
+            this.sharedLibraries = Set.copyOf(libs);
+            this.libraryClassLoaders = !libs.isEmpty();
+            logger.log(null, "POOL: shared libraries: " + libs);
+        }
+
+        /**
+         * Returns the names of libraries whose classes may be loaded with
+         * shared class loaders.
+         *
+         * @return the names of the libraries
+         */
+        public Set<String> getSharedLibraries() {
+            return sharedLibraries;
+        }
+
+        /**
+         * Returns a string that identifies the entries on a library class path, and the
+         * state of the classes in those entries, for use as the key for a class loader
+         * that may be shared by tests that use the same libraries in an agent VM.
+         * The string changes whenever classes in any of the directories are compiled
+         * again, since the previous versions of the classes may already have been loaded.
+         *
+         * @param classPath the library class path
+         * @return the key
+         */
+        String getLibraryKey(SearchPath classPath) {
+            StringBuilder sb = new StringBuilder();
+            for (Path p : classPath.asList()) {
+                if (sb.length() > 0) {
+                    sb.append(File.pathSeparator);
+                }
+                sb.append(p);
+                if (Files.isRegularFile(p)) {
+                    File f = p.toFile();
+                    sb.append('@').append(f.length()).append(':').append(f.lastModified());
+                } else {
+                    AtomicInteger g = libraryGenerations.get(p);
+                    sb.append('#').append(g == null ? 0 : g.get());
+                }
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Records that classes in a library directory have been compiled again,
+         * if there is a pool associated with the given RegressionParameters object.
+         * If there is no such pool, there are no agents that may have loaded
+         * the previous versions of the classes.
+         *
+         * @param params the RegressionParameters object
+         * @param dir    the library directory
+         */
+        static synchronized void libraryRecompiled(RegressionParameters params, Path dir) {
+            Pool instance = instances.get(params);
+            if (instance != null) {
+                instance.libraryGenerations.computeIfAbsent(dir, d -> new AtomicInteger()).incrementAndGet();
+            }
+        }
+
+        /**
+         * Sets whether VMs in the pool should execute JUnit and TestNG test classes
+         * with a service that retains the state of the test runners, such as the
+         * JUnit Platform launcher and its test engines, for successive test classes,
+         * and which reports the time taken to execute each test class.
+         *
+         * @param b whether VMs should use a test runner service
+         */
+        public void setTestRunnerService(boolean b) {
+            this.testRunnerService = b;
+            logger.log(null, "POOL: test runner service: " + b);
+        }
+
         /**
          * Obtains an agent with the desired properties.
          * If a suitable agent already exists in the pool, it will be removed from the pool and
-         * returned; otherwise, a new one will be created.
+         * returned; if a suitable agent is being started in the background, the method will
+         * wait for it to be ready and return it; otherwise, a new one will be created.
          * Eventually, the agent should either be {@link #save(Agent) returned} to the pool,
          * if it can be reused, or {@link Agent#close() closed}, if it should not be reused.
          *
+         * New agents are created without holding the lock for the pool, so that
+         * multiple threads may start agents at the same time.
          *
          * @param dir     the execution directory for the agent
          * @param jdk     the JDK for the agent
@@ -732,10 +953,10 @@ public class Agent {
          * @return the agent
          * @throws Fault if there is a problem obtaining a suitable agent
          */
-        synchronized Agent getAgent(File dir,
-                                    JDK jdk,
-                                    List<String> vmOpts,
-                                    Map<String, String> envVars)
+        Agent getAgent(File dir,
+                       JDK jdk,
+                       List<String> vmOpts,
+                       Map<String, String> envVars)
                 throws Fault {
             logger.log(null,
                     "POOL: get agent for:\n"
@@ -743,23 +964,207 @@ public class Agent {
                             + "         JDK: " + jdk + "\n"
                             + "  VM options: " + vmOpts + "\n"
             );
-            Deque<Agent> agents = agentsByKey.get(getKey(dir, jdk, vmOpts));
-            // reuse the most recently used agent, to increase the possibility
-            // that older, less-used agents can be reclaimed.
-            Agent a = (agents == null) ? null : agents.pollLast();
-            if (a != null) {
-                logger.log(null, "POOL: Reusing Agent[" + a.getId() + "]");
-                allAgents.remove(a);
-                stats.reuse(a);
-            } else {
-                logger.log(null, "POOL: Creating new agent");
-                a = new Agent(dir, jdk, vmOpts, envVars, policyFile, timeoutFactor, logger);
-                stats.add(a);
+            String key = getKey(dir, jdk, vmOpts);
+            PendingAgent pending;
+            synchronized (this) {
+                Deque<Agent> agents = agentsByKey.get(key);
+                // reuse the most recently used agent, to increase the possibility
+                // that older, less-used agents can be reclaimed.
+                Agent a = (agents == null) ? null : agents.pollLast();
+                if (a != null) {
+                    logger.log(null, "POOL: Reusing Agent[" + a.getId() + "]");
+                    allAgents.remove(a);
+                    stats.reuse(a);
+                    return a;
+                }
+                pending = removePending(key);
             }
 
+            if (pending != null) {
+                logger.log(null, "POOL: Waiting for agent being started");
+                try {
+                    Agent a = pending.future.get();
+                    logger.log(null, "POOL: Using started Agent[" + a.getId() + "]");
+                    synchronized (this) {
+                        stats.reuse(a);
+                    }
+                    return a;
+                } catch (ExecutionException e) {
+                    logger.log(null, "POOL: Agent could not be started: " + e.getCause());
+                } catch (InterruptedException e) {
+                    pending.future.thenAccept(Agent::close);
+                    throw new Fault(e);
+                }
+            }
+
+            logger.log(null, "POOL: Creating new agent");
+            Agent a = new Agent(sharedDirs ? newAgentDir() : dir, jdk, vmOpts, getCDSOptions(jdk, vmOpts, envVars),
+                    envVars, policyFile, timeoutFactor, sharedDirs, compilerService, libraryClassLoaders,
+                    testRunnerService, logger);
+            synchronized (this) {
+                stats.add(a);
+            }
             return a;
         }
 
+        /**
+         * Starts agents in the background for the configurations that are expected to be
+         * used by the compile and main actions of tests, so that they are ready
+         * by the time the first tests need them.
+         * The agents are started in parallel; this method does not wait for them
+         * to be ready.
+         * When an agent is ready, it is made available in the pool, unless
+         * it has already been claimed by a call of {@link #getAgent}.
+         *
+         * @param params the parameters for the test run
+         * @param count  the number of agents to start for each configuration
+         */
+        public void prestart(RegressionParameters params, int count) {
+            JDK compileJDK = params.getCompileJDK();
+            SearchPath compileClassPath = new SearchPath(compileJDK.getJDKClassPath(), params.getJavaTestClassPath());
+            prestart(params, compileJDK, compileClassPath, params.getTestVMOptions(), count);
+
+            // See corresponding code in MainAction.runAgentJVM: the classpath for the
+            // agent can only be determined in advance when using the preferred behavior.
+            Version v = params.getTestSuite().getRequiredVersion();
+            if (v.version == null || v.compareTo(new Version("5.1 b01")) >= 0) {
+                JDK testJDK = params.getTestJDK();
+                SearchPath testClassPath = new SearchPath()
+                        .append(params.getJavaTestClassPath())
+                        .append(testJDK.getJDKClassPath())
+                        .append(params.getJUnitPath())
+                        .append(params.getTestNGPath());
+                List<String> testVMOpts = new ArrayList<>();
+                testVMOpts.addAll(params.getTestVMJavaOptions());
+                testVMOpts.addAll(params.getTestDebugOptions());
+                prestart(params, testJDK, testClassPath, testVMOpts, count);
+            }
+        }
+
+        private void prestart(RegressionParameters params, JDK jdk, SearchPath classpath,
+                              List<String> testVMOpts, int count) {
+            List<String> vmOpts = RegressionScript.getAgentVMOptions(params, classpath, testVMOpts);
+            Map<String, String> envVars = RegressionScript.getAgentEnvVars(params, jdk);
+            int concurrency = params.getConcurrency();
+            for (int i = 0; i < count; i++) {
+                File dir = sharedDirs
+                        ? newAgentDir()
+                        : ScratchDirectory.ThreadSafeScratchDir.getDir(params, i % concurrency, 0);
+                if (!dir.exists() && !dir.mkdirs()) {
+                    logger.log(null, "POOL: cannot create directory " + dir);
+                    continue;
+                }
+                String key = getKey(dir, jdk, vmOpts);
+                final PendingAgent p = new PendingAgent(key, dir);
+                synchronized (this) {
+                    pendingByKey.computeIfAbsent(key, k -> new LinkedList<>()).add(p);
+                }
+                logger.log(null,
+                        "POOL: prestart agent for:\n"
+                                + "   directory: " + dir + "\n"
+                                + "         JDK: " + jdk + "\n"
+                                + "  VM options: " + vmOpts + "\n"
+                );
+                Thread t = new Thread() {
+                    @Override
+                    public void run() {
+                        startPendingAgent(p, dir, jdk, vmOpts, envVars);
+                    }
+                };
+                t.setName("Agent Pool Prestart " + i);
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+
+        /**
+         * Starts an agent that has been requested by {@link #prestart}.
+         * If the agent has not been claimed by the time it is ready,
+         * it is saved in the pool for use by subsequent calls of {@link #getAgent}.
+         */
+        private void startPendingAgent(PendingAgent p, File dir, JDK jdk, List<String> vmOpts,
+                                       Map<String, String> envVars) {
+            Agent a;
+            try {
+                a = new Agent(dir, jdk, vmOpts, getCDSOptions(jdk, vmOpts, envVars), envVars,
+                        policyFile, timeoutFactor, sharedDirs, compilerService, libraryClassLoaders,
+                        testRunnerService, logger);
+            } catch (Fault e) {
+                synchronized (this) {
+                    removePending(p);
+                }
+                logger.log(null, "POOL: cannot prestart agent: " + e.getCause());
+                p.future.completeExceptionally(e);
+                return;
+            }
+
+            synchronized (this) {
+                stats.prestart(a);
+                if (removePending(p)) {
+                    logger.log(a, "Saving prestarted agent to pool");
+                    agentsByKey.computeIfAbsent(p.key, k -> new LinkedList<>()).add(a);
+                    allAgents.addLast(a);
+                    a.idleStartTime = Instant.now();
+                    stats.trackPoolSize(allAgents.size());
+                }
+            }
+            p.future.complete(a);
+        }
+
+        /**
+         * Returns the options to use a class data sharing archive for an agent,
+         * or an empty list if archives are not being used, or if there is no
+         * suitable archive available.
+         */
+        private List<String> getCDSOptions(JDK jdk, List<String> vmOpts, Map<String, String> envVars) {
+            return (cds == null) ? Collections.emptyList() : cds.getJavaOptions(jdk, vmOpts, envVars);
+        }
+
+        /**
+         * Returns a new directory in which to start an agent that may be shared
+         * between execution directories.
+         *
+         * @return the directory
+         */
+        private File newAgentDir() {
+            File dir = new File(agentDirs, String.valueOf(agentDirCount.incrementAndGet()));
+            dir.mkdirs();
+            return dir;
+        }
+
+        /**
+         * Claims an agent for a given key that is being started in the background.
+         *
+         * @param key the key
+         * @return the pending agent, or {@code null} if there is none
+         */
+        private PendingAgent removePending(String key) {
+            Deque<PendingAgent> deque = pendingByKey.get(key);
+            PendingAgent p = (deque == null) ? null : deque.pollFirst();
+            if (deque != null && deque.isEmpty()) {
+                pendingByKey.remove(key);
+            }
+            return p;
+        }
+
+        /**
+         * Removes an agent that is being started in the background from the
+         * collection of agents that have not yet been claimed.
+         *
+         * @param p the pending agent
+         * @return {@code true} if the agent had not yet been claimed, and {@code false} otherwise
+         */
+        private boolean removePending(PendingAgent p) {
+            Deque<PendingAgent> deque = pendingByKey.get(p.key);
+            if (deque != null && deque.remove(p)) {
+                if (deque.isEmpty()) {
+                    pendingByKey.remove(p.key);
+                }
+                return true;
+            }
+            return false;
+        }
+
         /**
          * Saves an agent in the pool for potential reuse.
          * The agent is assumed to have been restored to some standard state.
@@ -835,6 +1240,13 @@ public class Agent {
             for (Agent a : allAgents) {
                 a.close();
             }
+            // agents that are still being started will be closed when they are ready
+            for (Deque<PendingAgent> deque : pendingByKey.values()) {
+                for (PendingAgent p : deque) {
+                    p.future.thenAccept(Agent::close);
+                }
+            }
+            pendingByKey.clear();
             allAgents.clear();
             agentsByKey.clear();
             stats.report(new File(logger.agentLogFileDirectory, "agent.summary"), logger);
@@ -858,6 +1270,8 @@ public class Agent {
          * Closes all agents in this pool with the given execution directory.
          * This is for use when the directory is no longer suitable for use,
          * such as when containing a file that cannot be deleted.
+         * For agents that may be shared between execution directories,
+         * the directory in which the agent was most recently used is checked.
          *
          * @param dir the execution directory
          */
@@ -865,7 +1279,7 @@ public class Agent {
             logger.log(null, "POOL: closing agents using directory " + dir);
             for (Iterator<Agent> iter = allAgents.iterator(); iter.hasNext(); ) {
                 Agent agent = iter.next();
-                if (agent.execDir.equals(dir)) {
+                if (agent.currentDir.equals(dir)) {
                     // remove from the allAgents list, currently being iterated
                     iter.remove();
                     // remove from the agentsByKey map
@@ -879,14 +1293,28 @@ public class Agent {
                     agent.close();
                 }
             }
+            for (Iterator<Deque<PendingAgent>> iter = pendingByKey.values().iterator(); iter.hasNext(); ) {
+                Deque<PendingAgent> deque = iter.next();
+                for (Iterator<PendingAgent> pIter = deque.iterator(); pIter.hasNext(); ) {
+                    PendingAgent p = pIter.next();
+                    if (p.execDir.equals(dir)) {
+                        pIter.remove();
+                        p.future.thenAccept(Agent::close);
+                    }
+                }
+                if (deque.isEmpty()) {
+                    iter.remove();
+                }
+            }
         }
 
-        private static String getKey(Agent agent) {
+        private String getKey(Agent agent) {
             return getKey(agent.execDir, agent.jdk, agent.vmOpts);
         }
 
-        private static String getKey(File dir, JDK jdk, List<String> vmOpts) {
-            return (dir.getAbsolutePath() + " " + jdk.getAbsoluteHomeDirectory() + " " + StringUtils.join(vmOpts, " "));
+        private String getKey(File dir, JDK jdk, List<String> vmOpts) {
+            String jdkAndOpts = jdk.getAbsoluteHomeDirectory() + " " + StringUtils.join(vmOpts, " ");
+            return sharedDirs ? jdkAndOpts : (dir.getAbsolutePath() + " " + jdkAndOpts);
         }
 
         private final Logger logger;
@@ -907,8 +1335,46 @@ public class Agent {
          */
         private final Deque<Agent> allAgents;
 
+        /**
+         * A map of the agents that are being started in the background,
+         * and which have not yet been claimed by any caller of {@code getAgent},
+         * indexed by the same key as used for {@code agentsByKey}.
+         */
+        private final Map<String, Deque<PendingAgent>> pendingByKey;
+
+        /**
+         * An agent that is being started in the background.
+         */
+        private static class PendingAgent {
+            final String key;
+            final File execDir;
+            final CompletableFuture<Agent> future = new CompletableFuture<>();
+
+            PendingAgent(String key, File execDir) {
+                this.key = key;
+                this.execDir = execDir;
+            }
+        }
+
+        /**
+         * The directory in which to create directories for agents that may be
+         * shared between execution directories.
+         */
+        private final File agentDirs;
+        private final AtomicInteger agentDirCount = new AtomicInteger();
+
+        /** The class data sharing archives to use, or {@code null} if they are not being used. */
+        private final ClassDataSharing cds;
+
         private File policyFile;
         private float timeoutFactor = 1.0f;
+        private boolean sharedDirs;
+        private boolean compilerService;
+        private boolean libraryClassLoaders;
+        private Set<String> sharedLibraries = Set.of();
+        /** The number of times that classes have been compiled again in each library directory. */
+        private final Map<Path, AtomicInteger> libraryGenerations = new ConcurrentHashMap<>();
+        private boolean testRunnerService;
         private int maxPoolSize;
         private Duration idleTimeout;
     }
@@ -919,15 +1385,26 @@ public class Agent {
         Set<List<String>> allVMOpts = new TreeSet<>(Comparator.comparing(Objects::toString));
         Map<Integer, Integer> useCounts = new TreeMap<>();
         Map<Integer, Integer> sizeCounts = new TreeMap<>();
+        List<Integer> startupTimes = new ArrayList<>();
+        List<Integer> sharedArchiveStartupTimes = new ArrayList<>();
+        int prestartCount;
 
         void add(Agent a) {
             allDirs.add(a.execDir);
             allJDKs.add(a.jdk);
             allVMOpts.add(a.vmOpts);
+            (a.usesSharedArchive ? sharedArchiveStartupTimes : startupTimes)
+                    .add((int) a.startupTime.toMillis());
 
             useCounts.put(a.id, 1);
         }
 
+        void prestart(Agent a) {
+            add(a);
+            useCounts.put(a.id, 0);
+            prestartCount++;
+        }
+
         void reuse(Agent a) {
             useCounts.put(a.id, useCounts.get(a.id) + 1);
         }
@@ -942,6 +1419,9 @@ public class Agent {
             allVMOpts.clear();
             useCounts.clear();
             sizeCounts.clear();
+            startupTimes.clear();
+            sharedArchiveStartupTimes.clear();
+            prestartCount = 0;
         }
 
         void report(File file, Logger logger) {
@@ -956,6 +1436,19 @@ public class Agent {
                 out.println();
 
 
+                out.format("Prestarted Agents: %d%n", prestartCount);
+                out.println();
+
+                out.format("Agent Startup Time (ms):%n");
+                reportStartupTimes(out, "Without CDS archive", startupTimes);
+                reportStartupTimes(out, "With CDS archive", sharedArchiveStartupTimes);
+                if (!startupTimes.isEmpty() && !sharedArchiveStartupTimes.isEmpty()) {
+                    double gain = getSimpleMeanStandardDeviation(startupTimes)[0]
+                            - getSimpleMeanStandardDeviation(sharedArchiveStartupTimes)[0];
+                    out.format("    Mean gain with CDS archive: %7.1f%n", gain);
+                }
+                out.println();
+
                 out.format("Agent Usage:%n");
                 useCounts.forEach((id, c) -> out.format("    %3d: %3d%n", id, c));
                 double[] use_m_sd = getSimpleMeanStandardDeviation(useCounts.values());
@@ -974,6 +1467,15 @@ public class Agent {
             }
         }
 
+        private void reportStartupTimes(PrintWriter out, String title, List<Integer> times) {
+            if (times.isEmpty()) {
+                out.format("    %s: %d%n", title, 0);
+            } else {
+                double[] m_sd = getSimpleMeanStandardDeviation(times);
+                out.format("    %s: %d, mean %7.1f, std deviation %7.1f%n", title, times.size(), m_sd[0], m_sd[1]);
+            }
+        }
+
         private <T> void report(PrintWriter out, String title, Set<T> set) {
             out.format("%s: %d%n", title, set.size());
             set.forEach(item -> out.format("    %s%n", item));
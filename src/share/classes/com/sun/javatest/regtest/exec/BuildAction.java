@@ -26,19 +26,28 @@
 package com.sun.javatest.regtest.exec;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.sun.javatest.Status;
+import com.sun.javatest.regtest.config.BuildState;
 import com.sun.javatest.regtest.config.Locations;
 import com.sun.javatest.regtest.config.Locations.ClassLocn;
 import com.sun.javatest.regtest.config.Locations.LibLocn;
@@ -164,7 +173,11 @@ public class BuildAction extends Action
      * given action is defined by the tag specification.
      *
      * Each named class will be compiled if its corresponding class file doesn't
-     * exist or is older than its source file.  The class name is fully
+     * exist or is out of date with respect to its source file, or to the source
+     * files for any library classes that it references, as recorded in the
+     * {@link BuildState build state} for the work directory.  If there is no
+     * such record for the class, it will be compiled if the class file is older
+     * than its source file.  The class name is fully
      * qualified as necessary and the ".java" extension is added before
      * compilation.
      *
@@ -197,7 +210,7 @@ public class BuildAction extends Action
                                 DateFormat.getDateTimeInstance().format(new Date(sfMillis))));
                         pw.println(BUILD_FUTURE_SOURCE_2);
                     }
-                    if (!cl.isUpToDate()) {
+                    if (!cl.isUpToDate(script.getBuildState())) {
                         List<ClassLocn> classLocnsForLib = classLocnsToCompile.get(cl.lib);
                         if (classLocnsForLib == null) {
                             classLocnsForLib = new ArrayList<>();
@@ -225,7 +238,7 @@ public class BuildAction extends Action
             // compile libraries first
             for (Map.Entry<LibLocn,List<ClassLocn>> e: classLocnsToCompile.entrySet()) {
                 if (e.getKey().name != null) {
-                    Status s = compileLibrary(e.getKey(), e.getValue());
+                    Status s = compileSharedLibrary(e.getKey(), e.getValue());
                     if (!s.isPassed()) {
                         status = s;
                         break;
@@ -237,7 +250,7 @@ public class BuildAction extends Action
             if (status == null) {
                 for (Map.Entry<LibLocn,List<ClassLocn>> e: classLocnsToCompile.entrySet()) {
                     if (e.getKey().name == null) {
-                        Status s = compileLibrary(e.getKey(), e.getValue());
+                        Status s = compileLibrary(e.getKey(), e.getValue(), false);
                         if (!s.isPassed()) {
                             status = s;
                             break;
@@ -254,15 +267,128 @@ public class BuildAction extends Action
         return status;
     } // run()
 
-    private Status compileLibrary(LibLocn libLocn, List<ClassLocn> classLocns) throws TestRunException {
+    /**
+     * Compiles classes in a library, whose classes may be shared with other tests
+     * that are being run concurrently. Only one test at a time may compile classes
+     * in any given library. Once a test has exclusive access to the library, any
+     * classes that have since been compiled by another test are not compiled again.
+     *
+     * <p>Tests running in other VMs may be reading classes in the library directory
+     * while classes are being compiled, and so the classes are compiled into a
+     * separate staging directory, and then each class file is moved into the
+     * library directory with an atomic rename, so that a class file that is being
+     * read is never partially written.
+     */
+    private Status compileSharedLibrary(LibLocn libLocn, List<ClassLocn> classLocns) throws TestRunException {
+        synchronized (getLibraryLock(libLocn)) {
+            List<ClassLocn> toCompile = new ArrayList<>();
+            for (ClassLocn cl: classLocns) {
+                if (!cl.isUpToDate(script.getBuildState())) {
+                    toCompile.add(cl);
+                }
+            }
+            return toCompile.isEmpty() ? passed(BUILD_UP_TO_DATE) : compileLibrary(libLocn, toCompile, true);
+        }
+    }
+
+    /**
+     * Returns the object used to coordinate the compilation of the classes in a library.
+     */
+    static Object getLibraryLock(LibLocn libLocn) {
+        return libraryLocks.computeIfAbsent(libLocn.absClsDir, d -> new Object());
+    }
+
+    private static final Map<Path, Object> libraryLocks = new ConcurrentHashMap<>();
+
+    private Status compileLibrary(LibLocn libLocn, List<ClassLocn> classLocns, boolean staged)
+            throws TestRunException {
         showClasses(libLocn, classLocns);
 
+        boolean recompiling = false;
+        for (ClassLocn cl: classLocns) {
+            if (Files.exists(cl.absClsFile)) {
+                recompiling = true;
+                break;
+            }
+        }
+
+        Status status;
+        if (staged) {
+            Path stagingDir = null;
+            try {
+                Files.createDirectories(libLocn.absClsDir);
+                stagingDir = Files.createTempDirectory(libLocn.absClsDir.getParent(), STAGING_DIR_PREFIX);
+                status = compileLibraryFiles(libLocn, stagingDir, classLocns);
+                if (status.isPassed()) {
+                    moveClasses(stagingDir, libLocn.absClsDir);
+                }
+            } catch (IOException e) {
+                throw new TestRunException("Cannot install classes for library " + libLocn.name, e);
+            } finally {
+                if (stagingDir != null) {
+                    deleteAll(stagingDir.toFile());
+                }
+            }
+        } else {
+            status = compileLibraryFiles(libLocn, null, classLocns);
+        }
+        if (recompiling) {
+            script.libraryRecompiled(libLocn.absClsDir);
+        }
+        if (status.isPassed()) {
+            recordCompiled(classLocns);
+        }
+        return status;
+    }
+
+    /**
+     * Moves the files in a staging directory into a library class directory.
+     * Each file is moved with an atomic rename if possible, replacing any
+     * existing file, so that a VM reading the file sees either the old or
+     * the new contents.
+     */
+    private static void moveClasses(Path stagingDir, Path libClsDir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.walk(stagingDir)) {
+            files = s.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path f : files) {
+            Path target = libClsDir.resolve(stagingDir.relativize(f));
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(f, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(f, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static void deleteAll(File dir) {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                if (c.isDirectory()) {
+                    deleteAll(c);
+                } else {
+                    c.delete();
+                }
+            }
+        }
+        dir.delete();
+    }
+
+    // The staging directories are created beside the library class directories,
+    // so that files can be renamed into place; the prefix cannot be a package name.
+    private static final String STAGING_DIR_PREFIX = ".staging-";
+
+    private Status compileLibraryFiles(LibLocn libLocn, Path libClsDir, List<ClassLocn> classLocns)
+            throws TestRunException {
         switch (libLocn.kind) {
             case PACKAGE:
-                return compileFiles(libLocn, false, null, getSrcFiles(classLocns));
+                return compileFiles(libLocn, libClsDir, false, null, getSrcFiles(classLocns));
 
             case USER_MODULE:
-                return compileFiles(libLocn, true, null, getSrcFiles(classLocns));
+                return compileFiles(libLocn, libClsDir, true, null, getSrcFiles(classLocns));
 
             case SYS_MODULE:
                 Map<String, List<File>> filesForModule = new LinkedHashMap<>();
@@ -274,7 +400,7 @@ public class BuildAction extends Action
                     files.add(cl.absSrcFile.toFile());
                 }
                 for (Map.Entry<String, List<File>> e: filesForModule.entrySet()) {
-                    Status s = compileFiles(libLocn, false, e.getKey(), e.getValue());
+                    Status s = compileFiles(libLocn, libClsDir, false, e.getKey(), e.getValue());
                     if (!s.isPassed())
                         return s;
                 }
@@ -286,7 +412,8 @@ public class BuildAction extends Action
         }
     }
 
-    private Status compileFiles(LibLocn libLocn, boolean isMulti, String moduleName, List<File> files) throws TestRunException {
+    private Status compileFiles(LibLocn libLocn, Path libClsDir, boolean isMulti, String moduleName, List<File> files)
+            throws TestRunException {
         Map<String,String> compOpts = new LinkedHashMap<>();
         if (isMulti) {
             compOpts.put("modules", null);
@@ -305,7 +432,70 @@ public class BuildAction extends Action
             compArgs.add(file.getPath());
 
         CompileAction ca = new CompileAction();
-        return ca.compile(libLocn, compOpts, compArgs, SREASON_FILE_TOO_OLD, script);
+        return ca.compile(libLocn, libClsDir, compOpts, compArgs, SREASON_FILE_TOO_OLD, script);
+    }
+
+    /**
+     * Records the source files that have been compiled, along with all the class files
+     * compiled from each source file and the source files for any library classes
+     * referenced by those class files, so that subsequent builds can determine
+     * whether the class files are up to date.
+     */
+    private void recordCompiled(List<ClassLocn> classLocns) {
+        BuildState buildState = script.getBuildState();
+        Map<Path, Path> primaryClassFiles = new LinkedHashMap<>();
+        for (ClassLocn cl: classLocns) {
+            primaryClassFiles.put(cl.absSrcFile, cl.absClsFile);
+        }
+        Map<Path, Set<Path>> classFiles;
+        try {
+            classFiles = BuildState.getClassFiles(primaryClassFiles);
+        } catch (IOException e) {
+            // the class files cannot be read; the recorded information will not match
+            // the class files, which will be recompiled if necessary
+            return;
+        }
+        for (ClassLocn cl: classLocns) {
+            Set<Path> files = classFiles.get(cl.absSrcFile);
+            try {
+                buildState.recordCompiled(cl.absSrcFile, cl.lib.absClsDir, files,
+                        getDependencies(script.locations, files));
+            } catch (IOException e) {
+                // the class file was not written where expected; it will be recompiled
+            }
+        }
+    }
+
+    /**
+     * Returns the source files in the test directory or libraries for the classes
+     * referenced by some class files.
+     *
+     * @param locations the locations for the test
+     * @param clsFiles  the class files
+     * @return the source files
+     * @throws IOException if there is a problem reading any of the class files
+     */
+    static Set<Path> getDependencies(Locations locations, Collection<Path> clsFiles) throws IOException {
+        Set<String> names = new LinkedHashSet<>();
+        for (Path clsFile : clsFiles) {
+            names.addAll(BuildState.getReferencedClasses(clsFile));
+        }
+        Set<Path> deps = new LinkedHashSet<>();
+        for (String name: names) {
+            int dollar = name.indexOf('$');
+            String cn = (dollar == -1 ? name : name.substring(0, dollar)).replace('/', '.');
+            if (cn.startsWith("java.")) {
+                continue;
+            }
+            try {
+                for (ClassLocn dep: locations.locateClasses(cn)) {
+                    deps.add(dep.absSrcFile);
+                }
+            } catch (Locations.Fault ignore) {
+                // not a class in the test directory or libraries
+            }
+        }
+        return deps;
     }
 
     private List<File> getSrcFiles(List<ClassLocn> classLocns) {
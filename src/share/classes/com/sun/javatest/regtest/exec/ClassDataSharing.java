@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.exec;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+
+import com.sun.javatest.regtest.agent.CDSTrainer;
+import com.sun.javatest.regtest.config.JDK;
+import com.sun.javatest.regtest.config.RegressionParameters;
+
+import static com.sun.javatest.regtest.util.DigestUtils.newDigest;
+import static com.sun.javatest.regtest.util.DigestUtils.toHex;
+import static com.sun.javatest.regtest.util.DigestUtils.update;
+
+/**
+ * Dynamic class data sharing (CDS) archives for the VMs that are started
+ * to execute the actions of tests.
+ *
+ * <p>An archive is created for each distinct combination of JDK, VM options
+ * and class path, by a short training run of a VM with the same configuration
+ * and the {@code -XX:ArchiveClassesAtExit} option. The training run is performed
+ * in the background the first time that the configuration is used; until it has
+ * completed, VMs are started as usual. After it has completed, the option
+ * {@code -XX:SharedArchiveFile} is added to the command to start each VM with
+ * that configuration, so that the archived classes do not need to be loaded
+ * and verified again.
+ *
+ * <p>Archives are saved in the work directory, with a name derived from a key
+ * that identifies the configuration, including the size and modification time
+ * of the files on the class path, so that they can be reused by subsequent runs
+ * of jtreg.
+ *
+ * <p>An archive is only used when the configuration supports it: the JDK must be
+ * JDK 13 or newer, the VM options must not otherwise configure class data sharing
+ * or the module system, and every entry on the class path must be a jar file,
+ * since classes in directories cannot be archived. If a training run fails,
+ * the configuration is not tried again.
+ */
+public class ClassDataSharing {
+    static Map<RegressionParameters, ClassDataSharing> instances = new WeakHashMap<>();
+
+    /**
+     * Returns the instance for a test run.
+     *
+     * @param params the parameters for the test run
+     * @return the instance
+     */
+    public static synchronized ClassDataSharing instance(RegressionParameters params) {
+        return instances.computeIfAbsent(params, ClassDataSharing::new);
+    }
+
+    /**
+     * Waits for any training runs for a test run that are still in progress,
+     * so that the archives they create are available to subsequent runs of jtreg.
+     *
+     * @param params the parameters for the test run
+     */
+    public static void close(RegressionParameters params) {
+        ClassDataSharing cds;
+        synchronized (ClassDataSharing.class) {
+            cds = instances.get(params);
+        }
+        if (cds != null) {
+            cds.close();
+        }
+    }
+
+    private ClassDataSharing(RegressionParameters params) {
+        this.params = params;
+        archiveDir = params.getWorkDirectory().getFile(ARCHIVES).toPath();
+        logger = Agent.Logger.instance(params);
+    }
+
+    /**
+     * Returns the options to be added to a command to run {@code java}
+     * with the given VM options and environment variables,
+     * or an empty list if there is no suitable archive available.
+     *
+     * @param jdk     the JDK
+     * @param vmOpts  the VM options, including the class path
+     * @param envVars the environment variables
+     * @return the options
+     */
+    public List<String> getJavaOptions(JDK jdk, List<String> vmOpts, Map<String, String> envVars) {
+        return getOptions(Launcher.JAVA, jdk, vmOpts, envVars);
+    }
+
+    /**
+     * Returns the VM options to be added to a command to run {@code javac}
+     * with the given VM options and environment variables,
+     * or an empty list if there is no suitable archive available.
+     * The options do not include the {@code -J} prefix.
+     *
+     * @param jdk     the JDK
+     * @param vmOpts  the VM options, without the {@code -J} prefix
+     * @param envVars the environment variables
+     * @return the options
+     */
+    public List<String> getJavacOptions(JDK jdk, List<String> vmOpts, Map<String, String> envVars) {
+        return getOptions(Launcher.JAVAC, jdk, vmOpts, envVars);
+    }
+
+    private enum Launcher { JAVA, JAVAC }
+
+    private List<String> getOptions(Launcher launcher, JDK jdk, List<String> vmOpts, Map<String, String> envVars) {
+        if (!isSupported(jdk) || !isSupported(vmOpts)) {
+            return Collections.emptyList();
+        }
+
+        List<File> classPath = getClassPath(vmOpts, envVars);
+        if (classPath == null) {
+            return Collections.emptyList();
+        }
+
+        String key = getKey(launcher, jdk, vmOpts, classPath);
+        CompletableFuture<Path> archive;
+        synchronized (this) {
+            archive = archives.get(key);
+            if (archive == null) {
+                archive = new CompletableFuture<>();
+                archives.put(key, archive);
+                Path file = archiveDir.resolve(key + ".jsa");
+                if (Files.isRegularFile(file)) {
+                    logger.log(null, "CDS: using saved archive " + file);
+                    archive.complete(file);
+                } else {
+                    startTraining(launcher, jdk, vmOpts, envVars, file, archive);
+                }
+            }
+        }
+
+        Path file = archive.getNow(null);
+        return (file == null)
+                ? Collections.emptyList()
+                : Collections.singletonList("-XX:SharedArchiveFile=" + file);
+    }
+
+    /**
+     * Waits for any training runs that are still in progress.
+     */
+    private void close() {
+        List<CompletableFuture<Path>> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(archives.values());
+        }
+        // the futures are always completed normally, when the training run has finished
+        pending.forEach(CompletableFuture::join);
+    }
+
+    /**
+     * Returns whether a JDK supports dynamic archives.
+     * The result is determined once for each JDK.
+     */
+    private synchronized boolean isSupported(JDK jdk) {
+        return supportedJDKs.computeIfAbsent(jdk, j -> {
+            int major = j.getVersion(params, s -> logger.log(null, "CDS: " + s)).major;
+            if (major < MIN_VERSION) {
+                logger.log(null, "CDS: archives not supported for JDK " + major + ": " + j);
+                return false;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Returns whether a set of VM options is compatible with the use of a dynamic archive.
+     */
+    private boolean isSupported(List<String> vmOpts) {
+        for (String opt : vmOpts) {
+            if (opt.equals("-p")) {
+                return false;
+            }
+            for (String u : UNSUPPORTED_OPTIONS) {
+                if (opt.startsWith(u)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the entries on the class path given in a set of VM options or,
+     * if none is given, in the {@code CLASSPATH} environment variable,
+     * or {@code null} if any of the entries is not a jar file.
+     */
+    private List<File> getClassPath(List<String> vmOpts, Map<String, String> envVars) {
+        String cp = envVars.get("CLASSPATH");
+        for (int i = 0; i < vmOpts.size() - 1; i++) {
+            String opt = vmOpts.get(i);
+            if (opt.equals("-classpath") || opt.equals("-cp") || opt.equals("--class-path")) {
+                cp = vmOpts.get(++i);
+            }
+        }
+
+        List<File> files = new ArrayList<>();
+        if (cp != null) {
+            for (String s : cp.split(File.pathSeparator)) {
+                if (s.isEmpty()) {
+                    continue;
+                }
+                File f = new File(s);
+                if (!f.isFile()) {
+                    return null;
+                }
+                files.add(f);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the key for a configuration, such that the key changes if the
+     * configuration or any of the files on which the archive depends change.
+     */
+    private String getKey(Launcher launcher, JDK jdk, List<String> vmOpts, List<File> classPath) {
+        MessageDigest md = newDigest();
+        update(md, launcher.name());
+        update(md, jdk.getAbsoluteHomeDirectory().toString());
+        update(md, getStamp(jdk.getAbsoluteHomeDirectory().resolve("lib").resolve("modules").toFile()));
+        for (String opt : vmOpts) {
+            update(md, opt);
+        }
+        for (File f : classPath) {
+            update(md, f.getAbsolutePath());
+            update(md, getStamp(f));
+        }
+        return toHex(md.digest());
+    }
+
+    private static String getStamp(File f) {
+        return f.exists() ? (f.length() + ":" + f.lastModified()) : "missing";
+    }
+
+    private void startTraining(Launcher launcher, JDK jdk, List<String> vmOpts, Map<String, String> envVars,
+                               Path file, CompletableFuture<Path> archive) {
+        logger.log(null,
+                "CDS: create archive for:\n"
+                        + "         JDK: " + jdk + "\n"
+                        + "  VM options: " + vmOpts + "\n"
+                        + "     archive: " + file + "\n"
+        );
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                boolean ok = false;
+                try {
+                    ok = train(launcher, jdk, vmOpts, envVars, file);
+                } finally {
+                    archive.complete(ok ? file : null);
+                }
+            }
+        };
+        t.setName("CDS Archive Training");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Runs a VM with a given configuration to create an archive.
+     * The archive is written to a temporary file, which is renamed
+     * if the VM completes successfully without reporting any problems.
+     *
+     * @return {@code true} if the archive was created, and {@code false} otherwise
+     */
+    private boolean train(Launcher launcher, JDK jdk, List<String> vmOpts, Map<String, String> envVars,
+                          Path file) {
+        Path tmpDir = null;
+        Path tmpFile = null;
+        try {
+            Files.createDirectories(archiveDir);
+            tmpDir = Files.createTempDirectory(archiveDir, "training");
+            tmpFile = tmpDir.resolve(file.getFileName());
+            Path src = tmpDir.resolve("Training.java");
+            Files.write(src, Collections.singletonList("class Training { }"));
+
+            List<String> cmd = new ArrayList<>();
+            String dumpOpt = "-XX:ArchiveClassesAtExit=" + tmpFile;
+            switch (launcher) {
+                case JAVA:
+                    cmd.add(jdk.getJavaProg().toString());
+                    cmd.addAll(vmOpts);
+                    cmd.add(dumpOpt);
+                    cmd.add(CDSTrainer.class.getName());
+                    cmd.add(src.toString());
+                    cmd.add(tmpDir.toString());
+                    break;
+                case JAVAC:
+                    cmd.add(jdk.getJavacProg().toString());
+                    for (String opt : vmOpts) {
+                        cmd.add("-J" + opt);
+                    }
+                    cmd.add("-J" + dumpOpt);
+                    cmd.add("-d");
+                    cmd.add(tmpDir.toString());
+                    cmd.add(src.toString());
+                    break;
+            }
+
+            ProcessBuilder pb = new ProcessBuilder(cmd)
+                    .directory(tmpDir.toFile())
+                    .redirectErrorStream(true);
+            pb.environment().clear();
+            pb.environment().putAll(envVars);
+            Process p = pb.start();
+            List<String> output = new ArrayList<>();
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    output.add(line);
+                }
+            }
+            int rc = p.waitFor();
+            if (rc != 0 || !output.isEmpty() || !Files.isRegularFile(tmpFile)) {
+                // any output indicates a problem, such as an option that prevents
+                // the archive from being used, which would also be reported by
+                // the VMs that use the archive
+                logger.log(null, "CDS: cannot create archive: exit code " + rc + "\n"
+                        + "  command: " + cmd
+                        + (output.isEmpty() ? "" : "\n" + String.join("\n", output)));
+                return false;
+            }
+
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.log(null, "CDS: created archive " + file);
+            return true;
+        } catch (IOException e) {
+            logger.log(null, "CDS: cannot create archive " + file + ": " + e);
+            return false;
+        } catch (InterruptedException e) {
+            return false;
+        } finally {
+            if (tmpDir != null) {
+                deleteAll(tmpDir.toFile());
+            }
+        }
+    }
+
+    private static void deleteAll(File dir) {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                if (c.isDirectory()) {
+                    deleteAll(c);
+                } else {
+                    c.delete();
+                }
+            }
+        }
+        dir.delete();
+    }
+
+    /** The name of the directory in the work directory in which to save archives. */
+    private static final String ARCHIVES = "cdsArchives";
+
+    /** The first version of the JDK to support {@code -XX:ArchiveClassesAtExit}. */
+    private static final int MIN_VERSION = 13;
+
+    /**
+     * Prefixes of VM options that already configure class data sharing, or that
+     * configure the module system in ways that cannot be used with an archive.
+     */
+    private static final List<String> UNSUPPORTED_OPTIONS = List.of(
+            "-Xshare:",
+            "-XX:SharedArchiveFile",
+            "-XX:ArchiveClassesAtExit",
+            "-XX:SharedClassListFile",
+            "-XX:DumpLoadedClassList",
+            "-XX:-UseSharedSpaces",
+            "-XX:+AutoCreateSharedArchive",
+            "-XX:+RecordDynamicDumpInfo",
+            "-Xbootclasspath",
+            "--patch-module",
+            "--upgrade-module-path",
+            "--limit-modules",
+            "--module-path");
+
+    private final RegressionParameters params;
+    private final Path archiveDir;
+    private final Agent.Logger logger;
+    private final Map<String, CompletableFuture<Path>> archives = new HashMap<>();
+    private final Map<JDK, Boolean> supportedJDKs = new HashMap<>();
+}
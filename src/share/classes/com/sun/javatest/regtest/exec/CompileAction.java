@@ -109,7 +109,28 @@ public class CompileAction extends Action {
      */
     Status compile(LibLocn libLocn, Map<String,String> opts, List<String> args, String reason,
             RegressionScript script) throws TestRunException {
+        return compile(libLocn, null, opts, args, reason, script);
+    } // compile()
+
+    /**
+     * A method used by sibling classes to run both the init() and run()
+     * method of CompileAction, writing the classes for a library to a
+     * directory other than the library's class directory.
+     *
+     * @param libLocn details for the library whose classes are to be compiled
+     * @param libClsDir the directory in which to place the compiled classes,
+     *              or {@code null} to use the library's class directory
+     * @param opts The options for the action.
+     * @param args The arguments for the actions.
+     * @param reason Indication of why this action was invoked.
+     * @param script The script.
+     * @return     The result of the action.
+     * @throws TestRunException if an error occurs while executing this action
+     */
+    Status compile(LibLocn libLocn, Path libClsDir, Map<String,String> opts, List<String> args, String reason,
+            RegressionScript script) throws TestRunException {
         this.libLocn = libLocn;
+        this.libClsDir = libClsDir;
         init(opts, args, reason, script);
         return run();
     } // compile()
@@ -197,7 +218,8 @@ public class CompileAction extends Action {
         if (libLocn == null) {
             destDir = multiModule ? locations.absTestModulesDir().toFile() : locations.absTestClsDir(module).toFile();
         } else {
-            destDir = ((module == null) ? libLocn.absClsDir : libLocn.absClsDir.resolve(module)).toFile();
+            Path dir = (libClsDir != null) ? libClsDir : libLocn.absClsDir;
+            destDir = ((module == null) ? dir : dir.resolve(module)).toFile();
         }
         if (!script.isCheck())
             mkdirs(destDir);
@@ -612,6 +634,8 @@ public class CompileAction extends Action {
         command.add(javacCmd.toString());
         for (String opt: javacVMOpts.toList())
             command.add("-J" + opt);
+        for (String opt: script.getJavacCDSOptions(javacVMOpts.toList(), env))
+            command.add("-J" + opt);
         for (Map.Entry<String,String> e: javacProps.entrySet())
             command.add("-J-D" + e.getKey() + "=" + e.getValue());
         command.addAll(javacArgs);
@@ -887,6 +911,7 @@ public class CompileAction extends Action {
     //----------member variables------------------------------------------------
 
     private LibLocn libLocn;
+    private Path libClsDir;
     private File destDir;
 
     private boolean reverseStatus = false;
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.exec;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.sun.javatest.TestDescription;
+import com.sun.javatest.regtest.agent.SearchPath;
+import com.sun.javatest.regtest.config.BuildState;
+import com.sun.javatest.regtest.config.JDK;
+import com.sun.javatest.regtest.config.Locations;
+import com.sun.javatest.regtest.config.Locations.LibLocn;
+import com.sun.javatest.regtest.config.Modules;
+import com.sun.javatest.regtest.config.RegressionParameters;
+import com.sun.javatest.util.I18NResourceBundle;
+
+/**
+ * Compiles the library classes used by a set of tests before the tests are run,
+ * with a single invocation of {@code javac} for each library.
+ *
+ * <p>The classes that are compiled are those that are named in the {@code @build}
+ * actions of the tests, and any classes that they reference. The classes are
+ * compiled with the options given on the command line, and with any options
+ * needed to access the modules and packages given in the {@code @modules} tags
+ * of the tests that use the library.
+ *
+ * <p>Only libraries containing packages in the unnamed module are compiled.
+ * If a library cannot be compiled, a warning is reported and the classes
+ * will instead be compiled as needed when the tests are run.
+ *
+ * <p>Each library is compiled while holding the same lock that is used when
+ * tests compile library classes; since all libraries are prebuilt before any
+ * tests are run, no test can be reading the classes while they are written.
+ */
+public class LibraryPrebuilder {
+    private static class LibInfo {
+        final LibLocn lib;
+        final Locations locations;
+        final Set<Path> srcFiles = new TreeSet<>();
+        final Set<Path> srcPath = new LinkedHashSet<>();
+        final Set<Path> classPath = new LinkedHashSet<>();
+        final Set<String> addModules = new LinkedHashSet<>();
+        final Set<String> addExports = new LinkedHashSet<>();
+
+        LibInfo(LibLocn lib, Locations locations) {
+            this.lib = lib;
+            this.locations = locations;
+        }
+    }
+
+    /**
+     * Creates an object to compile the libraries used by a set of tests.
+     *
+     * @param params the parameters for the test run
+     * @param out    a stream to which to report progress and any problems
+     * @param tmpDir a directory in which to write temporary files
+     */
+    public LibraryPrebuilder(RegressionParameters params, PrintWriter out, Path tmpDir) {
+        this.params = params;
+        this.out = out;
+        this.tmpDir = tmpDir;
+    }
+
+    /**
+     * Records the library classes used by a test.
+     *
+     * @param td the test
+     */
+    public void add(TestDescription td) {
+        Locations locations;
+        Modules modules;
+        try {
+            locations = new Locations(params, td, out::println);
+            modules = new Modules(params, td);
+        } catch (Locations.Fault | Modules.Fault e) {
+            // the error will be reported when the test is run
+            return;
+        }
+
+        List<LibLocn> packageLibs = new ArrayList<>();
+        for (LibLocn l : locations.getLibs()) {
+            if (l.kind == LibLocn.Kind.PACKAGE) {
+                packageLibs.add(l);
+            }
+        }
+        if (packageLibs.isEmpty()) {
+            return;
+        }
+
+        Set<File> srcFiles = RegressionScript.getSourceFiles(params, td);
+        for (LibLocn l : packageLibs) {
+            LibInfo info = libs.computeIfAbsent(l.absClsDir, d -> new LibInfo(l, locations));
+            for (File f : srcFiles) {
+                Path p = f.toPath();
+                if (p.startsWith(l.absSrcDir) && f.getName().endsWith(".java")) {
+                    info.srcFiles.add(p);
+                }
+            }
+            info.srcPath.addAll(locations.absLibSrcList(LibLocn.Kind.PACKAGE));
+            info.classPath.addAll(locations.absLibClsList(LibLocn.Kind.PACKAGE));
+            info.classPath.addAll(locations.absLibSrcJarList());
+            for (Modules.Entry e : modules) {
+                info.addModules.add(e.moduleName);
+                if (e.packageName != null) {
+                    info.addExports.add(e.moduleName + "/" + e.packageName + "=ALL-UNNAMED");
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles the library classes used by the tests that have been added.
+     *
+     * @return the number of libraries that could not be compiled
+     */
+    public int build() {
+        int errors = 0;
+        for (LibInfo info : libs.values()) {
+            if (info.srcFiles.isEmpty()) {
+                continue;
+            }
+            synchronized (BuildAction.getLibraryLock(info.lib)) {
+                if (!compile(info)) {
+                    errors++;
+                }
+            }
+        }
+        return errors;
+    }
+
+    private boolean compile(LibInfo info) {
+        JDK compileJDK = params.getCompileJDK();
+        List<String> args = new ArrayList<>();
+        args.addAll(params.getTestCompilerOptions());
+        if (compileJDK.hasOldSymbolFile()) {
+            args.add("-XDignore.symbol.file=true");
+        }
+        if (!info.addModules.isEmpty() && params.getTestJDK().hasModules()) {
+            args.add("--add-modules");
+            args.add(String.join(",", info.addModules));
+            for (String e : info.addExports) {
+                args.add("--add-exports");
+                args.add(e);
+            }
+        }
+        args.add("-d");
+        args.add(info.lib.absClsDir.toString());
+        args.add("-sourcepath");
+        args.add(new SearchPath().append(info.srcPath).toString());
+        SearchPath cp = new SearchPath().append(info.classPath);
+        if (params.isJUnitAvailable()) {
+            cp.append(params.getJUnitPath());
+        }
+        if (params.isTestNGAvailable()) {
+            cp.append(params.getTestNGPath());
+        }
+        cp.append(compileJDK.getJDKClassPath());
+        args.add("-classpath");
+        args.add(cp.toString());
+        for (Path f : info.srcFiles) {
+            args.add(f.toString());
+        }
+
+        Path argFile = null;
+        try {
+            Files.createDirectories(info.lib.absClsDir);
+            Files.createDirectories(tmpDir);
+            argFile = Files.createTempFile(tmpDir, "prebuild", ".args");
+            List<String> lines = new ArrayList<>();
+            for (String a : args) {
+                lines.add("\"" + a.replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+            }
+            Files.write(argFile, lines);
+
+            Process p = new ProcessBuilder(compileJDK.getJavacProg().toString(), "@" + argFile)
+                    .redirectErrorStream(true)
+                    .start();
+            List<String> output = new ArrayList<>();
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    output.add(line);
+                }
+            }
+            int rc = p.waitFor();
+            if (rc != 0) {
+                out.println(i18n.getString("prebuild.cantCompile", info.lib.name));
+                output.forEach(out::println);
+                return false;
+            }
+        } catch (IOException | InterruptedException e) {
+            out.println(i18n.getString("prebuild.cantRun", info.lib.name, e));
+            return false;
+        } finally {
+            if (argFile != null) {
+                try {
+                    Files.deleteIfExists(argFile);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        recordCompiled(info);
+        out.println(i18n.getString("prebuild.done", info.lib.name, info.srcFiles.size()));
+        return true;
+    }
+
+    /**
+     * Records the files that were compiled, so that the build action will
+     * recognize that the corresponding class files are up to date.
+     */
+    private void recordCompiled(LibInfo info) {
+        BuildState buildState = params.getBuildState();
+        Map<Path, Path> primaryClassFiles = new LinkedHashMap<>();
+        for (Path src : info.srcFiles) {
+            String rel = info.lib.absSrcDir.relativize(src).toString();
+            Path cls = info.lib.absClsDir.resolve(rel.substring(0, rel.length() - ".java".length()) + ".class");
+            primaryClassFiles.put(src, cls);
+        }
+        Map<Path, Set<Path>> classFiles;
+        try {
+            classFiles = BuildState.getClassFiles(primaryClassFiles);
+        } catch (IOException e) {
+            // the class files cannot be read; they will be compiled as needed
+            return;
+        }
+        for (Path src : info.srcFiles) {
+            Set<Path> files = classFiles.get(src);
+            try {
+                buildState.recordCompiled(src, info.lib.absClsDir, files,
+                        BuildAction.getDependencies(info.locations, files));
+            } catch (IOException e) {
+                // the class file was not written where expected; it will be compiled as needed
+            }
+        }
+    }
+
+    private final RegressionParameters params;
+    private final PrintWriter out;
+    private final Path tmpDir;
+    private final Map<Path, LibInfo> libs = new LinkedHashMap<>();
+
+    private static final I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(LibraryPrebuilder.class);
+}
@@ -339,28 +339,35 @@ public class MainAction extends Action
             endAction(status);
         } else {
             Lock lock = script.getLockIfRequired();
-            if (lock != null) lock.lock();
-
-            // Start action after the lock is taken to ensure correct "elapsed time".
-            startAction(true);
-
+            ResourceScheduler.Permits permits = script.acquirePermits();
             try {
-                switch (!othervmOverrideReasons.isEmpty() ? ExecMode.OTHERVM : script.getExecMode()) {
-                    case AGENTVM:
-                        showMode(ExecMode.AGENTVM);
-                        status = runAgentJVM();
-                        break;
-                    case OTHERVM:
-                        showMode(ExecMode.OTHERVM, othervmOverrideReasons);
-                        status = runOtherJVM();
-                        break;
-                    default:
-                        throw new AssertionError();
+                if (lock != null) lock.lock();
+                try {
+                    // Start action after the lock is taken to ensure correct "elapsed time".
+                    startAction(true);
+
+                    try {
+                        switch (!othervmOverrideReasons.isEmpty() ? ExecMode.OTHERVM : script.getExecMode()) {
+                            case AGENTVM:
+                                showMode(ExecMode.AGENTVM);
+                                status = runAgentJVM();
+                                break;
+                            case OTHERVM:
+                                showMode(ExecMode.OTHERVM, othervmOverrideReasons);
+                                status = runOtherJVM();
+                                break;
+                            default:
+                                throw new AssertionError();
+                        }
+                    } finally {
+                        // End action before releasing the lock.
+                        endAction(status);
+                    }
+                } finally {
+                    if (lock != null) lock.unlock();
                 }
             } finally {
-                // End action before releasing the lock.
-                endAction(status);
-                if (lock != null) lock.unlock();
+                permits.release();
             }
         }
 
@@ -688,6 +695,19 @@ public class MainAction extends Action
                     .setModulePath(runModulePath)
                     .write(configWriter);
 
+            // If the agent shares class loaders for library classes between tests,
+            // only the classes in the test's own directories are loaded by a new
+            // class loader for this test, provided that all the libraries used
+            // by the test may be shared.
+            SearchPath testClasspath = runClasspath;
+            SearchPath libraryClasspath = new SearchPath();
+            if (agent.libraryClassLoaders && (runModulePath == null || runModulePath.isEmpty())
+                    && script.usesOnlySharedLibraries()) {
+                List<Path> testDirs = List.of(script.locations.absTestClsDir(), script.locations.absTestSrcDir());
+                testClasspath = new SearchPath(runClasspath).retainAll(testDirs);
+                libraryClasspath = new SearchPath(runClasspath).removeAll(testDirs);
+            }
+
             // This calls through to MainActionHelper.runClass
             status = agent.doMainAction(
                     script.getTestResult().getTestName(),
@@ -695,7 +715,9 @@ public class MainAction extends Action
                     runAddExports,
                     runAddOpens,
                     runAddMods,
-                    runClasspath,
+                    testClasspath,
+                    libraryClasspath,
+                    agent.libraryClassLoaders ? script.getLibraryKey(libraryClasspath) : null,
                     runModulePath != null ? runModulePath : new SearchPath(),
                     runMainClass,
                     runMainArgs,
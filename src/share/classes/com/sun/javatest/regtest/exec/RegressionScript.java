@@ -32,9 +32,7 @@ import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
-import java.net.InetAddress;
 import java.net.MalformedURLException;
-import java.net.UnknownHostException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
@@ -62,6 +60,7 @@ import com.sun.javatest.TestResult;
 import com.sun.javatest.TestSuite;
 import com.sun.javatest.regtest.agent.JDK_Version;
 import com.sun.javatest.regtest.agent.SearchPath;
+import com.sun.javatest.regtest.config.BuildState;
 import com.sun.javatest.regtest.config.ExecMode;
 import com.sun.javatest.regtest.config.Expr;
 import com.sun.javatest.regtest.config.IgnoreKind;
@@ -70,10 +69,10 @@ import com.sun.javatest.regtest.config.JDKOpts;
 import com.sun.javatest.regtest.config.Locations;
 import com.sun.javatest.regtest.config.Locations.LibLocn;
 import com.sun.javatest.regtest.config.Modules;
-import com.sun.javatest.regtest.config.OS;
 import com.sun.javatest.regtest.config.ParseException;
 import com.sun.javatest.regtest.config.RegressionEnvironment;
 import com.sun.javatest.regtest.config.RegressionParameters;
+import com.sun.javatest.regtest.config.RegressionTestFinder;
 import com.sun.javatest.regtest.config.RegressionTestSuite;
 import com.sun.javatest.regtest.report.TestNGReporter;
 import com.sun.javatest.regtest.tool.Version;
@@ -129,27 +128,7 @@ public class RegressionScript extends Script {
 
         testResult = getTestResult();
 
-        String hostname;
-        try {
-            hostname = InetAddress.getLocalHost().getCanonicalHostName();
-        } catch (UnknownHostException e) {
-            hostname = "127.0.0.1";
-        }
-        testResult.putProperty("hostname", hostname);
-        String[] props = { "user.name" };
-        for (String p: props) {
-            testResult.putProperty(p, System.getProperty(p));
-        }
-        testResult.putProperty("jtregVersion", getVersion());
-        testResult.putProperty("testJDK", getTestJDK().getAbsolutePath());
-        OS testOs = params.getTestOS();
-        testResult.putProperty("testJDK_OS", testOs.toString());
-        testResult.putProperty("testJDK_os.name", testOs.name);
-        testResult.putProperty("testJDK_os.version", testOs.version);
-        testResult.putProperty("testJDK_os.arch", testOs.arch);
-        if (!getCompileJDK().equals(getTestJDK())) {
-            testResult.putProperty("compileJDK", getCompileJDK().getAbsolutePath());
-        }
+        params.getResultProperties().forEach(testResult::putProperty);
 
         msgPW = testResult.getTestCommentWriter();
 
@@ -225,6 +204,22 @@ public class RegressionScript extends Script {
                 useModulePath = true;
             }
 
+            ResultCache resultCache = ResultCache.get(params);
+            if (resultCache != null && td.getParameter("error") == null) {
+                resultFingerprint = resultCache.getFingerprint(td, locations, actionList);
+                if (resultFingerprint != null && resultCache.isPassed(resultFingerprint)) {
+                    msgPW.println("Result cache: test passed previously with the same inputs: "
+                            + resultFingerprint);
+                    testResult.putProperty(ResultCache.CACHED_RESULT, resultFingerprint);
+                    long elapsed = resultCache.getElapsedTime(resultFingerprint);
+                    if (elapsed >= 0) {
+                        testResult.putProperty(ResultCache.CACHED_ELAPSED, String.valueOf(elapsed));
+                    }
+                    status = passed(CACHED_PASS);
+                    return status;
+                }
+            }
+
             scratchDirectory = ScratchDirectory.get(params, defaultExecMode, td);
             scratchDirectory.init(msgPW);
 
@@ -276,6 +271,11 @@ public class RegressionScript extends Script {
                     if (status.getType() != Status.PASSED)
                         break;
                 }
+
+                if (resultFingerprint != null && status.getType() == Status.PASSED) {
+                    ResultCache.get(params).recordPassed(resultFingerprint, td.getRootRelativeURL(),
+                            System.currentTimeMillis() - started);
+                }
             }
         } catch (InterruptedException e) {
             status = error("Interrupted! " + e.getLocalizedMessage());
@@ -758,9 +758,16 @@ public class RegressionScript extends Script {
         return locations.absBaseClsDir();
     } // absTestClsTopDir()
 
+    Path absLibClsTopDir() {
+        return locations.absLibBaseClsDir();
+    } // absLibClsTopDir()
+
     private boolean useBootClassPath(Path classdir) throws TestClassException {
         try {
-            String rel = locations.absBaseClsDir().toUri().relativize(classdir.toFile().toURI()).getPath();
+            Path base = classdir.startsWith(locations.absBaseClsDir())
+                    ? locations.absBaseClsDir()
+                    : locations.absLibBaseClsDir();
+            String rel = base.toUri().relativize(classdir.toFile().toURI()).getPath();
             return testSuite.useBootClassPath(rel);
         } catch (TestSuite.Fault f) {
             throw new TestClassException(f.toString());
@@ -1108,6 +1115,40 @@ public class RegressionScript extends Script {
         return Lock.get(params);
     }
 
+    /**
+     * Acquires permits from the resource scheduler, according to the weight
+     * of the test, waiting until they are available.
+     *
+     * @return the permits
+     */
+    ResourceScheduler.Permits acquirePermits() {
+        String w = td.getParameter(RegressionTestFinder.WEIGHT);
+        int weight = 1;
+        if (w != null) {
+            try {
+                weight = Integer.parseInt(w);
+            } catch (NumberFormatException e) {
+                // should not happen: the value is checked by the test finder
+            }
+        }
+        return ResourceScheduler.get(params).acquire(weight);
+    }
+
+    /**
+     * Returns the VM options to use a class data sharing archive when running
+     * {@code javac} in a separate VM with the given VM options and environment
+     * variables, or an empty list if there is no suitable archive available.
+     *
+     * @param vmOpts  the VM options
+     * @param envVars the environment variables
+     * @return the options
+     */
+    List<String> getJavacCDSOptions(List<String> vmOpts, Map<String, String> envVars) {
+        return params.isUseCDSArchives()
+                ? ClassDataSharing.instance(params).getJavacOptions(getCompileJDK(), vmOpts, envVars)
+                : Collections.emptyList();
+    }
+
     int getNextSerial() {
         return nextSerial++;
     }
@@ -1156,6 +1197,10 @@ public class RegressionScript extends Script {
         return params.getCompileJDK().getJavacProg();
     }
 
+    BuildState getBuildState() {
+        return params.getBuildState();
+    }
+
     //--------------------------------------------------------------------------
 
     // Get the standard properties to be set for tests
@@ -1220,12 +1265,7 @@ public class RegressionScript extends Script {
      * Get an agent for a VM with the given VM options.
      */
     Agent getAgent(JDK jdk, SearchPath classpath, List<String> testVMOpts) throws Agent.Fault {
-        JDKOpts vmOpts = new JDKOpts();
-        vmOpts.addAll("-classpath", classpath.toString());
-        vmOpts.addAll(testVMOpts);
-        if (params.getTestJDK().hasModules()) {
-            vmOpts.addAllPatchModules(new SearchPath(params.getWorkDirectory().getFile("patches").toPath()));
-        }
+        List<String> vmOpts = getAgentVMOptions(params, classpath, testVMOpts);
 
         /*
          * A script only uses one agent at a time, and only one, maybe two,
@@ -1233,25 +1273,90 @@ public class RegressionScript extends Script {
          * CompileAction and MainAction.) Therefore, use a simple list to
          * record the agents that the script has already obtained for use.
          */
+        File scratchDir = absTestScratchDir().toFile();
         for (Agent agent: agents) {
-            if (agent.matches(absTestScratchDir().toFile(), jdk, vmOpts.toList())) {
+            if (agent.matches(scratchDir, jdk, vmOpts)) {
+                agent.setCurrentDirectory(scratchDir);
                 return agent;
             }
         }
 
+        Agent.Pool p = Agent.Pool.instance(params);
+        Agent agent = p.getAgent(scratchDir, jdk, vmOpts, getAgentEnvVars(params, jdk));
+        agent.setCurrentDirectory(scratchDir);
+        agents.add(agent);
+        return agent;
+    }
+
+    /**
+     * Returns whether all the libraries used by the test are libraries whose
+     * classes may be loaded with a class loader that is shared with other tests.
+     *
+     * @see Agent.Pool#setSharedLibraries
+     */
+    boolean usesOnlySharedLibraries() {
+        Set<String> shared = Agent.Pool.instance(params).getSharedLibraries();
+        for (LibLocn lib : locations.getLibs()) {
+            if (!shared.contains(lib.name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a string that identifies the entries on a library class path, and the
+     * state of the classes in those entries, for use as the key for a class loader
+     * that may be shared by tests that use the same libraries in an agent VM.
+     *
+     * @param classPath the library class path
+     * @return the key
+     * @see Agent.Pool#getLibraryKey
+     */
+    String getLibraryKey(SearchPath classPath) {
+        return Agent.Pool.instance(params).getLibraryKey(classPath);
+    }
+
+    /**
+     * Records that classes in a library directory have been compiled again,
+     * so that any class loaders for the previous versions of the classes are
+     * no longer used.
+     *
+     * @param dir the library directory
+     * @see Agent.Pool#libraryRecompiled
+     */
+    void libraryRecompiled(Path dir) {
+        Agent.Pool.libraryRecompiled(params, dir);
+    }
+
+    /**
+     * Returns the VM options used to start an agent with a given classpath
+     * and test VM options.
+     * The result is used as part of the key when looking up agents in the pool.
+     */
+    static List<String> getAgentVMOptions(RegressionParameters params, SearchPath classpath, List<String> testVMOpts) {
+        JDKOpts vmOpts = new JDKOpts();
+        vmOpts.addAll("-classpath", classpath.toString());
+        vmOpts.addAll(testVMOpts);
+        if (params.getTestJDK().hasModules()) {
+            vmOpts.addAllPatchModules(new SearchPath(params.getWorkDirectory().getFile("patches").toPath()));
+        }
+        return vmOpts.toList();
+    }
+
+    /**
+     * Returns the environment variables used to start an agent for a given JDK.
+     */
+    static Map<String, String> getAgentEnvVars(RegressionParameters params, JDK jdk) {
         Map<String, String> envVars = new HashMap<>();
-        envVars.putAll(getEnvVars());
+        envVars.putAll(params.getEnvVars());
         // some tests are inappropriately relying on the CLASSPATH environment
         // variable being set, so ensure it is set. See equivalent code in MainAction
         // and Main.execChild. Note we cannot set exactly the same classpath as
         // for othervm, because we should not include test-specific info
-        SearchPath cp = new SearchPath().append(jdk.getJDKClassPath()).append(getJavaTestClassPath());
+        SearchPath cp = new SearchPath().append(jdk.getJDKClassPath()).append(params.getJavaTestClassPath());
         envVars.put("CLASSPATH", cp.toString());
-
-        Agent.Pool p = Agent.Pool.instance(params);
-        Agent agent = p.getAgent(absTestScratchDir().toFile(), jdk, vmOpts.toList(), envVars);
-        agents.add(agent);
-        return agent;
+        return envVars;
     }
 
     /**
@@ -1313,24 +1418,6 @@ public class RegressionScript extends Script {
         } // TestClassException()
     }
 
-    private static String getVersion() {
-        if (version == null) {
-            StringBuilder sb = new StringBuilder();
-            Version v = Version.getCurrent();
-            sb.append(v.product == null ? "jtreg" : v.product);
-            if (v.version != null)
-                sb.append(' ').append(v.version);
-            if (v.milestone != null)
-                sb.append(' ').append(v.milestone);
-            if (v.build != null)
-                sb.append(' ').append(v.build);
-            version = sb.toString();
-        }
-        return version;
-    }
-    // where
-    private static String version;
-
     //----------misc statics---------------------------------------------------
 
     private static final String LINESEP  = System.getProperty("line.separator");
@@ -1339,7 +1426,8 @@ public class RegressionScript extends Script {
         CANT_INSTANTIATE      = "Unable to instantiate: ",
         NOT_EXT_ACTION        = " does not extend Action",
         ILLEGAL_ACCESS_INIT   = "Illegal access to init method: ",
-        BAD_ACTION            = "Bad action for script: ";
+        BAD_ACTION            = "Bad action for script: ",
+        CACHED_PASS           = "Result from cache; inputs unchanged since test last passed";
 
     //----------member variables-----------------------------------------------
 
@@ -1360,6 +1448,7 @@ public class RegressionScript extends Script {
     private boolean needTestNG;
     private Modules modules;
     private ScratchDirectory scratchDirectory;
+    private String resultFingerprint;
     Locations locations;
 
 }
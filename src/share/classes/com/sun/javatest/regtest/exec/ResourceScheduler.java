@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.FileLockInterruptionException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.sun.javatest.regtest.config.RegressionParameters;
+
+/**
+ * A scheduler to limit the total weight of the tests that are executing at any one time.
+ *
+ * <p>Each test has a weight, which defaults to 1, and which may be set with the
+ * {@code weight} entry in a {@code TEST.properties} file or with the {@code @weight} tag.
+ * The weight of a test is a measure of the resources it uses, such as CPUs or memory,
+ * in units of the resources used by a typical test.
+ * Before the main part of a test is executed, it must acquire permits from the scheduler
+ * equal to its weight. The total number of permits is given by the budget for the run,
+ * which defaults to the concurrency.
+ *
+ * <p>When a budget is given explicitly, and a lock file is given for tests that require
+ * exclusive access, the permits are shared with any other instances of jtreg
+ * using the same lock file. The permits are represented by locks on regions of a
+ * file alongside the lock file, and so any permits held by a process are automatically
+ * released if the process terminates. So that tests with a large weight are not
+ * starved by a succession of tests with a smaller weight, the permits are only
+ * acquired while holding a lock on a second file alongside the lock file, for
+ * which the tests in all the instances of jtreg wait in turn.
+ */
+public abstract class ResourceScheduler {
+    /**
+     * A set of permits acquired from a scheduler.
+     */
+    public interface Permits {
+        /**
+         * Releases the permits.
+         */
+        void release();
+    }
+
+    static Map<RegressionParameters, ResourceScheduler> schedulers = new WeakHashMap<>();
+
+    /**
+     * Returns the scheduler for a test run.
+     *
+     * @param params the parameters for the test run
+     * @return the scheduler
+     */
+    public static synchronized ResourceScheduler get(RegressionParameters params) {
+        ResourceScheduler s = schedulers.get(params);
+        if (s == null) {
+            Path el = params.getExclusiveLock();
+            int budget = params.getWeightBudget();
+            if (el != null && budget > 0) {
+                Path file = el.resolveSibling(el.getFileName() + ".permits");
+                Path queueFile = el.resolveSibling(el.getFileName() + ".permits.queue");
+                s = new MultiVMScheduler(file.toFile(), queueFile, budget);
+            } else {
+                s = new SimpleScheduler(budget > 0 ? budget : params.getConcurrency());
+            }
+            schedulers.put(params, s);
+        }
+        return s;
+    }
+
+    /**
+     * Creates a scheduler with a given budget.
+     *
+     * @param budget the total number of permits
+     */
+    ResourceScheduler(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Acquires permits for a test with a given weight, waiting until they are available.
+     * A weight greater than the budget is treated as equal to the budget,
+     * so that the test can run when no other tests are executing.
+     *
+     * @param weight the weight of the test
+     * @return the permits
+     */
+    public abstract Permits acquire(int weight);
+
+    /**
+     * Releases any resources used by the scheduler.
+     */
+    public void close() { }
+
+    int getCount(int weight) {
+        return Math.max(1, Math.min(weight, budget));
+    }
+
+    final int budget;
+
+    private static class SimpleScheduler extends ResourceScheduler {
+        private final Semaphore semaphore;
+
+        SimpleScheduler(int budget) {
+            super(budget);
+            semaphore = new Semaphore(budget, true);
+        }
+
+        @Override
+        public Permits acquire(int weight) {
+            int n = getCount(weight);
+            semaphore.acquireUninterruptibly(n);
+            return () -> semaphore.release(n);
+        }
+    }
+
+    private static class MultiVMScheduler extends SimpleScheduler {
+        private final RandomAccessFile raf;
+        private final Path queueFile;
+        private final ReentrantLock localQueue = new ReentrantLock(true);
+        private final BitSet localSlots = new BitSet();
+
+        MultiVMScheduler(File file, Path queueFile, int budget) {
+            super(budget);
+            this.queueFile = queueFile;
+            try {
+                raf = new RandomAccessFile(file, "rw");
+            } catch (IOException e) {
+                throw new Error(e);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>The permits are first acquired from the scheduler for this VM.
+         * Then, the test waits for its turn to lock slots in the shared file,
+         * first with the other tests in this VM, and then with the tests in
+         * other VMs, by locking the queue file. While it holds that lock,
+         * the test locks slots as they become available, until it has as many
+         * as it needs. Since no other test can lock slots in the meantime,
+         * a test with a large weight is not starved by tests with a smaller
+         * weight, and tests in different VMs cannot deadlock.
+         */
+        @Override
+        public Permits acquire(int weight) {
+            Permits local = super.acquire(weight);
+            int n = getCount(weight);
+            boolean interrupted = false;
+            List<FileLock> locks = new ArrayList<>();
+            localQueue.lock();
+            try {
+                FileLock queueLock = lockQueue();
+                try {
+                    while (!tryLockSlots(n, locks)) {
+                        try {
+                            Thread.sleep(RETRY_MILLIS);
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                } finally {
+                    unlockQueue(queueLock);
+                }
+            } finally {
+                localQueue.unlock();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return () -> {
+                releaseSlots(locks);
+                local.release();
+            };
+        }
+
+        /**
+         * Locks the queue file, waiting until any test in another VM that is
+         * locking slots in the shared file has done so.
+         * The file is opened for each lock, so that if the thread is interrupted
+         * while waiting, only this channel is closed.
+         */
+        private FileLock lockQueue() {
+            boolean interrupted = Thread.interrupted();
+            try {
+                while (true) {
+                    FileChannel ch = FileChannel.open(queueFile,
+                            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    try {
+                        return ch.lock();
+                    } catch (FileLockInterruptionException | ClosedByInterruptException e) {
+                        Thread.interrupted();
+                        interrupted = true;
+                        ch.close();
+                    } catch (IOException | RuntimeException e) {
+                        ch.close();
+                        throw e;
+                    }
+                }
+            } catch (IOException e) {
+                throw new Error(e);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void unlockQueue(FileLock lock) {
+            try {
+                lock.channel().close();
+            } catch (IOException e) {
+                // ignore: the lock is released when the file is closed
+            }
+        }
+
+        /**
+         * Tries to lock enough slots in the shared file that, with those already
+         * locked, there are a given number of slots.
+         *
+         * @param n     the number of slots that are needed
+         * @param locks the locks for the slots that have already been locked
+         * @return {@code true} if there are now enough slots, and {@code false} otherwise
+         */
+        private synchronized boolean tryLockSlots(int n, List<FileLock> locks) {
+            FileChannel ch = raf.getChannel();
+            try {
+                for (int slot = 0; slot < budget && locks.size() < n; slot++) {
+                    if (localSlots.get(slot)) {
+                        continue;
+                    }
+                    FileLock l = ch.tryLock(slot, 1, false);
+                    if (l != null) {
+                        locks.add(l);
+                        localSlots.set(slot);
+                    }
+                }
+            } catch (IOException e) {
+                releaseSlots(locks);
+                throw new Error(e);
+            }
+            return locks.size() >= n;
+        }
+
+        private synchronized void releaseSlots(List<FileLock> locks) {
+            for (FileLock l : locks) {
+                try {
+                    l.release();
+                } catch (IOException e) {
+                    // ignore: the lock is released when the file is closed
+                }
+                localSlots.clear((int) l.position());
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                throw new Error(e);
+            }
+        }
+
+        private static final int RETRY_MILLIS = 100;
+    }
+}
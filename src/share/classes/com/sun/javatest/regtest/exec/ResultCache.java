@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.sun.javatest.TestDescription;
+import com.sun.javatest.TestResult;
+import com.sun.javatest.regtest.config.JDK;
+import com.sun.javatest.regtest.config.Locations;
+import com.sun.javatest.regtest.config.Locations.LibLocn;
+import com.sun.javatest.regtest.config.RegressionParameters;
+import com.sun.javatest.regtest.tool.Version;
+
+import static com.sun.javatest.regtest.util.DigestUtils.newDigest;
+import static com.sun.javatest.regtest.util.DigestUtils.toHex;
+import static com.sun.javatest.regtest.util.DigestUtils.update;
+
+/**
+ * A persistent cache of the tests that have passed, so that a test need not be
+ * run again if none of its inputs have changed since it last passed.
+ *
+ * <p>The inputs for a test are identified by a fingerprint, which is a digest of:
+ * <ul>
+ * <li>the name and test description of the test,
+ * <li>the contents of the source files used by the actions of the test,
+ *     and of all the files in the directory containing the test and its subdirectories,
+ * <li>the contents of the source files for the libraries used by the test,
+ *     and of any precompiled library jar files,
+ * <li>the contents of the {@code TEST.ROOT} file and any {@code TEST.properties}
+ *     files in the directories containing the test,
+ * <li>the identity of the test JDK and compile JDK, including a digest of the
+ *     {@code lib/modules} file, or for an exploded JDK build, the version properties
+ *     of the JDK and the size and last-modified time of the files in its
+ *     {@code modules} directory and of its native libraries,
+ * <li>the options for the VMs and compilers used to execute the test, and the
+ *     execution mode, environment variables and native directory for the run, and
+ * <li>the version of jtreg.
+ * </ul>
+ * Other files used by a test, such as files outside the test suite that are read
+ * when the test is executed, are not included in the fingerprint, and so the cache
+ * should only be used for tests that do not depend on such files.
+ * If a JDK cannot be identified in one of these ways, the cache is not used.
+ *
+ * <p>The result for a test that is found in the cache records the time that
+ * the test took when it originally passed, so that the time can be used to
+ * order or shard tests in subsequent runs.
+ *
+ * <p>The cache is a directory containing a file for the fingerprint of each test
+ * that has passed. The directory may be shared by different work directories and
+ * by concurrent runs of jtreg: files are written to a temporary file and then renamed.
+ */
+public class ResultCache {
+    /**
+     * The name of the property in a test result that indicates the result was
+     * found in the cache; the value is the fingerprint for the test.
+     */
+    public static final String CACHED_RESULT = "cachedResult";
+
+    /**
+     * The name of the property in a test result found in the cache that gives
+     * the time in milliseconds taken by the test when it originally passed.
+     */
+    public static final String CACHED_ELAPSED = "cachedElapsed";
+
+    private static final Map<RegressionParameters, ResultCache> instances = new WeakHashMap<>();
+
+    /**
+     * Returns the cache for a test run, or {@code null} if no cache is to be used.
+     *
+     * @param params the parameters for the test run
+     * @return the cache
+     */
+    public static synchronized ResultCache get(RegressionParameters params) {
+        Path dir = params.getResultCacheDir();
+        if (dir == null) {
+            return null;
+        }
+        return instances.computeIfAbsent(params, p -> new ResultCache(p, dir));
+    }
+
+    /**
+     * Returns whether a test result was found in the cache.
+     *
+     * @param tr the test result
+     * @return {@code true} if the result was found in the cache
+     */
+    public static boolean isCachedResult(TestResult tr) {
+        try {
+            return tr.getProperty(CACHED_RESULT) != null;
+        } catch (TestResult.Fault e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds taken by a test when it originally passed,
+     * for a test result that was found in the cache, or -1 if the time is not known.
+     *
+     * @param tr the test result
+     * @return the time
+     */
+    public static long getCachedElapsedTime(TestResult tr) {
+        try {
+            String s = tr.getProperty(CACHED_ELAPSED);
+            return (s == null) ? -1 : Long.parseLong(s);
+        } catch (TestResult.Fault | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private ResultCache(RegressionParameters params, Path dir) {
+        this.params = params;
+        this.dir = dir;
+    }
+
+    /**
+     * Returns the fingerprint for the inputs of a test,
+     * or {@code null} if the fingerprint cannot be determined.
+     *
+     * @param td        the test description
+     * @param locations the locations for the test
+     * @param actions   the actions for the test
+     * @return the fingerprint
+     */
+    String getFingerprint(TestDescription td, Locations locations, Collection<Action> actions) {
+        try {
+            String runKey = getRunKey();
+            if (runKey == null) {
+                return null;
+            }
+            MessageDigest md = newDigest();
+            update(md, runKey);
+            update(md, td.getRootRelativeURL());
+            Map<String, String> tdParams = new TreeMap<>();
+            for (Iterator<String> iter = td.getParameterKeys(); iter.hasNext(); ) {
+                String key = iter.next();
+                tdParams.put(key, td.getParameter(key));
+            }
+            tdParams.forEach((k, v) -> {
+                update(md, k);
+                update(md, v);
+            });
+
+            TreeSet<Path> files = new TreeSet<>();
+            files.add(td.getFile().toPath().toAbsolutePath());
+            for (Action a : actions) {
+                Set<File> sourceFiles = a.getSourceFiles();
+                if (sourceFiles != null) {
+                    for (File f : sourceFiles) {
+                        files.add(f.toPath().toAbsolutePath());
+                    }
+                }
+            }
+            Path rootDir = params.getTestSuite().getRootDir().toPath().toAbsolutePath();
+            files.add(rootDir.resolve("TEST.ROOT"));
+            for (Path d = td.getFile().toPath().toAbsolutePath().getParent();
+                    d != null && d.startsWith(rootDir); d = d.getParent()) {
+                files.add(d.resolve("TEST.properties"));
+            }
+            for (Path f : files) {
+                update(md, f.toString());
+                update(md, getFileDigest(f));
+            }
+
+            // the test's own directory may contain other source files, such as
+            // helper classes found by javac on the source path, or classes compiled
+            // by a shell test, which are not reported by the actions
+            update(md, getDirectoryDigest(locations.absTestSrcDir()));
+
+            for (LibLocn lib : locations.getLibs()) {
+                update(md, lib.name);
+                if (lib.kind == LibLocn.Kind.PRECOMPILED_JAR) {
+                    update(md, getFileDigest(lib.absClsDir));
+                } else if (lib.absSrcDir != null) {
+                    update(md, getDirectoryDigest(lib.absSrcDir));
+                }
+            }
+
+            return toHex(md.digest());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether a test with a given fingerprint has previously passed.
+     *
+     * @param fingerprint the fingerprint
+     * @return {@code true} if the test has passed
+     */
+    boolean isPassed(String fingerprint) {
+        return Files.exists(getFile(fingerprint));
+    }
+
+    /**
+     * Returns the time in milliseconds taken by a test with a given fingerprint
+     * when it passed, or -1 if the time is not known.
+     *
+     * @param fingerprint the fingerprint
+     * @return the time
+     */
+    long getElapsedTime(String fingerprint) {
+        try {
+            List<String> lines = Files.readAllLines(getFile(fingerprint));
+            return (lines.size() > 2) ? Long.parseLong(lines.get(2)) : -1;
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Records that a test with a given fingerprint has passed.
+     * Any problems writing the record are ignored.
+     *
+     * @param fingerprint the fingerprint
+     * @param testName    the name of the test
+     * @param elapsed     the time in milliseconds taken by the test
+     */
+    void recordPassed(String fingerprint, String testName, long elapsed) {
+        Path file = getFile(fingerprint);
+        Path tmp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            tmp = Files.createTempFile(file.getParent(), fingerprint, ".tmp");
+            Files.write(tmp, List.of(testName, Instant.now().toString(), String.valueOf(elapsed)));
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        } catch (IOException e) {
+            // ignore: the test will be run again next time
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private Path getFile(String fingerprint) {
+        return dir.resolve(fingerprint.substring(0, 2)).resolve(fingerprint);
+    }
+
+    /**
+     * Returns a string identifying the inputs that are the same for all the
+     * tests in the run, or {@code null} if the inputs cannot be identified,
+     * in which case the cache is not used.
+     */
+    private synchronized String getRunKey() throws IOException {
+        if (!haveRunKey) {
+            runKey = computeRunKey();
+            haveRunKey = true;
+        }
+        return runKey;
+    }
+
+    private String computeRunKey() throws IOException {
+        String testJDKKey = getJDKKey(params.getTestJDK());
+        String compileJDKKey = getJDKKey(params.getCompileJDK());
+        if (testJDKKey == null || compileJDKKey == null) {
+            return null;
+        }
+        MessageDigest md = newDigest();
+        Version v = Version.getCurrent();
+        update(md, FORMAT_VERSION + " " + v.product + " " + v.version + " " + v.milestone
+                + " " + v.build + " " + v.buildDate);
+        update(md, testJDKKey);
+        update(md, compileJDKKey);
+        update(md, params.getExecMode().name());
+        update(md, String.valueOf(params.getTestVMOptions()));
+        update(md, String.valueOf(params.getTestJavaOptions()));
+        update(md, String.valueOf(params.getTestCompilerOptions()));
+        update(md, String.valueOf(new TreeMap<>(params.getEnvVars())));
+        update(md, String.valueOf(params.getNativeDir()));
+        return toHex(md.digest());
+    }
+
+    /**
+     * Returns a string identifying a JDK, which will change if the JDK is
+     * rebuilt or replaced, or {@code null} if the JDK cannot be identified
+     * in that way.
+     *
+     * <p>For a JDK image, the string includes a digest of the {@code lib/modules}
+     * file. An exploded JDK build has no such file, and its {@code release} file
+     * and version may be the same from one build to the next, so the string
+     * includes the version properties of the JDK, and the size and last-modified
+     * time of each file in the {@code modules} directory and of each native library.
+     */
+    private String getJDKKey(JDK jdk) throws IOException {
+        Path home = jdk.getAbsoluteHomeDirectory();
+        StringBuilder sb = new StringBuilder();
+        sb.append(home).append(' ').append(getFileDigest(home.resolve("release")));
+
+        Path modulesFile = home.resolve("lib").resolve("modules");
+        if (Files.isRegularFile(modulesFile)) {
+            return sb.append(' ').append(getFileDigest(modulesFile)).toString();
+        }
+
+        Path modulesDir = home.resolve("modules");
+        if (!Files.isDirectory(modulesDir)) {
+            return null;
+        }
+        Properties props;
+        try {
+            props = jdk.getProperties(params, s -> { });
+        } catch (JDK.Fault e) {
+            return null;
+        }
+        for (String name : List.of("java.runtime.version", "java.vm.version", "java.vm.info")) {
+            String value = props.getProperty(name);
+            if (value == null) {
+                return null;
+            }
+            sb.append(' ').append(value);
+        }
+        sb.append(' ').append(getTreeStamp(modulesDir, true));
+        sb.append(' ').append(getTreeStamp(home.resolve("lib"), false));
+        sb.append(' ').append(getTreeStamp(home.resolve("bin"), false));
+        return sb.toString();
+    }
+
+    /**
+     * Returns a digest of the names, sizes and last-modified times of the files
+     * in a directory and its subdirectories.
+     *
+     * @param dir the directory
+     * @param all whether to include all files, or just native libraries
+     */
+    private String getTreeStamp(Path dir, boolean all) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return "none";
+        }
+        List<Path> files;
+        try (Stream<Path> s = Files.walk(dir)) {
+            files = s.filter(Files::isRegularFile)
+                    .filter(f -> all || isNativeLibrary(f))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        MessageDigest md = newDigest();
+        for (Path f : files) {
+            update(md, dir.relativize(f).toString());
+            update(md, Files.size(f) + ":" + Files.getLastModifiedTime(f).toMillis());
+        }
+        return toHex(md.digest());
+    }
+
+    private static boolean isNativeLibrary(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".so") || name.endsWith(".dylib") || name.endsWith(".dll");
+    }
+
+    /**
+     * Returns a digest of the contents of a file, or "missing" if the file
+     * does not exist. The digests are cached for the duration of the run.
+     */
+    private String getFileDigest(Path file) throws IOException {
+        String d = fileDigests.get(file);
+        if (d == null) {
+            if (!Files.isRegularFile(file)) {
+                d = "missing";
+            } else {
+                MessageDigest md = newDigest();
+                try (InputStream in = Files.newInputStream(file)) {
+                    byte[] buf = new byte[8192];
+                    int n;
+                    while ((n = in.read(buf)) > 0) {
+                        md.update(buf, 0, n);
+                    }
+                }
+                d = toHex(md.digest());
+            }
+            fileDigests.put(file, d);
+        }
+        return d;
+    }
+
+    /**
+     * Returns a digest of the names and contents of all the files in a directory
+     * and its subdirectories. The digests are cached for the duration of the run.
+     */
+    private String getDirectoryDigest(Path dir) throws IOException {
+        String d = dirDigests.get(dir);
+        if (d == null) {
+            List<Path> files;
+            if (Files.isDirectory(dir)) {
+                try (Stream<Path> s = Files.walk(dir)) {
+                    files = s.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+            } else {
+                files = new ArrayList<>();
+            }
+            MessageDigest md = newDigest();
+            for (Path f : files) {
+                update(md, dir.relativize(f).toString());
+                update(md, getFileDigest(f));
+            }
+            d = toHex(md.digest());
+            dirDigests.put(dir, d);
+        }
+        return d;
+    }
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final RegressionParameters params;
+    private final Path dir;
+    private final Map<Path, String> fileDigests = new ConcurrentHashMap<>();
+    private final Map<Path, String> dirDigests = new ConcurrentHashMap<>();
+    private String runKey;
+    private boolean haveRunKey;
+}
@@ -409,12 +409,7 @@ abstract class ScratchDirectory {
             }
 
             File getDir(RegressionParameters params) {
-                String name = "scratch";
-                if (params.getConcurrency() > 1)
-                    name += File.separator + threadNum;
-                if (serial > 0)
-                    name += "_" + serial;
-                return params.getWorkDirectory().getFile(name);
+                return ThreadSafeScratchDir.getDir(params, threadNum, serial);
             }
 
             File getNextDir(RegressionParameters params) {
@@ -434,6 +429,23 @@ abstract class ScratchDirectory {
             super(params, td, threadInfo.get().getDir(params));
         }
 
+        /**
+         * Returns the scratch directory used by the worker thread with a given number.
+         *
+         * @param params    the parameters for the test run
+         * @param threadNum the number of the thread
+         * @param serial    the number of times the thread has had to use a new directory
+         * @return the directory
+         */
+        static File getDir(RegressionParameters params, int threadNum, int serial) {
+            String name = "scratch";
+            if (params.getConcurrency() > 1)
+                name += File.separator + threadNum;
+            if (serial > 0)
+                name += "_" + serial;
+            return params.getWorkDirectory().getFile(name);
+        }
+
         @Override
         void init(PrintWriter log) throws Fault, InterruptedException {
             try {
@@ -278,30 +278,35 @@ public class ShellAction extends Action
             PrintWriter sysOut = section.createOutput("System.out");
             PrintWriter sysErr = section.createOutput("System.err");
             Lock lock = script.getLockIfRequired();
-            if (lock != null) lock.lock();
+            ResourceScheduler.Permits permits = script.acquirePermits();
             try {
-                if (showCmd)
-                    showCmd("shell", command, section);
-                recorder.exec(command, env);
-
-                TimeoutHandler timeoutHandler =
-                        script.getTimeoutHandlerProvider().createHandler(this.getClass(), script, section);
-
-                // RUN THE SHELL SCRIPT
-                ProcessCommand cmd = new ProcessCommand()
-                    .setExecDir(script.absTestScratchDir().toFile())
-                    .setCommand(command)
-                    .setEnvironment(env)
-                    .setStreams(sysOut, sysErr)
-                    .setTimeout(timeout, TimeUnit.SECONDS)
-                    .setTimeoutHandler(timeoutHandler);
-
-                status = normalize(cmd.exec());
-
+                if (lock != null) lock.lock();
+                try {
+                    if (showCmd)
+                        showCmd("shell", command, section);
+                    recorder.exec(command, env);
+
+                    TimeoutHandler timeoutHandler =
+                            script.getTimeoutHandlerProvider().createHandler(this.getClass(), script, section);
+
+                    // RUN THE SHELL SCRIPT
+                    ProcessCommand cmd = new ProcessCommand()
+                        .setExecDir(script.absTestScratchDir().toFile())
+                        .setCommand(command)
+                        .setEnvironment(env)
+                        .setStreams(sysOut, sysErr)
+                        .setTimeout(timeout, TimeUnit.SECONDS)
+                        .setTimeoutHandler(timeoutHandler);
+
+                    status = normalize(cmd.exec());
+
+                } finally {
+                    if (lock != null) lock.unlock();
+                    if (sysOut != null) sysOut.close();
+                    if (sysErr != null) sysErr.close();
+                }
             } finally {
-                if (lock != null) lock.unlock();
-                if (sysOut != null) sysOut.close();
-                if (sysErr != null) sysErr.close();
+                permits.release();
             }
 
             // EVALUATE RESULTS
@@ -30,6 +30,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.time.Duration;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.WeakHashMap;
@@ -37,6 +38,7 @@ import java.util.WeakHashMap;
 import com.sun.javatest.Harness;
 import com.sun.javatest.Parameters;
 import com.sun.javatest.TestResult;
+import com.sun.javatest.regtest.exec.ResultCache;
 import com.sun.javatest.report.Report;
 
 /**
@@ -70,7 +72,18 @@ public class ElapsedTimeHandler {
                 Long start = startTimes.remove(tr);
                 if (start == null)
                     return;
-                table.record(start, System.currentTimeMillis());
+                long end = System.currentTimeMillis();
+                table.record(start, end);
+                if (ResultCache.isCachedResult(tr)) {
+                    // record the time the test took when it originally passed,
+                    // for use when ordering or sharding tests in a subsequent run
+                    long elapsed = ResultCache.getCachedElapsedTime(tr);
+                    if (elapsed >= 0) {
+                        durations.put(tr.getTestName(), elapsed);
+                    }
+                } else {
+                    durations.put(tr.getTestName(), end - start);
+                }
             }
 
             @Override
@@ -88,6 +101,22 @@ public class ElapsedTimeHandler {
         reportTextDir.mkdirs();
         File file = new File(reportTextDir, "timeStats.txt");
         report(file);
+        reportDurations(new File(reportTextDir, "testDurations.txt"));
+    }
+
+    /**
+     * Writes the elapsed time for each test, in milliseconds, followed by the name of the test.
+     * The file may be used with the {@code --test-durations} option in a subsequent run.
+     *
+     * @param file the file
+     * @throws IOException if there is a problem writing the file
+     */
+    public void reportDurations(File file) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(file))) {
+            for (Map.Entry<String, Long> e: durations.entrySet()) {
+                out.write(String.format("%d %s%n", e.getValue(), e.getKey()));
+            }
+        }
     }
 
     public void report(File file) throws IOException {
@@ -112,9 +141,40 @@ public class ElapsedTimeHandler {
             int mins = e / 60;
             int secs = e % 60;
             out.write(String.format("Total elapsed time %dm %ds%n", mins, secs));
+            if (testSelectionTime != null) {
+                out.write(String.format("Test selection time %5.2fs%n", testSelectionTime.toMillis() / 1000.0));
+            }
+            if (discoveryTime != null) {
+                out.write(String.format("Discovery time     %6.2fs%n", discoveryTime.toMillis() / 1000.0));
+            }
         }
     }
 
+    /**
+     * Sets the time taken to read the test descriptions for the tests to be run,
+     * when they are read before the tests are run.
+     *
+     * @param d the time
+     */
+    public void setDiscoveryTime(Duration d) {
+        discoveryTime = d;
+    }
+
+    private Duration discoveryTime;
+
+    /**
+     * Sets the time taken to validate the tests and groups given on the command line.
+     *
+     * @param d the time
+     */
+    public void setTestSelectionTime(Duration d) {
+        testSelectionTime = d;
+    }
+
+    private Duration testSelectionTime;
+
+    private final Map<String, Long> durations = new TreeMap<>();
+
     private int resolution;
 
     private Table table;
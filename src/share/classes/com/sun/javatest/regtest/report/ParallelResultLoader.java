@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.report;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.javatest.TestResult;
+import com.sun.javatest.regtest.agent.Flags;
+
+/**
+ * An iterator that loads the contents of the results given by another iterator,
+ * using a bounded pool of threads, and which returns the results in the same
+ * order as the underlying iterator.
+ *
+ * <p>The results in a test result table only hold the name and status of each
+ * test; the test description, properties and sections are reloaded from the
+ * corresponding {@code .jtr} file when they are first accessed, such as when
+ * a report is written. When the work directory is on slow or remote storage,
+ * reading the files one at a time is dominated by the latency of each read.
+ * This iterator reads ahead of the results that have been returned, loading
+ * a limited number of results concurrently. Once loaded, the contents are
+ * retained by the results, and so should only be loaded when they will be used.
+ *
+ * <p>The underlying iterator is only accessed by the thread calling
+ * {@link #hasNext} and {@link #next}. Any problems loading a result are
+ * ignored here; they will be reported when the result is used.
+ */
+public class ParallelResultLoader implements Iterator<TestResult> {
+    /**
+     * The default number of threads used to load results, which may be set
+     * with the system property {@code jtreg.resultLoaderThreads}.
+     */
+    public static final int DEFAULT_PARALLELISM = Integer.getInteger("jtreg.resultLoaderThreads",
+            Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final boolean traceResultLoader = Flags.get("traceResultLoader");
+
+    private static class Entry {
+        final TestResult result;
+        final Future<?> future;
+
+        Entry(TestResult result, Future<?> future) {
+            this.result = result;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Creates an iterator to load results with the default number of threads.
+     *
+     * @param source the iterator for the results
+     */
+    public ParallelResultLoader(Iterator<TestResult> source) {
+        this(source, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Creates an iterator to load results with a given number of threads.
+     * If the number is less than 2, results are not loaded ahead of time.
+     *
+     * @param source      the iterator for the results
+     * @param parallelism the number of threads
+     */
+    public ParallelResultLoader(Iterator<TestResult> source, int parallelism) {
+        this.source = source;
+        if (parallelism > 1) {
+            executor = new ThreadPoolExecutor(parallelism, parallelism,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    r -> {
+                        Thread t = new Thread(r, "ParallelResultLoader-" + threadCount.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            window = parallelism * WINDOW_PER_THREAD;
+            fill();
+        } else {
+            executor = null;
+            window = 0;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !pending.isEmpty() || source.hasNext();
+    }
+
+    @Override
+    public TestResult next() {
+        if (pending.isEmpty()) {
+            if (!source.hasNext())
+                throw new NoSuchElementException();
+            return source.next();
+        }
+
+        Entry e = pending.remove();
+        fill();
+        try {
+            e.future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // ignore: any problem will be reported when the result is used
+        }
+        if (traceResultLoader && pending.isEmpty()) {
+            System.err.println("ParallelResultLoader: loaded " + loadCount.get()
+                    + " results on " + threadCount.get() + " threads");
+        }
+        return e.result;
+    }
+
+    private void fill() {
+        while (pending.size() < window && source.hasNext()) {
+            TestResult tr = source.next();
+            pending.add(new Entry(tr, executor.submit(() -> {
+                load(tr);
+                return null;
+            })));
+        }
+        if (executor != null && pending.isEmpty()) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Loads the contents of a result. Accessing the description reloads
+     * the {@code .jtr} file, including the properties and sections,
+     * if they are not already available.
+     */
+    private void load(TestResult tr) throws TestResult.Fault {
+        tr.getDescription();
+        tr.getSectionCount();
+        loadCount.incrementAndGet();
+    }
+
+    private static final int KEEP_ALIVE_SECONDS = 5;
+    private static final int WINDOW_PER_THREAD = 4;
+
+    private final Iterator<TestResult> source;
+    private final ThreadPoolExecutor executor;
+    private final int window;
+    private final Deque<Entry> pending = new ArrayDeque<>();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final AtomicInteger loadCount = new AtomicInteger();
+}
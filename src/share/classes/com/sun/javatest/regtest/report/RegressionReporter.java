@@ -39,13 +39,17 @@ import java.nio.file.Path;
 import java.text.DateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.sun.javatest.TestFilter;
+import com.sun.javatest.TestResult;
+import com.sun.javatest.TestResultTable;
 import com.sun.javatest.regtest.Main.Fault;
+import com.sun.javatest.regtest.config.CachingTestFilter;
 import com.sun.javatest.regtest.config.RegressionParameters;
 import com.sun.javatest.regtest.config.RegressionTestSuite;
 import com.sun.javatest.regtest.config.TestManager;
@@ -103,6 +107,9 @@ public class RegressionReporter {
                 }
             }
             rd.mkdirs();
+            if (reportKinds.contains("html") || reportKinds.contains("xml")) {
+                loadResults(params, filter);
+            }
             r.writeReports(s, rd);
             if (s.isPlainEnabled()) {
                 if (elapsedTimeHandler != null)
@@ -111,6 +118,8 @@ public class RegressionReporter {
                 if (testStats != null)
                     testStats.report(r);
 
+                writeFilterStats(params, new File(rd, "text"));
+
                 TestNGReporter tng = TestNGReporter.instance(params.getWorkDirectory());
                 if (!tng.isEmpty())
                     tng.writeReport(rd);
@@ -153,6 +162,42 @@ public class RegressionReporter {
         }
     }
 
+    /**
+     * Writes the statistics for the filters used to select the tests to be run:
+     * the number of cache hits and misses, and the time spent evaluating the
+     * filter for each cache miss.
+     */
+    /**
+     * Loads the contents of the results to be reported in parallel, so that
+     * they do not have to be reloaded one at a time as the reports are written.
+     */
+    private void loadResults(RegressionParameters params, TestFilter filter) {
+        TestResultTable trt = params.getWorkDirectory().getTestResultTable();
+        trt.waitUntilReady();
+        Iterator<TestResult> iter = new ParallelResultLoader(
+                (filter == null) ? trt.getIterator() : trt.getIterator(new TestFilter[] { filter }));
+        while (iter.hasNext()) {
+            iter.next();
+        }
+    }
+
+    private void writeFilterStats(RegressionParameters params, File reportTextDir) throws IOException {
+        List<CachingTestFilter> filters = params.getCachingTestFilters();
+        if (filters.isEmpty())
+            return;
+
+        reportTextDir.mkdirs();
+        File file = new File(reportTextDir, "filterStats.txt");
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            out.println(String.format("%-24s %10s %10s %10s", "filter", "hits", "misses", "time(ms)"));
+            for (CachingTestFilter f : filters) {
+                out.println(String.format("%-24s %10d %10d %10.2f",
+                        f.getName(), f.getHitCount(), f.getMissCount(),
+                        f.getEvaluationTime().toNanos() / 1_000_000.0));
+            }
+        }
+    }
+
     private void logReportWritten(File reportDir) {
         File report = new File(new File(reportDir, "html"), "report.html");
         if (report.exists())
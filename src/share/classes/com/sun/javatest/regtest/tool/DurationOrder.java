@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.tool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.javatest.Status;
+import com.sun.javatest.TestDescription;
+import com.sun.javatest.TestResult;
+import com.sun.javatest.regtest.exec.ResultCache;
+
+/**
+ * Determines an order in which to run tests, such that the tests that are
+ * expected to take longest are run first. When tests are run concurrently,
+ * this reduces the likelihood that a long-running test is started near the
+ * end of the run, when it would determine the overall time for the run.
+ *
+ * <p>The expected time for a test is the time it took when it was previously
+ * run, as given by the "elapsed" property in the result for the test (or for a
+ * result found in the result cache, the time when the test originally passed), or by
+ * an entry in a file of test durations, such as written to {@code text/testDurations.txt}
+ * in the report directory. For a test that has not been run before, the expected time
+ * is estimated from the number of actions in the test, and their timeouts,
+ * scaled by the ratio of the actual and estimated times for the tests that
+ * have been run before.
+ */
+class DurationOrder {
+    /**
+     * Reads the durations of tests from a file. Each line of the file contains
+     * the elapsed time for a test in milliseconds, followed by the name of the test.
+     * Lines that are not in this form are ignored.
+     *
+     * @param file the file
+     * @throws IOException if there is a problem reading the file
+     */
+    void readDurations(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int sep = line.indexOf(' ');
+                if (sep == -1) {
+                    continue;
+                }
+                try {
+                    long millis = Long.parseLong(line.substring(0, sep));
+                    durations.put(line.substring(sep + 1).trim(), millis);
+                } catch (NumberFormatException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the tests given by an iterator, ordered by their
+     * expected duration, longest first. Tests with the same expected duration
+     * are kept in the order given by the iterator.
+     *
+     * @param iter the iterator for the tests to be run
+     * @return the names of the tests
+     */
+    List<String> getOrderedTests(Iterator<TestResult> iter) {
+        Map<String, Double> expected = getExpectedDurations(iter);
+        List<String> names = new ArrayList<>(expected.keySet());
+        // List.sort is stable
+        names.sort(Comparator.comparingDouble((String t) -> expected.get(t)).reversed());
+        return names;
+    }
+
+    /**
+     * Returns the expected durations of the tests given by an iterator,
+     * in the order given by the iterator.
+     *
+     * @param iter the iterator for the tests
+     * @return a map giving the expected duration in milliseconds for each test
+     */
+    Map<String, Double> getExpectedDurations(Iterator<TestResult> iter) {
+        List<TestInfo> tests = new ArrayList<>();
+        long knownMillis = 0;
+        long knownNominal = 0;
+        while (iter.hasNext()) {
+            TestResult tr = iter.next();
+            TestInfo ti = new TestInfo(tr.getTestName(), getPriorDuration(tr), getNominalDuration(tr));
+            if (ti.prior >= 0) {
+                knownMillis += ti.prior;
+                knownNominal += ti.nominal;
+            }
+            tests.add(ti);
+        }
+
+        double scale = (knownNominal == 0) ? 1 : (double) knownMillis / knownNominal;
+        Map<String, Double> expected = new LinkedHashMap<>();
+        for (TestInfo ti : tests) {
+            expected.put(ti.name, (ti.prior >= 0) ? ti.prior : ti.nominal * scale);
+        }
+        return expected;
+    }
+
+    /**
+     * Returns the time in milliseconds taken by a test when it was previously run,
+     * or -1 if the time is not known.
+     */
+    private long getPriorDuration(TestResult tr) {
+        Long d = durations.get(tr.getTestName());
+        if (d != null) {
+            return d;
+        }
+        if (tr.getStatus().getType() == Status.NOT_RUN) {
+            return -1;
+        }
+        if (ResultCache.isCachedResult(tr)) {
+            // the elapsed time is the time to find the result in the cache
+            return ResultCache.getCachedElapsedTime(tr);
+        }
+        try {
+            // The property is the elapsed time in milliseconds, followed by the time as h:mm:ss.mmm.
+            String elapsed = tr.getProperty("elapsed");
+            if (elapsed != null) {
+                int sep = elapsed.indexOf(' ');
+                return Long.parseLong(sep == -1 ? elapsed : elapsed.substring(0, sep));
+            }
+        } catch (TestResult.Fault | NumberFormatException e) {
+            // ignore
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a nominal duration for a test: the sum of the timeouts for the
+     * actions in the test, in milliseconds. The value is only used relative
+     * to the nominal durations of other tests.
+     */
+    private long getNominalDuration(TestResult tr) {
+        String run;
+        try {
+            TestDescription td = tr.getDescription();
+            run = td.getParameter("run");
+        } catch (TestResult.Fault e) {
+            run = null;
+        }
+        if (run == null) {
+            return DEFAULT_ACTION_TIMEOUT * 1000;
+        }
+        long total = 0;
+        for (String action : run.split("\\R")) {
+            if (action.isBlank()) {
+                continue;
+            }
+            long timeout = DEFAULT_ACTION_TIMEOUT;
+            Matcher m = TIMEOUT_PATTERN.matcher(action);
+            if (m.find()) {
+                try {
+                    long t = Long.parseLong(m.group(1));
+                    if (t > 0) {
+                        timeout = t;
+                    }
+                } catch (NumberFormatException e) {
+                    // ignore
+                }
+            }
+            total += timeout * 1000;
+        }
+        return Math.max(total, DEFAULT_ACTION_TIMEOUT * 1000);
+    }
+
+    private static class TestInfo {
+        final String name;
+        final long prior;
+        final long nominal;
+
+        TestInfo(String name, long prior, long nominal) {
+            this.name = name;
+            this.prior = prior;
+            this.nominal = nominal;
+        }
+    }
+
+    // the default timeout for an action, in seconds, before applying any timeout factor
+    private static final long DEFAULT_ACTION_TIMEOUT = 120;
+
+    private static final Pattern TIMEOUT_PATTERN = Pattern.compile("/timeout=([0-9]+)(?:/| |$)");
+
+    private final Map<String, Long> durations = new HashMap<>();
+}
@@ -51,12 +51,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DateFormat;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -103,10 +107,15 @@ import com.sun.javatest.regtest.config.JDK;
 import com.sun.javatest.regtest.config.OS;
 import com.sun.javatest.regtest.config.RegressionKeywords;
 import com.sun.javatest.regtest.config.RegressionParameters;
+import com.sun.javatest.regtest.config.RegressionTestFinder;
 import com.sun.javatest.regtest.config.RegressionTestSuite;
+import com.sun.javatest.regtest.config.Shard;
 import com.sun.javatest.regtest.config.TestManager;
 import com.sun.javatest.regtest.exec.Agent;
+import com.sun.javatest.regtest.exec.ClassDataSharing;
+import com.sun.javatest.regtest.exec.LibraryPrebuilder;
 import com.sun.javatest.regtest.exec.Lock;
+import com.sun.javatest.regtest.exec.ResourceScheduler;
 import com.sun.javatest.regtest.report.BasicObserver;
 import com.sun.javatest.regtest.report.ElapsedTimeHandler;
 import com.sun.javatest.regtest.report.RegressionReporter;
@@ -453,6 +462,141 @@ public class Tool {
             }
         },
 
+        new Option(GNU, AGENT_POOL, null, "--pool-prestart") {
+            @Override
+            public void process(String opt, String arg) throws BadArgs {
+                try {
+                    poolPrestart = Integer.parseInt(arg);
+                } catch (NumberFormatException e) {
+                    throw new BadArgs(i18n, "main.badPoolPrestart", arg);
+                }
+                if (poolPrestart < 0) {
+                    throw new BadArgs(i18n, "main.badPoolPrestart", arg);
+                }
+            }
+        },
+
+        new Option(NONE, AGENT_POOL, null, "--pool-shared-agents") {
+            @Override
+            public void process(String opt, String arg) {
+                poolSharedAgents = true;
+            }
+        },
+
+        new Option(NONE, AGENT_POOL, null, "--pool-compiler-service") {
+            @Override
+            public void process(String opt, String arg) {
+                poolCompilerService = true;
+            }
+        },
+
+        new Option(GNU, AGENT_POOL, null, "--pool-library-class-loaders") {
+            @Override
+            public void process(String opt, String arg) {
+                for (String lib : arg.split(",")) {
+                    if (!lib.isEmpty() && poolSharedLibraries.add(lib) && lib.equals("/test/lib")) {
+                        out.println(i18n.getString("main.warn.sharedTestLib"));
+                    }
+                }
+            }
+        },
+
+        new Option(NONE, AGENT_POOL, null, "--pool-test-runner-service") {
+            @Override
+            public void process(String opt, String arg) {
+                poolTestRunnerService = true;
+            }
+        },
+
+        new Option(NONE, MAIN, null, "--cds-archives") {
+            @Override
+            public void process(String opt, String arg) {
+                cdsArchives = true;
+            }
+        },
+
+        new Option(GNU, MAIN, null, "--result-cache") {
+            @Override
+            public void process(String opt, String arg) {
+                resultCacheArg = getNormalizedFile(new File(arg)).toPath();
+            }
+        },
+
+        new Option(GNU, MAIN, null, "--discovery-threads") {
+            @Override
+            public void process(String opt, String arg) throws BadArgs {
+                try {
+                    discoveryThreads = Integer.parseInt(arg);
+                } catch (NumberFormatException e) {
+                    throw new BadArgs(i18n, "main.badDiscoveryThreads", arg);
+                }
+                if (discoveryThreads < 0) {
+                    throw new BadArgs(i18n, "main.badDiscoveryThreads", arg);
+                }
+            }
+        },
+
+        new Option(GNU, MAIN, null, "--weight-budget") {
+            @Override
+            public void process(String opt, String arg) throws BadArgs {
+                try {
+                    weightBudgetArg = Integer.parseInt(arg);
+                } catch (NumberFormatException e) {
+                    throw new BadArgs(i18n, "main.badWeightBudget", arg);
+                }
+                if (weightBudgetArg < 1) {
+                    throw new BadArgs(i18n, "main.badWeightBudget", arg);
+                }
+            }
+        },
+
+        new Option(NONE, MAIN, null, "--order-by-duration") {
+            @Override
+            public void process(String opt, String arg) {
+                orderByDuration = true;
+            }
+        },
+
+        new Option(NONE, MAIN, null, "--order-failed-first") {
+            @Override
+            public void process(String opt, String arg) {
+                orderFailedFirst = true;
+            }
+        },
+
+        new Option(OPT, MAIN, "", "-failfast") {
+            @Override
+            public void process(String opt, String arg) throws BadArgs {
+                if (arg == null || arg.isEmpty()) {
+                    failFastArg = 1;
+                    return;
+                }
+                try {
+                    failFastArg = Integer.parseInt(arg);
+                } catch (NumberFormatException e) {
+                    throw new BadArgs(i18n, "main.badFailFast", arg);
+                }
+                if (failFastArg < 1) {
+                    throw new BadArgs(i18n, "main.badFailFast", arg);
+                }
+            }
+        },
+
+        new Option(NONE, MAIN, null, "--prebuild-libraries") {
+            @Override
+            public void process(String opt, String arg) {
+                prebuildLibraries = true;
+            }
+        },
+
+        new Option(GNU, MAIN, null, "--test-durations") {
+            @Override
+            public void process(String opt, String arg) {
+                testDurationsArg = getNormalizedFile(new File(arg)).toPath();
+                orderByDuration = true;
+            }
+        },
+
         new Option(STD, MAIN, "", "-conc", "-concurrency") {
             @Override
             public void process(String opt, String arg) {
@@ -699,6 +843,25 @@ public class Tool {
             }
         },
 
+        new Option(STD, SELECT, null, "-shard") {
+            @Override
+            public void process(String opt, String arg) throws BadArgs {
+                try {
+                    Shard.parse(arg, Shard.Mode.HASH);
+                } catch (IllegalArgumentException e) {
+                    throw new BadArgs(i18n, "main.badShard", arg);
+                }
+                shardArg = arg;
+            }
+        },
+
+        new Option(NONE, SELECT, null, "--shard-by-duration") {
+            @Override
+            public void process(String opt, String arg) {
+                shardByDuration = true;
+            }
+        },
+
         new Option(NONE, SELECT, "a-m", "-a", "-automatic", "-automagic") {
             @Override
             public void process(String opt, String arg) {
@@ -1173,6 +1336,15 @@ public class Tool {
             testJDK = com.sun.javatest.regtest.config.JDK.of(f.toPath());
         }
 
+        if (workDirArg == null) {
+            workDirArg = Path.of("JTwork");
+        }
+
+        makeDir(workDirArg, false);
+
+        // save information about the JDKs in the work directory, for use in subsequent runs
+        com.sun.javatest.regtest.config.JDK.setProbeCacheDirectory(workDirArg.resolve(JDK_PROBES));
+
         JDK_Version testJDK_version = checkJDK(testJDK);
 
         if (compileJDK != null) {
@@ -1213,15 +1385,10 @@ public class Tool {
             reportMode = ReportMode.ALL_EXECUTED;
         }
 
-        if (workDirArg == null) {
-            workDirArg = Path.of("JTwork");
-        }
-
         if (reportDirArg == null && reportMode != ReportMode.NONE) {
             reportDirArg = Path.of("JTreport");
         }
 
-        makeDir(workDirArg, false);
         testManager.setWorkDirectory(workDirArg);
 
         // register a factory to be used to create the parameters for a test suite,
@@ -1318,6 +1485,10 @@ public class Tool {
                     }
                     p.setMaxPoolSize(maxPoolSize);
                     p.setIdleTimeout(poolIdleTimeout);
+                    p.setSharedDirectories(poolSharedAgents);
+                    p.setCompilerService(poolCompilerService);
+                    p.setSharedLibraries(poolSharedLibraries);
+                    p.setTestRunnerService(poolTestRunnerService);
                     break;
                 case OTHERVM:
                     break;
@@ -1337,6 +1508,8 @@ public class Tool {
                     boolean quiet = (multiRun && !(verbose != null && verbose.multiRun));
                     testStats.addAll(batchHarness(params, quiet));
                 } finally {
+                    writeTestIndex(ts);
+                    writeBuildState(params);
                     checkLockFiles(params.getWorkDirectory().getRoot(), "done");
                 }
             }
@@ -1411,9 +1584,12 @@ public class Tool {
                 if (gset.isEmpty()) {
                     out.println(i18n.getString("main.groups.nogroups"));
                 } else {
+                    Duration expandTime = Duration.ZERO;
                     for (String g: gset) {
                         try {
+                            Instant start = Instant.now();
                             Set<Path> files = gm.getFiles(g);
+                            expandTime = expandTime.plus(Duration.between(start, Instant.now()));
                             out.print(g);
                             out.print(":");
                             Set<String> fset = new TreeSet<>(new NaturalComparator(false));
@@ -1428,6 +1604,8 @@ public class Tool {
                             out.println(i18n.getString("tm.invalidGroup", g));
                         }
                     }
+                    out.println(i18n.getString("main.groups.time",
+                            gset.size(), expandTime.toMillis()));
                 }
             } catch (IOException e) {
                 throw new Fault(i18n, "main.cantReadGroups", ts.getRootDir(), e);
@@ -1634,6 +1812,199 @@ public class Tool {
         return p;
     }
 
+    /**
+     * Reads the test descriptions for the tests to be run, using multiple threads,
+     * so that they are available when the tests are subsequently found by the harness.
+     *
+     * @param params the parameters for the test run
+     * @param tests  the tests to be run, or {@code null} to run all the tests in the test suite
+     */
+    private void prefetchTests(RegressionParameters params, String[] tests) {
+        TestFinder tf = params.getTestSuite().getTestFinder();
+        if (!(tf instanceof RegressionTestFinder)) {
+            return;
+        }
+        File rootDir = tf.getRootDir();
+        List<File> files = new ArrayList<>();
+        if (tests == null) {
+            files.add(rootDir);
+        } else {
+            for (String t : tests) {
+                int sep = t.indexOf('#');
+                String path = (sep == -1) ? t : t.substring(0, sep);
+                files.add(new File(rootDir, path.replace('/', File.separatorChar)));
+            }
+        }
+        ((RegressionTestFinder) tf).prefetch(files, discoveryThreads);
+    }
+
+    /**
+     * Sets the tests to be run to those in a given shard of the tests that
+     * would otherwise be run.
+     *
+     * @param params the parameters for the test run
+     * @param shard  the shard
+     * @throws Fault if the file of test durations cannot be read
+     */
+    private void selectShard(RegressionParameters params, Shard shard) throws Fault {
+        List<String> tests;
+        Map<String, Double> durations;
+        if (shard.getMode() == Shard.Mode.DURATION) {
+            durations = newDurationOrder().getExpectedDurations(getResultsIterator(params));
+            tests = new ArrayList<>(durations.keySet());
+        } else {
+            durations = null;
+            tests = new ArrayList<>();
+            for (Iterator<TestResult> iter = getResultsIterator(params); iter.hasNext(); ) {
+                tests.add(iter.next().getTestName());
+            }
+        }
+        params.setTests(shard.select(tests, durations));
+    }
+
+    /**
+     * Sets the tests to be run, ordered so that the tests that failed or had an error
+     * when they were previously run are run first, if {@code --order-failed-first}
+     * was given, and so that the tests that are expected to take longest are run
+     * first, within each group, if {@code --order-by-duration} was given.
+     * The results of previous runs are those in the work directory.
+     *
+     * @param params the parameters for the test run
+     * @throws Fault if the file of test durations cannot be read
+     */
+    private void orderTests(RegressionParameters params) throws Fault {
+        List<String> tests;
+        if (orderByDuration) {
+            tests = newDurationOrder().getOrderedTests(getResultsIterator(params));
+        } else {
+            tests = new ArrayList<>();
+            for (Iterator<TestResult> iter = getResultsIterator(params); iter.hasNext(); ) {
+                tests.add(iter.next().getTestName());
+            }
+        }
+
+        if (orderFailedFirst) {
+            Set<String> failed = new HashSet<>();
+            for (Iterator<TestResult> iter = getResultsIterator(params); iter.hasNext(); ) {
+                TestResult tr = iter.next();
+                int type = tr.getStatus().getType();
+                if (type == Status.FAILED || type == Status.ERROR) {
+                    failed.add(tr.getTestName());
+                }
+            }
+            List<String> ordered = new ArrayList<>(tests.size());
+            for (String t : tests) {
+                if (failed.contains(t)) {
+                    ordered.add(t);
+                }
+            }
+            for (String t : tests) {
+                if (!failed.contains(t)) {
+                    ordered.add(t);
+                }
+            }
+            tests = ordered;
+        }
+
+        if (!tests.isEmpty()) {
+            params.setTests(tests);
+        }
+    }
+
+    /**
+     * Compiles the classes in the libraries used by the tests to be run, with
+     * a single invocation of javac for each library, before any tests are run.
+     * Any classes that cannot be compiled here will be compiled as needed
+     * by the tests that use them; the number of libraries that could not
+     * be compiled is reported after the results of the tests.
+     *
+     * @param params the parameters for the test run
+     */
+    private void prebuildLibraries(RegressionParameters params) {
+        LibraryPrebuilder p = new LibraryPrebuilder(params, err, workDirArg.resolve(PREBUILD_TMP));
+        for (Iterator<TestResult> iter = getResultsIterator(params); iter.hasNext(); ) {
+            TestResult tr = iter.next();
+            try {
+                p.add(tr.getDescription());
+            } catch (TestResult.Fault e) {
+                // ignore: the problem will be reported when the test is run
+            }
+        }
+        prebuildFailures = p.build();
+    }
+
+    /**
+     * Adds an observer to stop the test run when the number of tests that fail
+     * or have an error reaches the limit given by {@code -failfast}.
+     * Any agents that are not in use are closed when the run is stopped;
+     * any tests that are still running are allowed to complete.
+     *
+     * @param h      the harness for the test run
+     * @param params the parameters for the test run
+     */
+    private void addFailFastObserver(Harness h, RegressionParameters params) {
+        h.addObserver(new BasicObserver() {
+            private int failures;
+
+            @Override
+            public void finishedTest(TestResult tr) {
+                int type = tr.getStatus().getType();
+                if (type != Status.FAILED && type != Status.ERROR) {
+                    return;
+                }
+                synchronized (this) {
+                    if (++failures != failFastArg) {
+                        return;
+                    }
+                }
+                err.println(i18n.getString("main.failFast", failFastArg));
+                h.stop();
+                Agent.Pool.flush(params);
+            }
+        });
+    }
+
+    private DurationOrder newDurationOrder() throws Fault {
+        DurationOrder order = new DurationOrder();
+        if (testDurationsArg != null) {
+            try {
+                order.readDurations(testDurationsArg);
+            } catch (IOException e) {
+                throw new Fault(i18n, "main.cantRead", testDurationsArg, e);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Writes the index of test descriptions found in the files of a test suite,
+     * so that it can be used by subsequent runs.
+     * Any problems writing the index are reported, but are not otherwise significant.
+     */
+    private void writeTestIndex(RegressionTestSuite ts) {
+        TestFinder tf = ts.getTestFinder();
+        if (tf instanceof RegressionTestFinder) {
+            try {
+                ((RegressionTestFinder) tf).writeIndex();
+            } catch (IOException e) {
+                err.println(i18n.getString("main.cantWriteTestIndex", e));
+            }
+        }
+    }
+
+    /**
+     * Writes the record of the files compiled by the build action,
+     * so that it can be used by subsequent runs.
+     * Any problems writing the record are reported, but are not otherwise significant.
+     */
+    private void writeBuildState(RegressionParameters params) {
+        try {
+            params.getBuildState().write();
+        } catch (IOException e) {
+            err.println(i18n.getString("main.cantWriteBuildState", e));
+        }
+    }
+
     /**
      * Create a RegressionParameters object based on the values set up by decodeArgs.
      * This method is the standard way to create the parameters, taking all the
@@ -1656,7 +2027,9 @@ public class Tool {
 
             rp.setRetainArgs(retainArgs);
 
+            Instant start = Instant.now();
             rp.setTests(testManager.getTests(testSuite));
+            testSelectionTimes.put(rp, Duration.between(start, Instant.now()));
 
             if (userKeywordExpr != null || extraKeywordExpr != null) {
                 String expr =
@@ -1720,6 +2093,14 @@ public class Tool {
             if (exclusiveLockArg != null)
                 rp.setExclusiveLock(exclusiveLockArg);
 
+            if (weightBudgetArg > 0)
+                rp.setWeightBudget(weightBudgetArg);
+
+            rp.setUseCDSArchives(cdsArchives);
+
+            if (resultCacheArg != null)
+                rp.setResultCacheDir(resultCacheArg);
+
             if (!rp.isValid())
                 throw new Fault(i18n, "main.badParams", rp.getErrorMessage());
 
@@ -1824,12 +2205,14 @@ public class Tool {
         try {
             TestStats stats = new TestStats();
             boolean ok;
+            Shard shard = null;
             ElapsedTimeHandler elapsedTimeHandler = null;
 
             if (reportOnlyFlag) {
+                // The status of each result is available in the test result table;
+                // the contents are loaded in parallel when the report is written.
                 for (Iterator<TestResult> iter = getResultsIterator(params); iter.hasNext(); ) {
-                    TestResult tr = iter.next();
-                    stats.add(tr);
+                    stats.add(iter.next());
                 }
                 ok = stats.isOK();
             } else if (showStream != null) {
@@ -1900,6 +2283,10 @@ public class Tool {
                 // Set backup parameters; in time this might become more versatile.
                 BackupPolicy backupPolicy = createBackupPolicy();
 
+                // the host name is recorded in the result of each test;
+                // start to determine it while other setup is done
+                params.startHostNameLookup();
+
                 Harness h = new Harness();
                 h.setBackupPolicy(backupPolicy);
 
@@ -1924,9 +2311,14 @@ public class Tool {
                     }
                 });
 
+                if (failFastArg > 0) {
+                    addFailFastObserver(h, params);
+                }
+
                 if (reportRequired) {
                     elapsedTimeHandler = new ElapsedTimeHandler();
                     elapsedTimeHandler.register(h);
+                    elapsedTimeHandler.setTestSelectionTime(testSelectionTimes.get(params));
                 }
 
                 if (params.getTestJDK().hasModules()) {
@@ -1941,8 +2333,34 @@ public class Tool {
                 }
 
                 String[] tests = params.getTests();
+                if (execMode == ExecMode.AGENTVM && poolPrestart > 0
+                        && !(tests != null && tests.length == 0)) {
+                    // Agents are started for up to two configurations (compile and main);
+                    // don't start more than the pool will retain.
+                    int n = Math.min(poolPrestart, Math.max(1, maxPoolSize / 2));
+                    Agent.Pool.instance(params).prestart(params, n);
+                }
+                if (discoveryThreads > 0 && !(tests != null && tests.length == 0)) {
+                    Instant start = Instant.now();
+                    prefetchTests(params, tests);
+                    if (elapsedTimeHandler != null) {
+                        elapsedTimeHandler.setDiscoveryTime(Duration.between(start, Instant.now()));
+                    }
+                }
+                if (shardArg != null && !(tests != null && tests.length == 0)) {
+                    shard = Shard.parse(shardArg, shardByDuration ? Shard.Mode.DURATION : Shard.Mode.HASH);
+                    selectShard(params, shard);
+                    tests = params.getTests();
+                }
+                if ((orderByDuration || orderFailedFirst) && !(tests != null && tests.length == 0)) {
+                    orderTests(params);
+                }
+                if (prebuildLibraries && !(tests != null && tests.length == 0)) {
+                    prebuildLibraries(params);
+                }
                 ok = (tests != null && tests.length == 0) || h.batch(params);
 
+                ClassDataSharing.close(params);
                 Agent.Pool.flush(params);
                 try {
                     Agent.Logger.close(params);
@@ -1950,11 +2368,15 @@ public class Tool {
                     err.println(i18n.getString("main.errorClosingAgentLog", e));
                 }
                 Lock.get(params).close();
+                ResourceScheduler.get(params).close();
             }
 
             if (!quiet)
                 stats.showResultStats(out);
 
+            if (prebuildFailures > 0)
+                out.println(i18n.getString("main.prebuildFailed", prebuildFailures));
+
             if (reportRequired) {
                 RegressionReporter r = new RegressionReporter(out);
                 TestFilter tf;
@@ -1990,6 +2412,16 @@ public class Tool {
 
                 }
                 r.report(params, elapsedTimeHandler, stats, tf, quiet);
+
+                if (shard != null) {
+                    Path manifest = params.getReportDir().resolve("text").resolve(Shard.MANIFEST);
+                    String[] tests = params.getTests();
+                    try {
+                        shard.writeManifest(manifest, Arrays.asList(tests));
+                    } catch (IOException e) {
+                        err.println(i18n.getString("main.cantWriteShardManifest", manifest, e));
+                    }
+                }
             }
 
             if (!reportOnlyFlag && !quiet)
@@ -2310,6 +2742,21 @@ public class Tool {
     private long timeoutHandlerTimeoutArg = -1; // -1: default; 0: no timeout; >0: timeout in seconds
     private int maxPoolSize = -1;
     private Duration poolIdleTimeout = Duration.ofSeconds(30);
+    private int poolPrestart = 0;
+    private boolean poolSharedAgents;
+    private boolean poolCompilerService;
+    private Set<String> poolSharedLibraries = new LinkedHashSet<>();
+    private boolean poolTestRunnerService;
+    private int discoveryThreads = 0;
+    private final Map<RegressionParameters, Duration> testSelectionTimes = new HashMap<>();
+    private boolean orderByDuration;
+    private boolean orderFailedFirst;
+    private int failFastArg;
+    private boolean prebuildLibraries;
+    private int prebuildFailures;
+    private String shardArg;
+    private boolean shardByDuration;
+    private Path testDurationsArg;
     private List<String> testCompilerOpts = new ArrayList<>();
     private List<String> testJavaOpts = new ArrayList<>();
     private List<String> testVMOpts = new ArrayList<>();
@@ -2327,6 +2774,9 @@ public class Tool {
     private boolean xmlFlag;
     private boolean xmlVerifyFlag;
     private Path exclusiveLockArg;
+    private int weightBudgetArg;
+    private boolean cdsArchives;
+    private Path resultCacheArg;
     private List<Path> matchListArgs = new ArrayList<>();
 
     private final JarManager jarManager;
@@ -2342,6 +2792,12 @@ public class Tool {
     private static final String AUTOMATIC = "!manual";
     private static final String MANUAL    = "manual";
 
+    // the subdirectory of the work directory in which to save information about JDKs
+    private static final String JDK_PROBES = "jdkProbes";
+    // the subdirectory of the work directory in which to write temporary files when
+    // prebuilding libraries; not the scratch directory, which is used by the tests
+    private static final String PREBUILD_TMP = "prebuildTmp";
+
     private static final String[] DEFAULT_UNIX_ENV_VARS = {
         "DISPLAY", "GNOME_DESKTOP_SESSION_ID", "HOME", "LANG",
         "LC_ALL", "LC_CTYPE", "LPDEST", "PRINTER", "TZ", "XMODIFIERS"
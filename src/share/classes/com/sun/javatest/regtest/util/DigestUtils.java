@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2022, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package com.sun.javatest.regtest.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utilities for computing the SHA-256 digests used to identify cached
+ * information, such as probe results, indexes and test results.
+ */
+public class DigestUtils {
+    private DigestUtils() { }
+
+    /**
+     * Returns a new SHA-256 message digest.
+     *
+     * @return the digest
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the SHA-256 digest of an array of bytes.
+     *
+     * @param bytes the bytes
+     * @return the digest
+     */
+    public static byte[] digest(byte[] bytes) {
+        return newDigest().digest(bytes);
+    }
+
+    /**
+     * Updates a digest with a string, preceded by its length, so that
+     * different sequences of strings always give different input to the digest.
+     *
+     * @param md the digest
+     * @param s  the string
+     */
+    public static void update(MessageDigest md, String s) {
+        update(md, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Updates a digest with some bytes, preceded by their length.
+     *
+     * @param md    the digest
+     * @param bytes the bytes
+     */
+    public static void update(MessageDigest md, byte[] bytes) {
+        int n = bytes.length;
+        md.update(new byte[] { (byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n });
+        md.update(bytes);
+    }
+
+    /**
+     * Returns a digest as a string of lower-case hexadecimal digits.
+     *
+     * @param digest the digest
+     * @return the string
+     */
+    public static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
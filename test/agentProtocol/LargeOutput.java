@@ -0,0 +1,12 @@
+/*
+ * @test
+ * @run main LargeOutput
+ */
+public class LargeOutput {
+    public static void main(String... args) {
+        for (int i = 0; i < 2000; i++) {
+            System.out.println("line " + i + ": abc \u00e9\u00e8 \u4e2d\u6587 xyz");
+        }
+        System.out.println("LargeOutput done");
+    }
+}
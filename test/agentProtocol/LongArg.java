@@ -0,0 +1,14 @@
+/*
+ * @test
+ * @run main LongArg LONG_ARG
+ */
+// LONG_ARG is replaced by a 70000 character string before the test is run,
+// which is too long to be sent to an agent with version 1 of the protocol.
+public class LongArg {
+    public static void main(String... args) {
+        if (args.length != 1 || args[0].length() != 70000) {
+            throw new Error("unexpected argument: length " + args[0].length());
+        }
+        System.out.println("LongArg done");
+    }
+}
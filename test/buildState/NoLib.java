@@ -0,0 +1,17 @@
+/*
+ * @test
+ * @library /lib
+ * @build Lib
+ * @run main NoLib
+ */
+public class NoLib {
+    static class Helper {
+        static String name() {
+            return "NoLib";
+        }
+    }
+
+    public static void main(String... args) {
+        System.out.println(Helper.name());
+    }
+}
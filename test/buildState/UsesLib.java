@@ -0,0 +1,11 @@
+/*
+ * @test
+ * @library /lib
+ * @build Lib
+ * @run main UsesLib
+ */
+public class UsesLib {
+    public static void main(String... args) {
+        System.out.println("UsesLib: " + Lib.name());
+    }
+}
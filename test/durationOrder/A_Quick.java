@@ -0,0 +1,9 @@
+/*
+ * @test
+ * @run main A_Quick
+ */
+public class A_Quick {
+    public static void main(String... args) {
+        System.out.println("A_Quick Running");
+    }
+}
@@ -0,0 +1,11 @@
+
+
+/*
+ * @test
+ * @run main/timeout=300 M_Short
+ */
+public class M_Short {
+    public static void main(String... args) {
+        System.out.println("M_Short Running");
+    }
+}
@@ -0,0 +1,12 @@
+
+
+/*
+ * @test
+ * @run main Z_Long
+ */
+public class Z_Long {
+    public static void main(String... args) throws InterruptedException {
+        System.out.println("Z_Long Running");
+        Thread.sleep(3000);
+    }
+}
@@ -0,0 +1,10 @@
+
+/*
+ * @test
+ * @run main A_Pass
+ */
+public class A_Pass {
+    public static void main(String... args) {
+        System.out.println("A_Pass Running");
+    }
+}
@@ -0,0 +1,10 @@
+
+/*
+ * @test
+ * @run main B_Fail
+ */
+public class B_Fail {
+    public static void main(String... args) {
+        throw new Error("B_Fail failed");
+    }
+}
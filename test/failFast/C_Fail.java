@@ -0,0 +1,10 @@
+
+/*
+ * @test
+ * @run main C_Fail
+ */
+public class C_Fail {
+    public static void main(String... args) {
+        throw new Error("C_Fail failed");
+    }
+}
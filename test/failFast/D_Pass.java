@@ -0,0 +1,10 @@
+
+/*
+ * @test
+ * @run main D_Pass
+ */
+public class D_Pass {
+    public static void main(String... args) {
+        System.out.println("D_Pass Running");
+    }
+}
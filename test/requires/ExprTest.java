@@ -41,6 +41,10 @@
  * @requires line.separator == "\n" | line.separator == "\r\n"
  * @requires os.maxMemory > 1M
  * @requires os.maxSwap >= 0
+ * @requires (true) & !(false) & ((true))
+ * @requires (1 + 2) * 3 == 9 & 10 - (2 * 3) == 4
+ * @requires ("a") == "a" & ("1") == 1
+ * @requires (1 < 2) == true & !(1 > 2) == true
  * @run main ExprTest
  */
 
@@ -0,0 +1,6 @@
+
+public class Helper {
+    static String message() {
+        return "Pass Running";
+    }
+}
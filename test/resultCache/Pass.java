@@ -0,0 +1,10 @@
+
+/*
+ * @test
+ * @run main Pass
+ */
+public class Pass {
+    public static void main(String... args) {
+        System.out.println(Helper.message());
+    }
+}
@@ -0,0 +1,9 @@
+/*
+ * @test
+ * @run main A
+ */
+public class A {
+    public static void main(String... args) {
+        System.out.println("A Running");
+    }
+}
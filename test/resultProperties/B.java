@@ -0,0 +1,9 @@
+/*
+ * @test
+ * @run main B
+ */
+public class B {
+    public static void main(String... args) {
+        System.out.println("B Running");
+    }
+}
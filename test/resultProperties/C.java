@@ -0,0 +1,9 @@
+/*
+ * @test
+ * @run main C
+ */
+public class C {
+    public static void main(String... args) {
+        System.out.println("C Running");
+    }
+}
@@ -0,0 +1,9 @@
+/*
+ * @test
+ * @run main D
+ */
+public class D {
+    public static void main(String... args) {
+        System.out.println("D Running");
+    }
+}
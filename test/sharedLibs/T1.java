@@ -0,0 +1,11 @@
+/*
+ * @test
+ * @library /lib
+ * @build Lib
+ * @run main T1
+ */
+public class T1 {
+    public static void main(String... args) {
+        System.out.println("T1: " + Lib.name());
+    }
+}
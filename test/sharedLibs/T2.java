@@ -0,0 +1,11 @@
+/*
+ * @test
+ * @library /lib
+ * @build Lib
+ * @run main T2
+ */
+public class T2 {
+    public static void main(String... args) {
+        System.out.println("T2: " + Lib.name());
+    }
+}
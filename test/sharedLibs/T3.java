@@ -0,0 +1,11 @@
+/*
+ * @test
+ * @library /lib
+ * @build Lib
+ * @run main T3
+ */
+public class T3 {
+    public static void main(String... args) {
+        System.out.println("T3: " + Lib.name());
+    }
+}
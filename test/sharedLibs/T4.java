@@ -0,0 +1,11 @@
+/*
+ * @test
+ * @library /lib
+ * @build Lib
+ * @run main T4
+ */
+public class T4 {
+    public static void main(String... args) {
+        System.out.println("T4: " + Lib.name());
+    }
+}
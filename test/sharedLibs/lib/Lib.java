@@ -0,0 +1,3 @@
+public class Lib {
+    public static String name() { return "Lib"; }
+}
@@ -0,0 +1,17 @@
+/*
+ * @test
+ * @run main Multi
+ */
+
+/*
+ * @test
+ * @run main Multi 1
+ */
+
+// The following use of the marker, after the last test description,
+// is not in a comment, and does not identify a test.
+public class Multi {
+    String s = "@test";
+    /* end */
+    public static void main(String... args) { }
+}
@@ -0,0 +1,5 @@
+// This file does not contain a test description.
+public class NoTest {
+    /* not a test */
+    public static void main(String... args) { }
+}
@@ -0,0 +1,4 @@
+#!/bin/sh
+# @test
+# @run shell Script.sh
+exit 0
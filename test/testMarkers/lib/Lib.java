@@ -0,0 +1,2 @@
+/* A library class. */
+public class Lib { }
@@ -0,0 +1,6 @@
+/*
+ * @test
+ */
+public class A {
+    public static void main(String... args) { }
+}
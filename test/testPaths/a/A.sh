@@ -0,0 +1 @@
+# not a test, but with the same name as a test
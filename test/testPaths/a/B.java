@@ -0,0 +1,6 @@
+/*
+ * @test
+ */
+public class B {
+    public static void main(String... args) { }
+}
@@ -0,0 +1,6 @@
+/*
+ * @test
+ */
+public class C {
+    public static void main(String... args) { }
+}
@@ -0,0 +1,15 @@
+/*
+ * @test
+ * @weight 2
+ * @run main A
+ */
+import java.nio.file.*;
+
+public class A {
+    public static void main(String... args) throws Exception {
+        Path marker = Path.of(System.getProperty("weight.dir"), "running");
+        Files.createFile(marker); // fails if another heavy test is running
+        Thread.sleep(2000);
+        Files.delete(marker);
+    }
+}
@@ -0,0 +1,14 @@
+/*
+ * @test
+ * @run main C
+ */
+import java.nio.file.*;
+
+public class C {
+    public static void main(String... args) throws Exception {
+        Path marker = Path.of(System.getProperty("weight.dir"), "running");
+        Files.createFile(marker); // fails if another heavy test is running
+        Thread.sleep(2000);
+        Files.delete(marker);
+    }
+}